@@ -0,0 +1,143 @@
+package com.tianscar.javasound.resloader.jmh;
+
+import com.tianscar.javasound.midi.spi.MidiResourceReader;
+import com.tianscar.javasound.midi.spi.SoundbankResourceReader;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.ProviderHints;
+import com.tianscar.javasound.util.Signature;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Soundbank;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Readers which read a resource header, then reject it, like third-party decoders of other formats would.
+ * They are registered in front of the default readers when a benchmark runs with several providers.
+ * <p>
+ * The decoys claim the extensions and signatures of the fixtures, as a decoder sniffing the same
+ * container would, so the {@link ProviderHints} dispatch still tries them before the default readers,
+ * which have the lowest priority.
+ */
+public final class DecoyReaders {
+
+    private DecoyReaders() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final String[] WAVE_EXTENSIONS = { "wav" };
+    private static final Signature[] WAVE_SIGNATURES = { Signature.of(0, "RIFF").and(8, "WAVE") };
+    private static final String[] MIDI_EXTENSIONS = { "mid" };
+    private static final Signature[] MIDI_SIGNATURES = { Signature.of(0, "MThd") };
+
+    private static void readHeader(InputStream stream) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int total = 0;
+        while (total < header.length) {
+            int read = stream.read(header, total, header.length - total);
+            if (read < 0) break;
+            total += read;
+        }
+    }
+
+    private static void readHeader(ClassLoader resourceLoader, String name) throws IOException {
+        try (InputStream stream = resourceLoader.getResourceAsStream(name)) {
+            if (stream == null) throw new IOException("could not load resource \"" + name + "\"");
+            readHeader(stream);
+        }
+    }
+
+    public static final class Audio implements AudioResourceReader, ProviderHints {
+        @Override
+        public String[] getFileExtensions() {
+            return WAVE_EXTENSIONS.clone();
+        }
+        @Override
+        public Signature[] getSignatures() {
+            return WAVE_SIGNATURES.clone();
+        }
+        @Override
+        public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException, IOException {
+            readHeader(resourceLoader, name);
+            throw new UnsupportedAudioFileException("decoy");
+        }
+        @Override
+        public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException, IOException {
+            readHeader(resourceLoader, name);
+            throw new UnsupportedAudioFileException("decoy");
+        }
+        @Override
+        public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name, InputStream stream) throws UnsupportedAudioFileException, IOException {
+            readHeader(stream);
+            throw new UnsupportedAudioFileException("decoy");
+        }
+        @Override
+        public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, InputStream stream) throws UnsupportedAudioFileException, IOException {
+            readHeader(stream);
+            throw new UnsupportedAudioFileException("decoy");
+        }
+    }
+
+    public static final class Midi implements MidiResourceReader, ProviderHints {
+        @Override
+        public String[] getFileExtensions() {
+            return MIDI_EXTENSIONS.clone();
+        }
+        @Override
+        public Signature[] getSignatures() {
+            return MIDI_SIGNATURES.clone();
+        }
+        @Override
+        public MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+            readHeader(resourceLoader, name);
+            throw new InvalidMidiDataException("decoy");
+        }
+        @Override
+        public Sequence getSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+            readHeader(resourceLoader, name);
+            throw new InvalidMidiDataException("decoy");
+        }
+        @Override
+        public MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name, InputStream stream) throws InvalidMidiDataException, IOException {
+            readHeader(stream);
+            throw new InvalidMidiDataException("decoy");
+        }
+        @Override
+        public Sequence getSequence(ClassLoader resourceLoader, String name, InputStream stream) throws InvalidMidiDataException, IOException {
+            readHeader(stream);
+            throw new InvalidMidiDataException("decoy");
+        }
+    }
+
+    /**
+     * The soundbank benchmark reads the WAVE fixture, which the JavaSound audio file soundbank reader accepts.
+     */
+    public static final class Soundbanks implements SoundbankResourceReader, ProviderHints {
+        @Override
+        public String[] getFileExtensions() {
+            return WAVE_EXTENSIONS.clone();
+        }
+        @Override
+        public Signature[] getSignatures() {
+            return WAVE_SIGNATURES.clone();
+        }
+        @Override
+        public Soundbank getSoundbank(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+            readHeader(resourceLoader, name);
+            throw new InvalidMidiDataException("decoy");
+        }
+        @Override
+        public Soundbank getSoundbank(ClassLoader resourceLoader, String name, InputStream stream) throws InvalidMidiDataException, IOException {
+            readHeader(stream);
+            throw new InvalidMidiDataException("decoy");
+        }
+    }
+
+}
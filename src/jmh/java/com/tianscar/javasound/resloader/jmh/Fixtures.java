@@ -0,0 +1,149 @@
+package com.tianscar.javasound.resloader.jmh;
+
+import com.tianscar.javasound.midi.spi.MidiResourceReader;
+import com.tianscar.javasound.midi.spi.SoundbankResourceReader;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generated benchmark fixtures, so the benchmarks need neither downloaded audio nor an audio device.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+        throw new UnsupportedOperationException();
+    }
+
+    static final String WAV = "fixtures/clip.wav";
+    static final String MIDI = "fixtures/song.mid";
+
+    private static final AudioFormat PCM_FORMAT = new AudioFormat(44100, 16, 2, true, false);
+
+    /**
+     * Generates the fixtures of the given size.
+     *
+     * @param large {@code false} for a 0.1 second clip and a 200 events song,
+     *              {@code true} for a 30 seconds clip and a 40000 events song
+     */
+    static Map<String, byte[]> generate(boolean large) throws IOException, InvalidMidiDataException {
+        Map<String, byte[]> fixtures = new LinkedHashMap<>();
+        fixtures.put(WAV, wav(large ? 44100 * 30 : 4410));
+        fixtures.put(MIDI, midi(large ? 40000 : 200));
+        return fixtures;
+    }
+
+    /**
+     * Writes the fixtures, and the service files registering the decoy readers if requested,
+     * into a directory or a jar, and creates a {@code ClassLoader} loading them.
+     * The decoy readers are listed before the default readers.
+     */
+    static URLClassLoader install(Map<String, byte[]> fixtures, boolean jar, boolean decoys) throws IOException {
+        Map<String, byte[]> resources = new LinkedHashMap<>(fixtures);
+        if (decoys) {
+            resources.put("META-INF/services/" + AudioResourceReader.class.getName(), service(DecoyReaders.Audio.class));
+            resources.put("META-INF/services/" + MidiResourceReader.class.getName(), service(DecoyReaders.Midi.class));
+            resources.put("META-INF/services/" + SoundbankResourceReader.class.getName(), service(DecoyReaders.Soundbanks.class));
+        }
+        File root = Files.createTempDirectory("javasound-jmh").toFile();
+        root.deleteOnExit();
+        URL url;
+        if (jar) {
+            File file = new File(root, "fixtures.jar");
+            file.deleteOnExit();
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(file.toPath()))) {
+                for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+                    out.putNextEntry(new JarEntry(resource.getKey()));
+                    out.write(resource.getValue());
+                    out.closeEntry();
+                }
+            }
+            url = file.toURI().toURL();
+        }
+        else {
+            for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+                File file = new File(root, resource.getKey());
+                if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) throw new IOException("could not create " + file.getParentFile());
+                try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                    out.write(resource.getValue());
+                }
+                file.deleteOnExit();
+            }
+            url = root.toURI().toURL();
+        }
+        return new ChildFirstServicesClassLoader(url, Fixtures.class.getClassLoader());
+    }
+
+    private static byte[] service(Class<?> provider) {
+        return (provider.getName() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] wav(int frames) throws IOException {
+        byte[] pcm = new byte[frames * PCM_FORMAT.getFrameSize()];
+        for (int i = 0; i < frames; i ++) {
+            short sample = (short) (Math.sin(i * 2 * Math.PI * 440 / PCM_FORMAT.getSampleRate()) * 8192);
+            int offset = i * 4;
+            pcm[offset] = pcm[offset + 2] = (byte) sample;
+            pcm[offset + 1] = pcm[offset + 3] = (byte) (sample >> 8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pcm.length + 44);
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), PCM_FORMAT, frames), AudioFileFormat.Type.WAVE, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] midi(int events) throws IOException, InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, 480);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < events / 2; i ++) {
+            int key = 48 + i % 24;
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, key, 100), i * 120L));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, key, 0), i * 120L + 100));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 1, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Lists its own service files before the ones of its parent, so the decoy readers are tried first.
+     */
+    private static final class ChildFirstServicesClassLoader extends URLClassLoader {
+        private ChildFirstServicesClassLoader(URL url, ClassLoader parent) {
+            super(new URL[] { url }, parent);
+        }
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (!name.startsWith("META-INF/services/")) return super.getResources(name);
+            List<URL> urls = new ArrayList<>(Collections.list(findResources(name)));
+            if (getParent() != null) urls.addAll(Collections.list(getParent().getResources(name)));
+            return Collections.enumeration(urls);
+        }
+    }
+
+}
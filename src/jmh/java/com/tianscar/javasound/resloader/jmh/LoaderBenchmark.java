@@ -0,0 +1,127 @@
+package com.tianscar.javasound.resloader.jmh;
+
+import com.tianscar.javasound.midi.MidiResourceLoader;
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.util.ProviderRegistry;
+import com.tianscar.javasound.util.ReaderAffinityCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Soundbank;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the loader overhead of format queries, stream opening and decoding, headless.
+ * <p>
+ * Fixtures are generated WAV and MIDI files, small or large, loaded from a directory or from inside
+ * a jar, with the default readers only or with decoy readers rejecting every resource tried first.
+ * With {@code coldDispatch}, the reader affinity cache is cleared before each operation, so every
+ * call walks the readers again.
+ * The soundbank benchmark loads the WAV fixture, which the JDK reads as a single-instrument soundbank.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LoaderBenchmark {
+
+    @Param({"small", "large"})
+    public String size;
+
+    @Param({"1", "several"})
+    public String providers;
+
+    @Param({"directory", "jar"})
+    public String location;
+
+    @Param({"false", "true"})
+    public boolean coldDispatch;
+
+    private URLClassLoader resourceLoader;
+    private ClassLoader previousContextClassLoader;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InvalidMidiDataException {
+        resourceLoader = Fixtures.install(Fixtures.generate("large".equals(size)), "jar".equals(location), "several".equals(providers));
+        // the loaders look up providers with the context ClassLoader
+        previousContextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(resourceLoader);
+        ProviderRegistry.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Thread.currentThread().setContextClassLoader(previousContextClassLoader);
+        ProviderRegistry.reload();
+        resourceLoader.close();
+    }
+
+    private void beforeOperation() {
+        if (coldDispatch) ReaderAffinityCache.getDefault().clear();
+    }
+
+    @Benchmark
+    public AudioFileFormat getAudioFileFormat() throws UnsupportedAudioFileException, IOException {
+        beforeOperation();
+        return AudioResourceLoader.getAudioFileFormat(resourceLoader, Fixtures.WAV);
+    }
+
+    @Benchmark
+    public AudioInputStream getAudioInputStream() throws UnsupportedAudioFileException, IOException {
+        beforeOperation();
+        AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resourceLoader, Fixtures.WAV);
+        stream.close();
+        return stream;
+    }
+
+    @Benchmark
+    public void getAudioInputStreamAndDecode(Blackhole blackhole) throws UnsupportedAudioFileException, IOException {
+        beforeOperation();
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resourceLoader, Fixtures.WAV)) {
+            int read;
+            while ((read = stream.read(buffer, 0, buffer.length)) >= 0) blackhole.consume(read);
+        }
+    }
+
+    @Benchmark
+    public MidiFileFormat getMidiFileFormat() throws InvalidMidiDataException, IOException {
+        beforeOperation();
+        return MidiResourceLoader.getMidiFileFormat(resourceLoader, Fixtures.MIDI);
+    }
+
+    @Benchmark
+    public Sequence getSequence() throws InvalidMidiDataException, IOException {
+        beforeOperation();
+        return MidiResourceLoader.getSequence(resourceLoader, Fixtures.MIDI);
+    }
+
+    @Benchmark
+    public Soundbank getSoundbank() throws InvalidMidiDataException, IOException {
+        beforeOperation();
+        return MidiResourceLoader.getSoundbank(resourceLoader, Fixtures.WAV);
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.tianscar.javasound;
+
+import com.tianscar.javasound.midi.spi.MidiResourceReader;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.FormatIndex;
+import com.tianscar.javasound.util.ProviderRegistry;
+import com.tianscar.javasound.util.ResourceScanner;
+import com.tianscar.javasound.util.Resources;
+import com.tianscar.javasound.util.ResourceSource;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Builds the {@link FormatIndex} of a resource directory ahead of time, typically as a build step.
+ * <p>
+ * Every resource matching the given glob patterns (see {@link ResourceScanner}) is probed with the
+ * installed {@link AudioResourceReader}s, then {@link MidiResourceReader}s, or the other way round
+ * for resources only the hints of MIDI readers claim (see {@link com.tianscar.javasound.util.ProviderHints});
+ * resources no reader recognizes, or whose formats have properties the index cannot hold, are left out of the index.
+ * <p>
+ * Run from the command line, or from Gradle with a {@code JavaExec} task:
+ * <pre>
+ * java com.tianscar.javasound.FormatIndexer &lt;resource directory&gt; [&lt;glob pattern&gt;...]
+ * </pre>
+ * The index is written to {@value FormatIndex#RESOURCE_NAME} in the resource directory, all
+ * resources are indexed when no pattern is given.
+ *
+ * @author Karstian Lee
+ */
+public class FormatIndexer {
+
+    private final ClassLoader resourceLoader;
+
+    /**
+     * Creates a {@code FormatIndexer}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resources and find readers
+     */
+    public FormatIndexer(ClassLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    /**
+     * Probes the given resources.
+     *
+     * @param names the resource names
+     * @return the entries of the resources recognized by a reader
+     * @throws IOException if an I/O error occurs
+     */
+    public List<FormatIndex.Entry> index(Iterable<String> names) throws IOException {
+        List<FormatIndex.Entry> entries = new ArrayList<>();
+        for (String name : names) {
+            if (name.equals(FormatIndex.RESOURCE_NAME)) continue;
+            FormatIndex.Entry entry = probe(name);
+            if (entry != null) entries.add(entry);
+        }
+        return entries;
+    }
+
+    private FormatIndex.Entry probe(String name) throws IOException {
+        List<AudioResourceReader> audioReaders = ProviderRegistry.getProviders(resourceLoader, AudioResourceReader.class);
+        List<MidiResourceReader> midiReaders = ProviderRegistry.getProviders(resourceLoader, MidiResourceReader.class);
+        try (ResourceSource source = ResourceSource.open(resourceLoader, name)) {
+            // recorded so the loaders can tell the resource changed since it was indexed
+            File file = Resources.getFile(resourceLoader, name);
+            long lastModified = file == null ? -1 : file.lastModified();
+            CRC32 crc = new CRC32();
+            long size = 0;
+            try (InputStream in = source.newView()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    size += read;
+                }
+            }
+            // the JDK renders MIDI files as audio, MIDI files have to be probed as MIDI first
+            if (ProviderRegistry.claims(midiReaders, name, source) && !ProviderRegistry.claims(audioReaders, name, source)) {
+                FormatIndex.Entry entry = probeMidi(midiReaders, name, source, size, crc.getValue(), lastModified);
+                return entry == null ? probeAudio(audioReaders, name, source, size, crc.getValue(), lastModified) : entry;
+            }
+            else {
+                FormatIndex.Entry entry = probeAudio(audioReaders, name, source, size, crc.getValue(), lastModified);
+                return entry == null ? probeMidi(midiReaders, name, source, size, crc.getValue(), lastModified) : entry;
+            }
+        }
+    }
+
+    private FormatIndex.Entry probeAudio(List<AudioResourceReader> readers, String name, ResourceSource source,
+                                         long size, long crc, long lastModified) throws IOException {
+        for (AudioResourceReader reader : ProviderRegistry.dispatch(readers, null, name, source)) {
+            try {
+                AudioFileFormat format = reader.getAudioFileFormat(resourceLoader, name, source.newView());
+                return new FormatIndex.Entry(name, reader.getClass().getName(), format, size, crc, lastModified);
+            }
+            catch (UnsupportedAudioFileException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private FormatIndex.Entry probeMidi(List<MidiResourceReader> readers, String name, ResourceSource source,
+                                        long size, long crc, long lastModified) throws IOException {
+        for (MidiResourceReader reader : ProviderRegistry.dispatch(readers, null, name, source)) {
+            try {
+                MidiFileFormat format = reader.getMidiFileFormat(resourceLoader, name, source.newView());
+                return new FormatIndex.Entry(name, reader.getClass().getName(), format, size, crc, lastModified);
+            }
+            catch (InvalidMidiDataException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexes a resource directory.
+     *
+     * @param args the resource directory, followed by the glob patterns of the resources to index
+     * @throws IOException if an I/O error occurs
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java " + FormatIndexer.class.getName() + " <resource directory> [<glob pattern>...]");
+            System.exit(1);
+            return;
+        }
+        File directory = new File(args[0]);
+        List<String> globs = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : Collections.singletonList("**");
+        try (URLClassLoader resourceLoader = new URLClassLoader(new URL[] { directory.toURI().toURL() },
+                FormatIndexer.class.getClassLoader())) {
+            Set<String> names = new LinkedHashSet<>();
+            for (String glob : globs) {
+                for (String name : ResourceScanner.list(resourceLoader, glob)) {
+                    // only index the directory, not the class path it is layered on
+                    if (new File(directory, name).isFile()) names.add(name);
+                }
+            }
+            List<FormatIndex.Entry> entries = new FormatIndexer(resourceLoader).index(names);
+            File output = new File(directory, FormatIndex.RESOURCE_NAME);
+            File parent = output.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("could not create directory \"" + parent + "\"");
+            int written;
+            try (OutputStream out = Files.newOutputStream(output.toPath())) {
+                written = FormatIndex.write(entries, out);
+            }
+            System.out.println("Indexed " + written + " of " + names.size() + " resources into " + output);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.tianscar.javasound;
+
+import com.tianscar.javasound.midi.MidiResourceLoader;
+import com.tianscar.javasound.sampled.AudioClipCache;
+import com.tianscar.javasound.sampled.PcmBuffer;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Soundbank;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The resources loaded by a {@link ResourcePreloader}.
+ * <p>
+ * Lookups of preloaded resources are served without decoding them again; lookups of other
+ * resources, or of resources that failed to preload, fall back to the loaders.
+ * <p>
+ * This class is thread-safe. Preloaded sequences are shared, they must not be modified.
+ *
+ * @author Karstian Lee
+ */
+public final class PreloadedResources {
+
+    static final class Item {
+        private final ResourcePreloader.Kind kind;
+        private final Object value;
+        private final Throwable failure;
+        Item(ResourcePreloader.Kind kind, Object value, Throwable failure) {
+            this.kind = kind;
+            this.value = value;
+            this.failure = failure;
+        }
+    }
+
+    private final ClassLoader resourceLoader;
+    private final AudioClipCache clipCache;
+    private final Map<String, Item> items;
+    private final List<IOException> listingFailures;
+
+    PreloadedResources(ClassLoader resourceLoader, AudioClipCache clipCache, Map<String, Item> items,
+                       List<IOException> listingFailures) {
+        this.resourceLoader = resourceLoader;
+        this.clipCache = clipCache;
+        this.items = items;
+        this.listingFailures = listingFailures;
+    }
+
+    /**
+     * Returns the names of all resources of the batch, in the order they were added.
+     *
+     * @return the resource names
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(new ArrayList<>(items.keySet()));
+    }
+
+    /**
+     * Returns whether the resource has been preloaded successfully.
+     *
+     * @param name the resource name
+     * @return {@code true} if the resource is preloaded
+     */
+    public boolean isLoaded(String name) {
+        Item item = items.get(name);
+        return item != null && item.failure == null;
+    }
+
+    /**
+     * Returns the kind the resource has been preloaded as.
+     *
+     * @param name the resource name
+     * @return the kind, or {@code null} if the resource is not preloaded
+     */
+    public ResourcePreloader.Kind getKind(String name) {
+        Item item = items.get(name);
+        return item == null ? null : item.kind;
+    }
+
+    /**
+     * Returns the failures of the resources of the batch which could not be preloaded.
+     *
+     * @return the failures, by resource name
+     */
+    public Map<String, Throwable> getFailures() {
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        for (Map.Entry<String, Item> entry : items.entrySet()) {
+            if (entry.getValue().failure != null) failures.put(entry.getKey(), entry.getValue().failure);
+        }
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the failures to list the resources matching glob patterns.
+     *
+     * @return the listing failures
+     */
+    public List<IOException> getListingFailures() {
+        return listingFailures;
+    }
+
+    /**
+     * Obtains the decoded PCM data of an audio resource.
+     *
+     * @param name the resource name
+     * @return the decoded PCM data
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    public PcmBuffer getPcmBuffer(String name) throws UnsupportedAudioFileException, IOException {
+        Item item = items.get(name);
+        if (item != null && item.value instanceof PcmBuffer) return (PcmBuffer) item.value;
+        else return clipCache.getPcmBuffer(resourceLoader, name, null);
+    }
+
+    /**
+     * Obtains an audio input stream of the decoded PCM data of an audio resource.
+     *
+     * @param name the resource name
+     * @return a new <code>AudioInputStream</code> reading the decoded PCM data
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    public AudioInputStream getAudioInputStream(String name) throws UnsupportedAudioFileException, IOException {
+        return getPcmBuffer(name).getAudioInputStream();
+    }
+
+    /**
+     * Obtains a MIDI sequence resource.
+     *
+     * @param name the resource name
+     * @return the shared <code>Sequence</code>, or a new one if the resource is not preloaded
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    public Sequence getSequence(String name) throws InvalidMidiDataException, IOException {
+        Item item = items.get(name);
+        if (item != null && item.value instanceof Sequence) return (Sequence) item.value;
+        else return MidiResourceLoader.getSequence(resourceLoader, name);
+    }
+
+    /**
+     * Obtains a soundbank resource.
+     *
+     * @param name the resource name
+     * @return the shared <code>Soundbank</code>, or a new one if the resource is not preloaded
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * soundbank data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    public Soundbank getSoundbank(String name) throws InvalidMidiDataException, IOException {
+        Item item = items.get(name);
+        if (item != null && item.value instanceof Soundbank) return (Soundbank) item.value;
+        else return MidiResourceLoader.getSoundbank(resourceLoader, name);
+    }
+
+}
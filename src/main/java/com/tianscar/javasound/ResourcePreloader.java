@@ -0,0 +1,249 @@
+package com.tianscar.javasound;
+
+import com.tianscar.javasound.midi.MidiResourceLoader;
+import com.tianscar.javasound.midi.spi.MidiResourceReader;
+import com.tianscar.javasound.midi.spi.SoundbankResourceReader;
+import com.tianscar.javasound.sampled.AudioClipCache;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.LoadFuture;
+import com.tianscar.javasound.util.ProviderRegistry;
+import com.tianscar.javasound.util.ResourceScanner;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Resources;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads batches of audio, MIDI sequence and soundbank resources in parallel, ahead of their use.
+ * <p>
+ * Resources are added by name, by glob pattern (see {@link ResourceScanner}) or by a manifest
+ * on the class path listing one name or pattern per line. Lines starting with {@code #} are
+ * comments, and a line may be prefixed with the kind of the resource, such as
+ * {@code audio:sounds/*.wav}, {@code sequence:music/theme.mid} or {@code soundbank:banks/gm.sf2};
+ * resources of unknown kind are first tried as the kinds the {@linkplain com.tianscar.javasound.util.ProviderHints hints}
+ * of the installed readers claim them to be, MIDI before audio, then as audio, sequences and soundbanks.
+ * <p>
+ * Every resource is loaded through {@link com.tianscar.javasound.sampled.AudioResourceLoader} or
+ * {@link MidiResourceLoader}, so all installed readers take part. A resource failing to load does
+ * not stop the batch, its failure is reported in the resulting {@link PreloadedResources}.
+ *
+ * @author Karstian Lee
+ */
+public class ResourcePreloader {
+
+    /**
+     * The kind of a preloaded resource.
+     */
+    public enum Kind {
+        /**
+         * Sampled audio, decoded to PCM.
+         */
+        AUDIO,
+        /**
+         * A MIDI sequence.
+         */
+        SEQUENCE,
+        /**
+         * A soundbank.
+         */
+        SOUNDBANK
+    }
+
+    private final ClassLoader resourceLoader;
+    private final Map<String, Kind> names = new LinkedHashMap<>();
+    private final List<IOException> listingFailures = new ArrayList<>();
+    private Executor executor = ForkJoinPool.commonPool();
+    private AudioClipCache clipCache = AudioClipCache.getDefault();
+
+    /**
+     * Creates a {@code ResourcePreloader}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resources
+     */
+    public ResourcePreloader(ClassLoader resourceLoader) {
+        this.resourceLoader = Objects.requireNonNull(resourceLoader, "resourceLoader cannot be null");
+    }
+
+    /**
+     * Sets the {@code Executor} resources are loaded with, the common fork-join pool by default.
+     *
+     * @param executor the {@code Executor}
+     * @return this preloader
+     */
+    public ResourcePreloader executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor cannot be null");
+        return this;
+    }
+
+    /**
+     * Sets the {@code AudioClipCache} audio is decoded into, {@link AudioClipCache#getDefault()} by default.
+     * The batch keeps the audio it preloaded whatever the budget of the cache, the cache only bounds
+     * the audio decoded for lookups of other resources. To keep all of them as well, pass a cache of
+     * its own with no byte budget, {@code new AudioClipCache(Long.MAX_VALUE)}.
+     *
+     * @param clipCache the {@code AudioClipCache}
+     * @return this preloader
+     */
+    public ResourcePreloader clipCache(AudioClipCache clipCache) {
+        this.clipCache = Objects.requireNonNull(clipCache, "clipCache cannot be null");
+        return this;
+    }
+
+    /**
+     * Adds resources by name or glob pattern.
+     *
+     * @param kind the kind of the resources, or {@code null} to detect it
+     * @param names the resource names or glob patterns
+     * @return this preloader
+     */
+    public ResourcePreloader add(Kind kind, String... names) {
+        for (String name : names) {
+            if (ResourceScanner.isGlob(name)) {
+                try {
+                    for (String match : ResourceScanner.list(resourceLoader, name)) this.names.put(match, kind);
+                }
+                catch (IOException e) {
+                    listingFailures.add(e);
+                }
+            }
+            else this.names.put(name, kind);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the resources listed in a manifest.
+     *
+     * @param manifestName the resource name of the manifest
+     * @return this preloader
+     * @throws IOException if the manifest could not be read
+     */
+    public ResourcePreloader addManifest(String manifestName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Resources.openStream(resourceLoader, manifestName), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                Kind kind = null;
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    kind = Kind.valueOf(line.substring(0, colon).trim().toUpperCase(Locale.ROOT));
+                    line = line.substring(colon + 1).trim();
+                }
+                add(kind, line);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("invalid manifest \"" + manifestName + "\"", e);
+        }
+        return this;
+    }
+
+    /**
+     * Loads all added resources in parallel.
+     *
+     * @return a {@code CompletableFuture} of the loaded resources, which always completes normally
+     * once every resource has been loaded or has failed
+     */
+    public CompletableFuture<PreloadedResources> preloadAsync() {
+        AudioClipCache clipCache = this.clipCache;
+        Map<String, CompletableFuture<PreloadedResources.Item>> loads = new LinkedHashMap<>(names.size());
+        for (Map.Entry<String, Kind> entry : names.entrySet()) {
+            String name = entry.getKey();
+            Kind kind = entry.getValue();
+            loads.put(name, LoadFuture.load(() -> preload(clipCache, name, kind), executor));
+        }
+        List<IOException> listingFailures = new ArrayList<>(this.listingFailures);
+        return CompletableFuture.allOf(loads.values().toArray(new CompletableFuture<?>[0])).handle((ignored, e) -> {
+            Map<String, PreloadedResources.Item> items = new LinkedHashMap<>(loads.size());
+            for (Map.Entry<String, CompletableFuture<PreloadedResources.Item>> entry : loads.entrySet()) {
+                items.put(entry.getKey(), getItem(entry.getValue()));
+            }
+            return new PreloadedResources(resourceLoader, clipCache, items, Collections.unmodifiableList(listingFailures));
+        });
+    }
+
+    /**
+     * Loads all added resources in parallel, and waits for them.
+     *
+     * @return the loaded resources
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    public PreloadedResources preload() throws InterruptedException {
+        try {
+            return preloadAsync().get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private PreloadedResources.Item preload(AudioClipCache clipCache, String name, Kind kind) throws Exception {
+        if (kind != null) return new PreloadedResources.Item(kind, load(clipCache, name, kind), null);
+        Exception failure = null;
+        for (Kind candidate : getCandidates(name)) {
+            try {
+                return new PreloadedResources.Item(candidate, load(clipCache, name, candidate), null);
+            }
+            catch (UnsupportedAudioFileException | InvalidMidiDataException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Orders the kinds to try for an untagged resource: the kinds whose readers claim the resource by
+     * their hints first, MIDI before audio, as the JDK would render a MIDI file as audio.
+     */
+    private List<Kind> getCandidates(String name) throws IOException {
+        List<Kind> candidates = new ArrayList<>(3);
+        try (ResourceSource source = ResourceSource.openHeader(resourceLoader, name)) {
+            if (ProviderRegistry.claims(ProviderRegistry.getProviders(MidiResourceReader.class), name, source)) candidates.add(Kind.SEQUENCE);
+            if (ProviderRegistry.claims(ProviderRegistry.getProviders(SoundbankResourceReader.class), name, source)) candidates.add(Kind.SOUNDBANK);
+            if (ProviderRegistry.claims(ProviderRegistry.getProviders(AudioResourceReader.class), name, source)) candidates.add(Kind.AUDIO);
+        }
+        for (Kind kind : Kind.values()) {
+            if (!candidates.contains(kind)) candidates.add(kind);
+        }
+        return candidates;
+    }
+
+    private Object load(AudioClipCache clipCache, String name, Kind kind) throws Exception {
+        switch (kind) {
+            case AUDIO: return clipCache.getPcmBuffer(resourceLoader, name, null);
+            case SEQUENCE: return MidiResourceLoader.getSequence(resourceLoader, name);
+            case SOUNDBANK: return MidiResourceLoader.getSoundbank(resourceLoader, name);
+            default: throw new AssertionError(kind);
+        }
+    }
+
+    private static PreloadedResources.Item getItem(CompletableFuture<PreloadedResources.Item> load) {
+        try {
+            return load.join();
+        }
+        catch (RuntimeException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            return new PreloadedResources.Item(null, null, cause);
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.tianscar.javasound.midi;
 
 import com.tianscar.javasound.midi.spi.MidiResourceReader;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Signature;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiFileFormat;
@@ -16,19 +18,76 @@ import java.io.InputStream;
  */
 public class JDKMidiResourceReader implements MidiResourceReader {
 
+    private static final String[] FILE_EXTENSIONS = { "mid", "midi", "smf" };
+    private static final String[] MIME_TYPES = { "audio/midi", "audio/x-midi" };
+    private static final Signature[] SIGNATURES = {
+            Signature.of(0, "MThd")
+    };
+
+    /**
+     * Returns {@link #LOWEST_PRIORITY}, so readers of other providers are tried first.
+     *
+     * @return {@link #LOWEST_PRIORITY}
+     */
+    @Override
+    public int getPriority() {
+        return LOWEST_PRIORITY;
+    }
+
+    /**
+     * Returns the file extensions of the standard MIDI files the JDK reads.
+     *
+     * @return the file extensions
+     */
+    @Override
+    public String[] getFileExtensions() {
+        return FILE_EXTENSIONS.clone();
+    }
+
+    /**
+     * Returns the MIME types of the standard MIDI files the JDK reads.
+     *
+     * @return the MIME types
+     */
+    @Override
+    public String[] getMimeTypes() {
+        return MIME_TYPES.clone();
+    }
+
+    /**
+     * Returns the signatures of the standard MIDI files the JDK reads.
+     *
+     * @return the signatures
+     */
+    @Override
+    public Signature[] getSignatures() {
+        return SIGNATURES.clone();
+    }
+
     @Override
     public MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
-        try (InputStream stream = resourceLoader.getResourceAsStream(name)) {
-            if (stream == null) throw new IOException("could not load resource \"" + name + "\" with ClassLoader \"" + resourceLoader + "\"");
-            else return MidiSystem.getMidiFileFormat(stream);
+        try (ResourceSource source = ResourceSource.openHeader(resourceLoader, name)) {
+            return getMidiFileFormat(resourceLoader, name, source.newView());
         }
     }
 
     @Override
     public Sequence getSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
-        InputStream stream = resourceLoader.getResourceAsStream(name);
-        if (stream == null) throw new IOException("could not load resource \"" + name + "\" with ClassLoader \"" + resourceLoader + "\"");
-        else return MidiSystem.getSequence(stream);
+        try (ResourceSource source = ResourceSource.open(resourceLoader, name)) {
+            return getSequence(resourceLoader, name, source.newView());
+        }
+    }
+
+    @Override
+    public MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name, InputStream stream)
+            throws InvalidMidiDataException, IOException {
+        return MidiSystem.getMidiFileFormat(stream);
+    }
+
+    @Override
+    public Sequence getSequence(ClassLoader resourceLoader, String name, InputStream stream)
+            throws InvalidMidiDataException, IOException {
+        return MidiSystem.getSequence(stream);
     }
 
 }
@@ -1,6 +1,8 @@
 package com.tianscar.javasound.midi;
 
 import com.tianscar.javasound.midi.spi.SoundbankResourceReader;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Signature;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiSystem;
@@ -15,12 +17,64 @@ import java.io.InputStream;
  */
 public class JDKSoundbankResourceReader implements SoundbankResourceReader {
 
+    private static final String[] FILE_EXTENSIONS = { "sf2", "dls" };
+    private static final String[] MIME_TYPES = { "audio/x-soundfont", "audio/dls" };
+    private static final Signature[] SIGNATURES = {
+            Signature.of(0, "RIFF").and(8, "sfbk"),
+            Signature.of(0, "RIFF").and(8, "DLS ")
+    };
+
+    /**
+     * Returns {@link #LOWEST_PRIORITY}, so readers of other providers are tried first.
+     *
+     * @return {@link #LOWEST_PRIORITY}
+     */
+    @Override
+    public int getPriority() {
+        return LOWEST_PRIORITY;
+    }
+
+    /**
+     * Returns the file extensions of the SoundFont 2 and DLS files the JDK reads.
+     *
+     * @return the file extensions
+     */
+    @Override
+    public String[] getFileExtensions() {
+        return FILE_EXTENSIONS.clone();
+    }
+
+    /**
+     * Returns the MIME types of the SoundFont 2 and DLS files the JDK reads.
+     *
+     * @return the MIME types
+     */
+    @Override
+    public String[] getMimeTypes() {
+        return MIME_TYPES.clone();
+    }
+
+    /**
+     * Returns the signatures of the SoundFont 2 and DLS files the JDK reads.
+     *
+     * @return the signatures
+     */
+    @Override
+    public Signature[] getSignatures() {
+        return SIGNATURES.clone();
+    }
+
     @Override
     public Soundbank getSoundbank(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
-        try (InputStream stream = resourceLoader.getResourceAsStream(name)) {
-            if (stream == null) throw new IOException("could not load resource \"" + name + "\" with ClassLoader \"" + resourceLoader + "\"");
-            else return MidiSystem.getSoundbank(stream);
+        try (ResourceSource source = ResourceSource.open(resourceLoader, name)) {
+            return getSoundbank(resourceLoader, name, source.newView());
         }
     }
 
+    @Override
+    public Soundbank getSoundbank(ClassLoader resourceLoader, String name, InputStream stream)
+            throws InvalidMidiDataException, IOException {
+        return MidiSystem.getSoundbank(stream);
+    }
+
 }
@@ -2,25 +2,357 @@ package com.tianscar.javasound.midi;
 
 import com.tianscar.javasound.midi.spi.MidiResourceReader;
 import com.tianscar.javasound.midi.spi.SoundbankResourceReader;
+import com.tianscar.javasound.util.FormatIndex;
+import com.tianscar.javasound.util.LoadFuture;
+import com.tianscar.javasound.util.LoadRecorder;
+import com.tianscar.javasound.util.LoaderExecutors;
+import com.tianscar.javasound.util.ProviderRegistry;
+import com.tianscar.javasound.util.ReaderAffinityCache;
+import com.tianscar.javasound.util.ResourceLoadEvent;
+import com.tianscar.javasound.util.ResourceLoadListener;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.SingleFlight;
+import com.tianscar.javasound.util.WarmupStore;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiFileFormat;
 import javax.sound.midi.Sequence;
 import javax.sound.midi.Soundbank;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ServiceLoader;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The factory class to load midi/soundbank from resources.
+ * <p>
+ * The static methods load with the {@linkplain #getDefault() default loader}, which uses the installed
+ * readers and the shared caches. Loaders with their own readers, {@code ClassLoader}, caches, executor
+ * and listeners are made with a {@linkplain #builder() builder}, so differently configured loaders can
+ * be used side by side in one JVM. Loaders are immutable and thread-safe.
  *
  * @author Karstian Lee
  */
 public class MidiResourceLoader {
 
-    private MidiResourceLoader() {
-        throw new UnsupportedOperationException();
+    /**
+     * Hands a sequence loaded once over to concurrent callers: each caller gets its own
+     * copy of the sequence, as sequences are mutable.
+     */
+    private static final SingleFlight.Share<Sequence, PackedSequence> SHARED_SEQUENCE =
+            new SingleFlight.Share<Sequence, PackedSequence>() {
+        @Override
+        public PackedSequence share(Sequence sequence) {
+            return PackedSequence.pack(sequence);
+        }
+        @Override
+        public Sequence copy(PackedSequence shared) throws InvalidMidiDataException {
+            return shared.toSequence();
+        }
+    };
+
+    /**
+     * The single-flight operation of packed sequences loaded for a {@link SequenceCache}, which are
+     * immutable and handed over to concurrent callers as they are.
+     */
+    private static final String PACKED_SEQUENCE = "PACKED_SEQUENCE";
+
+    private static final MidiResourceLoader DEFAULT = builder()
+            .affinityCache(ReaderAffinityCache.getDefault())
+            .singleFlight(SingleFlight.getDefault())
+            .build();
+
+    /**
+     * Returns the loader the static methods use: with the installed readers, the {@linkplain ReaderAffinityCache#getDefault()
+     * shared reader affinity cache}, the {@linkplain SingleFlight#getDefault() shared single-flight coordination},
+     * the {@linkplain WarmupStore#getDefault() shared warm-up store}, no sequence cache and the
+     * {@linkplain LoaderExecutors#getDefaultExecutor() default executor}.
+     *
+     * @return the default loader
+     */
+    public static MidiResourceLoader getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a builder of loaders.
+     *
+     * @return a new {@code Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder of {@code MidiResourceLoader}s. Builders are not thread-safe, the loaders they build are.
+     */
+    public static final class Builder {
+
+        private List<MidiResourceReader> midiReaders;
+        private List<SoundbankResourceReader> soundbankReaders;
+        private ClassLoader resourceLoader;
+        private ReaderAffinityCache affinityCache;
+        private boolean affinityCacheSet;
+        private SingleFlight singleFlight;
+        private boolean singleFlightSet;
+        private SequenceCache sequenceCache;
+        private WarmupStore warmupStore;
+        private boolean warmupStoreSet;
+        private Executor executor;
+        private final List<ResourceLoadListener> listeners = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the MIDI readers to load with, tried in the order of their priority.
+         * By default, the installed readers are used.
+         *
+         * @param midiReaders the readers, or {@code null} to use the installed readers
+         * @return this builder
+         */
+        public Builder midiReaders(List<? extends MidiResourceReader> midiReaders) {
+            this.midiReaders = midiReaders == null ? null : ProviderRegistry.prioritized(midiReaders);
+            return this;
+        }
+
+        /**
+         * Sets the soundbank readers to load with, tried in the order of their priority.
+         * By default, the installed readers are used.
+         *
+         * @param soundbankReaders the readers, or {@code null} to use the installed readers
+         * @return this builder
+         */
+        public Builder soundbankReaders(List<? extends SoundbankResourceReader> soundbankReaders) {
+            this.soundbankReaders = soundbankReaders == null ? null : ProviderRegistry.prioritized(soundbankReaders);
+            return this;
+        }
+
+        /**
+         * Sets the {@code ClassLoader} the instance methods load resources with.
+         * By default, the context {@code ClassLoader} of the calling thread is used.
+         *
+         * @param resourceLoader the {@code ClassLoader} to load resources with, or {@code null} for the context {@code ClassLoader}
+         * @return this builder
+         */
+        public Builder resourceLoader(ClassLoader resourceLoader) {
+            this.resourceLoader = resourceLoader;
+            return this;
+        }
+
+        /**
+         * Sets the cache of which reader recognized which resource. By default, the
+         * {@linkplain ReaderAffinityCache#getDefault() shared cache} is used with the installed readers,
+         * and a cache of the loader's own with given readers.
+         *
+         * @param affinityCache the reader affinity cache, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder affinityCache(ReaderAffinityCache affinityCache) {
+            this.affinityCache = affinityCache;
+            this.affinityCacheSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the coordination of concurrent loads of the same resource. By default, the loader
+         * has its own, which keeps no failures.
+         *
+         * @param singleFlight the single-flight coordination, or {@code null} to load every call on its own
+         * @return this builder
+         */
+        public Builder singleFlight(SingleFlight singleFlight) {
+            this.singleFlight = singleFlight;
+            this.singleFlightSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the cache {@link #getSequence(String)} keeps sequences in.
+         * By default, sequences are not kept.
+         *
+         * @param sequenceCache the sequence cache, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder sequenceCache(SequenceCache sequenceCache) {
+            this.sequenceCache = sequenceCache;
+            return this;
+        }
+
+        /**
+         * Sets the store of resources read ahead of their first load, see {@link WarmupStore}. By default, the
+         * {@linkplain WarmupStore#getDefault() shared store} is used.
+         *
+         * @param warmupStore the warm-up store, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder warmupStore(WarmupStore warmupStore) {
+            this.warmupStore = warmupStore;
+            this.warmupStoreSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the {@code Executor} of the asynchronous loads.
+         * By default, the {@linkplain LoaderExecutors#getDefaultExecutor() default executor} is used.
+         *
+         * @param executor the {@code Executor}, or {@code null} for the default executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Adds a listener of the calls of the loader, in addition to the {@linkplain com.tianscar.javasound.util.ResourceLoadListeners
+         * registered listeners}.
+         *
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder listener(ResourceLoadListener listener) {
+            listeners.add(Objects.requireNonNull(listener, "listener cannot be null"));
+            return this;
+        }
+
+        /**
+         * Builds a loader.
+         *
+         * @return a new {@code MidiResourceLoader}
+         */
+        public MidiResourceLoader build() {
+            return new MidiResourceLoader(this);
+        }
+
+    }
+
+    private final List<MidiResourceReader> midiReaders;
+    private final List<SoundbankResourceReader> soundbankReaders;
+    private final ClassLoader resourceLoader;
+    private final ReaderAffinityCache affinityCache;
+    private final SingleFlight singleFlight;
+    private final SequenceCache sequenceCache;
+    private final WarmupStore warmupStore;
+    private final Executor executor;
+    private final ResourceLoadListener[] listeners;
+
+    private MidiResourceLoader(Builder builder) {
+        this.midiReaders = builder.midiReaders;
+        this.soundbankReaders = builder.soundbankReaders;
+        this.resourceLoader = builder.resourceLoader;
+        if (builder.affinityCacheSet) this.affinityCache = builder.affinityCache;
+        else if (builder.midiReaders == null && builder.soundbankReaders == null) this.affinityCache = ReaderAffinityCache.getDefault();
+        else this.affinityCache = new ReaderAffinityCache(ReaderAffinityCache.DEFAULT_MAX_ENTRIES,
+                    ReaderAffinityCache.DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+        this.singleFlight = builder.singleFlightSet ? builder.singleFlight : new SingleFlight(0, TimeUnit.MILLISECONDS);
+        this.sequenceCache = builder.sequenceCache;
+        this.warmupStore = builder.warmupStoreSet ? builder.warmupStore : WarmupStore.getDefault();
+        this.executor = builder.executor;
+        this.listeners = builder.listeners.toArray(new ResourceLoadListener[0]);
+    }
+
+    /**
+     * Returns the {@code ClassLoader} the instance methods load resources with.
+     *
+     * @return the configured {@code ClassLoader}, or else the context {@code ClassLoader} of the calling thread
+     */
+    public ClassLoader getResourceLoader() {
+        if (resourceLoader != null) return resourceLoader;
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        return contextLoader == null ? MidiResourceLoader.class.getClassLoader() : contextLoader;
+    }
+
+    /**
+     * Obtains the MIDI file format of the data in the specified resource.
+     *
+     * @param  name the resource name from which file format information should be
+     * extracted
+     * @return a <code>MidiFileFormat</code> object describing the MIDI file
+     * format
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * file data recognized by the readers of this loader
+     * @throws IOException if an I/O exception occurs while accessing the resource
+     * @see #getMidiFileFormat(ClassLoader, String)
+     */
+    public MidiFileFormat getMidiFileFormat(String name) throws InvalidMidiDataException, IOException {
+        return loadMidiFileFormat(getResourceLoader(), name);
+    }
+
+    /**
+     * Obtains a MIDI sequence from the specified resource, through the sequence cache of this loader
+     * if it has one.
+     *
+     * @param  name the resource name from which the <code>Sequence</code> should be
+     * constructed
+     * @return a <code>Sequence</code> object based on the MIDI file data
+     * pointed to by the resource
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * file data recognized by the readers of this loader
+     * @throws IOException if an I/O exception occurs while accessing the resource
+     * @see #getSequence(ClassLoader, String)
+     */
+    public Sequence getSequence(String name) throws InvalidMidiDataException, IOException {
+        return loadSequence(getResourceLoader(), name, sequenceCache);
+    }
+
+    /**
+     * Constructs a <code>Soundbank</code> by reading it from the specified resource.
+     *
+     * @param  name the source of the sound bank data
+     * @return the sound bank
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * soundbank data recognized by the readers of this loader
+     * @throws IOException if an I/O error occurred when loading the soundbank
+     * @see #getSoundbank(ClassLoader, String)
+     */
+    public Soundbank getSoundbank(String name) throws InvalidMidiDataException, IOException {
+        return loadSoundbank(getResourceLoader(), name);
+    }
+
+    /**
+     * Obtains the MIDI file format of the data in the specified resource asynchronously, with the executor of this loader.
+     * Cancelling the returned future closes the resource.
+     *
+     * @param  name the resource name from which file format information should be
+     * extracted
+     * @return a <code>CompletableFuture</code> of the MIDI file format, completed exceptionally
+     * as {@link #getMidiFileFormat(String)} would throw
+     */
+    public CompletableFuture<MidiFileFormat> getMidiFileFormatAsync(String name) {
+        ClassLoader resourceLoader = getResourceLoader();
+        return LoadFuture.load(() -> loadMidiFileFormat(resourceLoader, name), getExecutor());
+    }
+
+    /**
+     * Obtains a MIDI sequence from the specified resource asynchronously, with the executor of this loader.
+     * Cancelling the returned future closes the resource.
+     *
+     * @param  name the resource name from which the <code>Sequence</code> should be
+     * constructed
+     * @return a <code>CompletableFuture</code> of the sequence, completed exceptionally
+     * as {@link #getSequence(String)} would throw
+     */
+    public CompletableFuture<Sequence> getSequenceAsync(String name) {
+        ClassLoader resourceLoader = getResourceLoader();
+        return LoadFuture.load(() -> loadSequence(resourceLoader, name, sequenceCache), getExecutor());
+    }
+
+    /**
+     * Constructs a <code>Soundbank</code> by reading it from the specified resource asynchronously,
+     * with the executor of this loader. Cancelling the returned future closes the resource.
+     *
+     * @param  name the source of the sound bank data
+     * @return a <code>CompletableFuture</code> of the sound bank, completed exceptionally
+     * as {@link #getSoundbank(String)} would throw
+     */
+    public CompletableFuture<Soundbank> getSoundbankAsync(String name) {
+        ClassLoader resourceLoader = getResourceLoader();
+        return LoadFuture.load(() -> loadSoundbank(resourceLoader, name), getExecutor());
     }
 
     /**
@@ -44,24 +376,63 @@ public class MidiResourceLoader {
      * @throws IOException if an I/O exception occurs while accessing the resource
      */
     public static MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return DEFAULT.loadMidiFileFormat(resourceLoader, name);
+    }
+
+    MidiFileFormat loadMidiFileFormat(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return join(ResourceLoadEvent.Operation.MIDI_FILE_FORMAT, resourceLoader, name,
+                () -> readMidiFileFormat(resourceLoader, name), null);
+    }
 
-        List<MidiResourceReader> providers = getMidiResourceReaders();
-        MidiFileFormat format = null;
+    private MidiFileFormat readMidiFileFormat(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
 
-        for (MidiResourceReader reader : providers) {
-            try {
-                format = reader.getMidiFileFormat(resourceLoader, name); // throws IOException
-                break;
+        LoadRecorder recorder = LoadRecorder.start(ResourceLoadEvent.Operation.MIDI_FILE_FORMAT, resourceLoader, name, listeners);
+        try {
+            FormatIndex.Entry entry = getIndexEntry(resourceLoader, name);
+            if (entry != null && entry.getMidiFileFormat() != null) {
+                recorder.served(entry.getReaderClassName());
+                return entry.getMidiFileFormat();
             }
-            catch (InvalidMidiDataException ignored) {
+
+            String preferred = getPreferredMidiResourceReader(resourceLoader, name);
+            MidiFileFormat format = null;
+
+            recorder.opening();
+            try (ResourceSource source = ResourceSource.openHeader(resourceLoader, name, warmupStore)) {
+                recorder.opened(source);
+                List<MidiResourceReader> providers = ProviderRegistry.dispatch(getMidiResourceReaders(), preferred, name, source);
+                for (MidiResourceReader reader : providers) {
+                    ByteBuffer buffer = source.getByteBuffer();
+                    recorder.attempting(reader);
+                    try {
+                        format = buffer == null ? reader.getMidiFileFormat(resourceLoader, name, source.newView())
+                                : reader.getMidiFileFormat(resourceLoader, name, buffer); // throws IOException
+                        recorder.served(reader);
+                        if (affinityCache != null) affinityCache.putReader(resourceLoader, name, MidiResourceReader.class, reader);
+                        break;
+                    }
+                    catch (InvalidMidiDataException ignored) {
+                    }
+                    finally {
+                        recorder.attempted();
+                    }
+                }
             }
-        }
 
-        if (format == null) {
-            throw new InvalidMidiDataException("resource is not a supported file type");
+            if (format == null) {
+                if (affinityCache != null) affinityCache.putUnsupported(resourceLoader, name, MidiResourceReader.class);
+                throw new InvalidMidiDataException("resource is not a supported file type");
+            }
+            else {
+                return format;
+            }
+        }
+        catch (Throwable e) {
+            recorder.failed(e);
+            throw e;
         }
-        else {
-            return format;
+        finally {
+            recorder.finish();
         }
     }
 
@@ -76,6 +447,9 @@ public class MidiResourceLoader {
      * will also fail with an InvalidMidiDataException if a compatible file reader
      * is installed, but encounters errors while constructing the <code>Sequence</code>
      * object from the file data.
+     * <p>
+     * Concurrent calls for the same resource load it once, and each get their own
+     * <code>Sequence</code>, see {@link SingleFlight}.
      *
      * @param  resourceLoader the {@code ClassLoader} to load resource
      * @param  name the resource name from which the <code>Sequence</code> should be
@@ -87,23 +461,73 @@ public class MidiResourceLoader {
      * @throws IOException if an I/O exception occurs while accessing the resource
      */
     public static Sequence getSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return DEFAULT.loadSequence(resourceLoader, name);
+    }
+
+    Sequence loadSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return join(ResourceLoadEvent.Operation.SEQUENCE, resourceLoader, name,
+                () -> readSequence(resourceLoader, name), SHARED_SEQUENCE);
+    }
 
-        List<MidiResourceReader> providers = getMidiResourceReaders();
-        Sequence sequence = null;
+    /**
+     * Loads the packed sequence of a resource for a {@link SequenceCache}: concurrent misses of the
+     * same resource load and pack it once, and all get the same packed sequence.
+     */
+    PackedSequence loadPackedSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return join(PACKED_SEQUENCE, resourceLoader, name, () -> PackedSequence.pack(readSequence(resourceLoader, name)), null);
+    }
 
-        for (MidiResourceReader reader : providers) {
-            try {
-                sequence = reader.getSequence(resourceLoader, name); // throws IOException
-                break;
-            } catch (InvalidMidiDataException ignored) {
+    /**
+     * Returns the MIDI readers this loader was built with.
+     *
+     * @return the readers, or {@code null} if it loads with the installed readers
+     */
+    List<MidiResourceReader> getConfiguredMidiReaders() {
+        return midiReaders;
+    }
+
+    private Sequence readSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+
+        LoadRecorder recorder = LoadRecorder.start(ResourceLoadEvent.Operation.SEQUENCE, resourceLoader, name, listeners);
+        try {
+            String preferred = getPreferredMidiResourceReader(resourceLoader, name);
+            Sequence sequence = null;
+
+            recorder.opening();
+            try (ResourceSource source = ResourceSource.open(resourceLoader, name, warmupStore)) {
+                recorder.opened(source);
+                List<MidiResourceReader> providers = ProviderRegistry.dispatch(getMidiResourceReaders(), preferred, name, source);
+                for (MidiResourceReader reader : providers) {
+                    ByteBuffer buffer = source.getByteBuffer();
+                    recorder.attempting(reader);
+                    try {
+                        sequence = buffer == null ? reader.getSequence(resourceLoader, name, source.newView())
+                                : reader.getSequence(resourceLoader, name, buffer); // throws IOException
+                        recorder.served(reader);
+                        if (affinityCache != null) affinityCache.putReader(resourceLoader, name, MidiResourceReader.class, reader);
+                        break;
+                    } catch (InvalidMidiDataException ignored) {
+                    }
+                    finally {
+                        recorder.attempted();
+                    }
+                }
             }
-        }
 
-        if (sequence == null) {
-            throw new InvalidMidiDataException("could not get sequence from resource");
+            if (sequence == null) {
+                if (affinityCache != null) affinityCache.putUnsupported(resourceLoader, name, MidiResourceReader.class);
+                throw new InvalidMidiDataException("could not get sequence from resource");
+            }
+            else {
+                return sequence;
+            }
+        }
+        catch (Throwable e) {
+            recorder.failed(e);
+            throw e;
         }
-        else {
-            return sequence;
+        finally {
+            recorder.finish();
         }
     }
 
@@ -119,38 +543,228 @@ public class MidiResourceLoader {
      * @throws IOException if an I/O error occurred when loading the soundbank
      */
     public static Soundbank getSoundbank(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return DEFAULT.loadSoundbank(resourceLoader, name);
+    }
 
-        SoundbankResourceReader sp;
-        Soundbank s;
+    Soundbank loadSoundbank(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return join(ResourceLoadEvent.Operation.SOUNDBANK, resourceLoader, name,
+                () -> readSoundbank(resourceLoader, name), null);
+    }
 
-        List<SoundbankResourceReader> providers = getSoundbankResourceReaders();
+    private Soundbank readSoundbank(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
 
-        for (SoundbankResourceReader provider : providers) {
-            sp = provider;
-            s = sp.getSoundbank(resourceLoader, name);
+        LoadRecorder recorder = LoadRecorder.start(ResourceLoadEvent.Operation.SOUNDBANK, resourceLoader, name, listeners);
+        try {
+            SoundbankResourceReader sp;
+            Soundbank s;
 
-            if (s != null) {
-                return s;
+            String preferred = getPreferredSoundbankResourceReader(resourceLoader, name);
+
+            recorder.opening();
+            try (ResourceSource source = ResourceSource.open(resourceLoader, name, warmupStore)) {
+                recorder.opened(source);
+                List<SoundbankResourceReader> providers = ProviderRegistry.dispatch(getSoundbankResourceReaders(), preferred, name, source);
+                for (SoundbankResourceReader provider : providers) {
+                    sp = provider;
+                    ByteBuffer buffer = source.getByteBuffer();
+                    recorder.attempting(sp);
+                    try {
+                        s = buffer == null ? sp.getSoundbank(resourceLoader, name, source.newView())
+                                : sp.getSoundbank(resourceLoader, name, buffer);
+                    }
+                    catch (InvalidMidiDataException ignored) {
+                        continue;
+                    }
+                    finally {
+                        recorder.attempted();
+                    }
+
+                    if (s != null) {
+                        recorder.served(sp);
+                        if (affinityCache != null) affinityCache.putReader(resourceLoader, name, SoundbankResourceReader.class, sp);
+                        return s;
+                    }
+                }
             }
+            if (affinityCache != null) affinityCache.putUnsupported(resourceLoader, name, SoundbankResourceReader.class);
+            throw new InvalidMidiDataException("cannot get soundbank from resource");
+        }
+        catch (Throwable e) {
+            recorder.failed(e);
+            throw e;
         }
-        throw new InvalidMidiDataException("cannot get soundbank from resource");
+        finally {
+            recorder.finish();
+        }
+    }
 
+    /**
+     * Obtains the MIDI file format of the data in the specified resource asynchronously, with the
+     * {@link LoaderExecutors#getDefaultExecutor() default executor}.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name from which file format information should be
+     * extracted
+     * @return a <code>CompletableFuture</code> of the MIDI file format, completed exceptionally
+     * as {@link #getMidiFileFormat(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<MidiFileFormat> getMidiFileFormatAsync(ClassLoader resourceLoader, String name) {
+        return getMidiFileFormatAsync(resourceLoader, name, LoaderExecutors.getDefaultExecutor());
     }
 
-    private static List<SoundbankResourceReader> getSoundbankResourceReaders() {
-        return getProviders(SoundbankResourceReader.class);
+    /**
+     * Obtains the MIDI file format of the data in the specified resource asynchronously.
+     * Cancelling the returned future closes the resource.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name from which file format information should be
+     * extracted
+     * @param  executor the {@code Executor} to load with
+     * @return a <code>CompletableFuture</code> of the MIDI file format, completed exceptionally
+     * as {@link #getMidiFileFormat(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<MidiFileFormat> getMidiFileFormatAsync(ClassLoader resourceLoader, String name,
+                                                                          Executor executor) {
+        return LoadFuture.load(() -> DEFAULT.loadMidiFileFormat(resourceLoader, name), executor);
     }
 
-    private static List<MidiResourceReader> getMidiResourceReaders() {
-        return getProviders(MidiResourceReader.class);
+    /**
+     * Obtains a MIDI sequence from the specified resource asynchronously, with the
+     * {@link LoaderExecutors#getDefaultExecutor() default executor}.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name from which the <code>Sequence</code> should be
+     * constructed
+     * @return a <code>CompletableFuture</code> of the sequence, completed exceptionally
+     * as {@link #getSequence(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<Sequence> getSequenceAsync(ClassLoader resourceLoader, String name) {
+        return getSequenceAsync(resourceLoader, name, LoaderExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Obtains a MIDI sequence from the specified resource asynchronously.
+     * Cancelling the returned future closes the resource.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name from which the <code>Sequence</code> should be
+     * constructed
+     * @param  executor the {@code Executor} to load with
+     * @return a <code>CompletableFuture</code> of the sequence, completed exceptionally
+     * as {@link #getSequence(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<Sequence> getSequenceAsync(ClassLoader resourceLoader, String name, Executor executor) {
+        return LoadFuture.load(() -> DEFAULT.loadSequence(resourceLoader, name), executor);
+    }
+
+    /**
+     * Constructs a <code>Soundbank</code> by reading it from the specified resource asynchronously, with the
+     * {@link LoaderExecutors#getDefaultExecutor() default executor}.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the source of the sound bank data
+     * @return a <code>CompletableFuture</code> of the sound bank, completed exceptionally
+     * as {@link #getSoundbank(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<Soundbank> getSoundbankAsync(ClassLoader resourceLoader, String name) {
+        return getSoundbankAsync(resourceLoader, name, LoaderExecutors.getDefaultExecutor());
     }
 
-    private static<T> List<T> getProviders(Class<T> providerClass) {
-        List<T> providers = new ArrayList<>();
-        for (T t : ServiceLoader.load(providerClass)) {
-            if (providerClass.isInstance(t)) providers.add(t);
+    /**
+     * Constructs a <code>Soundbank</code> by reading it from the specified resource asynchronously.
+     * Cancelling the returned future closes the resource.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the source of the sound bank data
+     * @param  executor the {@code Executor} to load with
+     * @return a <code>CompletableFuture</code> of the sound bank, completed exceptionally
+     * as {@link #getSoundbank(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<Soundbank> getSoundbankAsync(ClassLoader resourceLoader, String name, Executor executor) {
+        return LoadFuture.load(() -> DEFAULT.loadSoundbank(resourceLoader, name), executor);
+    }
+
+    /**
+     * Runs a load, or joins the same load already running, see {@link SingleFlight}.
+     */
+    private <T, S> T join(Object operation, ClassLoader resourceLoader, String name,
+                          LoadFuture.Load<T> load, SingleFlight.Share<T, S> share)
+            throws InvalidMidiDataException, IOException {
+        try {
+            if (singleFlight == null) return load.load();
+            else return singleFlight.execute(resourceLoader, name, operation, load, share);
+        }
+        catch (InvalidMidiDataException | IOException | RuntimeException e) {
+            throw e;
         }
-        return providers;
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Sequence loadSequence(ClassLoader resourceLoader, String name, SequenceCache sequenceCache)
+            throws InvalidMidiDataException, IOException {
+        if (sequenceCache == null) return loadSequence(resourceLoader, name);
+        else return sequenceCache.getPackedSequence(this, resourceLoader, name).toSequence();
+    }
+
+    private Executor getExecutor() {
+        return executor == null ? LoaderExecutors.getDefaultExecutor() : executor;
+    }
+
+    private List<SoundbankResourceReader> getSoundbankResourceReaders() {
+        return soundbankReaders == null ? ProviderRegistry.getProviders(SoundbankResourceReader.class) : soundbankReaders;
+    }
+
+    private List<MidiResourceReader> getMidiResourceReaders() {
+        return midiReaders == null ? ProviderRegistry.getProviders(MidiResourceReader.class) : midiReaders;
+    }
+
+    /**
+     * Obtains the class name of the soundbank resource reader recorded in the reader affinity cache
+     * for the given resource.
+     *
+     * @return the reader class name, or {@code null} if nothing is known of the resource
+     * @throws InvalidMidiDataException if no reader recognized the resource recently
+     */
+    private String getPreferredSoundbankResourceReader(ClassLoader resourceLoader, String name)
+            throws InvalidMidiDataException {
+        ReaderAffinityCache.Affinity affinity = affinityCache == null ? null : affinityCache.get(resourceLoader, name, SoundbankResourceReader.class);
+        if (affinity == null) return null;
+        else if (affinity.isUnsupported()) throw new InvalidMidiDataException("cannot get soundbank from resource");
+        else return affinity.getReaderClassName();
+    }
+
+    /**
+     * Looks up the format index entry of the given resource, unless it names a reader other than the
+     * MIDI resource readers this loader was built with.
+     *
+     * @return the entry, or {@code null} if there is none this loader can use
+     */
+    private FormatIndex.Entry getIndexEntry(ClassLoader resourceLoader, String name) {
+        FormatIndex.Entry entry = FormatIndex.get(resourceLoader).getEntry(name);
+        if (entry == null || midiReaders == null) return entry;
+        for (MidiResourceReader reader : midiReaders) {
+            if (reader.getClass().getName().equals(entry.getReaderClassName())) return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Obtains the class name of the MIDI resource reader recorded in the format index or the reader
+     * affinity cache for the given resource.
+     *
+     * @return the reader class name, or {@code null} if nothing is known of the resource
+     * @throws InvalidMidiDataException if no reader recognized the resource recently
+     */
+    private String getPreferredMidiResourceReader(ClassLoader resourceLoader, String name)
+            throws InvalidMidiDataException {
+        FormatIndex.Entry entry = getIndexEntry(resourceLoader, name);
+        if (entry != null && entry.getMidiFileFormat() != null) return entry.getReaderClassName();
+        ReaderAffinityCache.Affinity affinity = affinityCache == null ? null : affinityCache.get(resourceLoader, name, MidiResourceReader.class);
+        if (affinity == null) return null;
+        else if (affinity.isUnsupported()) throw new InvalidMidiDataException("resource is not a supported file type");
+        else return affinity.getReaderClassName();
     }
 
 }
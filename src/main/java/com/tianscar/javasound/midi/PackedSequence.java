@@ -0,0 +1,239 @@
+package com.tianscar.javasound.midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.util.Arrays;
+
+/**
+ * An immutable, compact form of a MIDI {@code Sequence}, kept in primitive arrays.
+ * <p>
+ * Every track is packed into an array of ticks and an array of message words: a short message
+ * is packed as its status and data bytes, system exclusive and meta messages, which are rare,
+ * are kept aside as {@code MidiMessage} objects. A packed sequence holds no object per event,
+ * and can be {@link #toSequence() materialized} into a new {@code Sequence} without parsing,
+ * or {@link #send(Receiver, long) sent} to a {@code Receiver} without allocating per event.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public final class PackedSequence {
+
+    private static final int META = 0xFF;
+    private static final int META_END_OF_TRACK = 0x2F;
+    private static final int META_TEMPO = 0x51;
+    private static final int DEFAULT_TEMPO = 500000; // microseconds per quarter note, 120 bpm
+
+    private final float divisionType;
+    private final int resolution;
+    private final long[][] ticks;
+    private final int[][] words; // status | data1 << 8 | data2 << 16, or ~index of a long message
+    private final MidiMessage[][] longMessages;
+    private final long[] endTicks;
+    private final long tickLength;
+    private final long byteSize;
+
+    private PackedSequence(float divisionType, int resolution, long[][] ticks, int[][] words,
+                           MidiMessage[][] longMessages, long[] endTicks) {
+        this.divisionType = divisionType;
+        this.resolution = resolution;
+        this.ticks = ticks;
+        this.words = words;
+        this.longMessages = longMessages;
+        this.endTicks = endTicks;
+        long tickLength = 0;
+        for (long endTick : endTicks) tickLength = Math.max(tickLength, endTick);
+        this.tickLength = tickLength;
+        long byteSize = 0;
+        for (int t = 0; t < ticks.length; t ++) {
+            byteSize += ticks[t].length * 12L;
+            for (MidiMessage message : longMessages[t]) byteSize += 32 + message.getLength();
+        }
+        this.byteSize = byteSize;
+    }
+
+    /**
+     * Packs a sequence. The sequence is left untouched, later changes to it are not reflected.
+     *
+     * @param sequence the sequence to pack
+     * @return the packed sequence
+     */
+    public static PackedSequence pack(Sequence sequence) {
+        Track[] tracks = sequence.getTracks();
+        long[][] ticks = new long[tracks.length][];
+        int[][] words = new int[tracks.length][];
+        MidiMessage[][] longMessages = new MidiMessage[tracks.length][];
+        long[] endTicks = new long[tracks.length];
+        for (int t = 0; t < tracks.length; t ++) {
+            Track track = tracks[t];
+            int size = track.size();
+            long[] trackTicks = new long[size];
+            int[] trackWords = new int[size];
+            MidiMessage[] trackLongMessages = new MidiMessage[0];
+            int count = 0;
+            int longCount = 0;
+            for (int i = 0; i < size; i ++) {
+                MidiEvent event = track.get(i);
+                MidiMessage message = event.getMessage();
+                endTicks[t] = Math.max(endTicks[t], event.getTick());
+                if (message instanceof MetaMessage && ((MetaMessage) message).getType() == META_END_OF_TRACK) continue;
+                trackTicks[count] = event.getTick();
+                if (message instanceof ShortMessage) {
+                    ShortMessage shortMessage = (ShortMessage) message;
+                    trackWords[count] = shortMessage.getStatus() | shortMessage.getData1() << 8 | shortMessage.getData2() << 16;
+                }
+                else {
+                    if (longCount == trackLongMessages.length) {
+                        trackLongMessages = Arrays.copyOf(trackLongMessages, Math.max(4, longCount * 2));
+                    }
+                    trackLongMessages[longCount] = (MidiMessage) message.clone();
+                    trackWords[count] = ~longCount;
+                    longCount ++;
+                }
+                count ++;
+            }
+            ticks[t] = Arrays.copyOf(trackTicks, count);
+            words[t] = Arrays.copyOf(trackWords, count);
+            longMessages[t] = Arrays.copyOf(trackLongMessages, longCount);
+        }
+        return new PackedSequence(sequence.getDivisionType(), sequence.getResolution(), ticks, words, longMessages, endTicks);
+    }
+
+    /**
+     * Returns the timing division type.
+     *
+     * @return the division type, as in {@link Sequence#getDivisionType()}
+     */
+    public float getDivisionType() {
+        return divisionType;
+    }
+
+    /**
+     * Returns the timing resolution.
+     *
+     * @return the resolution, as in {@link Sequence#getResolution()}
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the number of tracks.
+     *
+     * @return the number of tracks
+     */
+    public int getTrackCount() {
+        return ticks.length;
+    }
+
+    /**
+     * Returns the number of events of a track, not counting its end of track event.
+     *
+     * @param track the track index
+     * @return the number of events
+     */
+    public int getEventCount(int track) {
+        return ticks[track].length;
+    }
+
+    /**
+     * Returns the length of the sequence.
+     *
+     * @return the length, in ticks
+     */
+    public long getTickLength() {
+        return tickLength;
+    }
+
+    /**
+     * Returns the approximate memory held by this packed sequence.
+     *
+     * @return the size, in bytes
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Materializes this packed sequence into a new {@code Sequence}, which the caller owns.
+     *
+     * @return a new {@code Sequence} with the packed events
+     * @throws InvalidMidiDataException never for a sequence packed from valid data
+     */
+    public Sequence toSequence() throws InvalidMidiDataException {
+        Sequence sequence = new Sequence(divisionType, resolution, ticks.length);
+        Track[] tracks = sequence.getTracks();
+        for (int t = 0; t < tracks.length; t ++) {
+            Track track = tracks[t];
+            long[] trackTicks = ticks[t];
+            int[] trackWords = words[t];
+            for (int i = 0; i < trackTicks.length; i ++) {
+                int word = trackWords[i];
+                MidiMessage message;
+                if (word < 0) message = (MidiMessage) longMessages[t][~word].clone();
+                else message = new ShortMessage(word & 0xFF, (word >>> 8) & 0xFF, (word >>> 16) & 0xFF);
+                track.add(new MidiEvent(message, trackTicks[i]));
+            }
+            track.add(new MidiEvent(new MetaMessage(META_END_OF_TRACK, new byte[0], 0), endTicks[t]));
+        }
+        return sequence;
+    }
+
+    /**
+     * Sends all events of all tracks to a {@code Receiver}, in tick order, time-stamped according to
+     * the timing division and the tempo changes of the sequence. Meta messages are not sent.
+     * <p>
+     * Nothing is allocated per event: short messages are all sent through a single {@code ShortMessage}
+     * instance, updated before each call, and system exclusive messages are shared instances. A
+     * {@code Receiver} keeping the messages it is sent must clone them.
+     *
+     * @param receiver the receiver
+     * @param startMicros the time stamp of tick {@code 0}, in microseconds
+     * @throws InvalidMidiDataException never for a sequence packed from valid data
+     */
+    public void send(Receiver receiver, long startMicros) throws InvalidMidiDataException {
+        ShortMessage shortMessage = new ShortMessage();
+        int[] cursors = new int[ticks.length];
+        long tempo = DEFAULT_TEMPO;
+        long tempoTick = 0;
+        long tempoMicros = startMicros;
+        while (true) {
+            int next = -1;
+            long nextTick = Long.MAX_VALUE;
+            for (int t = 0; t < ticks.length; t ++) {
+                if (cursors[t] < ticks[t].length && ticks[t][cursors[t]] < nextTick) {
+                    next = t;
+                    nextTick = ticks[t][cursors[t]];
+                }
+            }
+            if (next < 0) break;
+            int word = words[next][cursors[next] ++];
+            long micros;
+            if (divisionType == Sequence.PPQ) micros = tempoMicros + (nextTick - tempoTick) * tempo / resolution;
+            else micros = startMicros + (long) (nextTick * 1000000.0 / (divisionType * resolution));
+            if (word >= 0) {
+                shortMessage.setMessage(word & 0xFF, (word >>> 8) & 0xFF, (word >>> 16) & 0xFF);
+                receiver.send(shortMessage, micros);
+            }
+            else {
+                MidiMessage message = longMessages[next][~word];
+                if (message.getStatus() != META) receiver.send(message, micros);
+                else if (((MetaMessage) message).getType() == META_TEMPO && divisionType == Sequence.PPQ) {
+                    byte[] data = ((MetaMessage) message).getData();
+                    if (data.length >= 3) {
+                        tempoMicros = micros;
+                        tempoTick = nextTick;
+                        tempo = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+                    }
+                }
+            }
+        }
+    }
+
+}
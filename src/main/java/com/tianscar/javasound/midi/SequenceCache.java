@@ -0,0 +1,215 @@
+package com.tianscar.javasound.midi;
+
+import com.tianscar.javasound.util.ResourceKey;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A loader which keeps MIDI sequences in memory, in {@link PackedSequence packed form}, for short
+ * sequences loaded over and over again.
+ * <p>
+ * Sequences are keyed by the {@code ClassLoader}, the resource name and the MIDI readers of the
+ * {@link MidiResourceLoader} loading them, so loaders built with other readers do not share sequences,
+ * and evicted in least-recently-used order once the total size of the packed sequences exceeds the byte
+ * budget. Concurrent misses of the same sequence load and pack it once, through the single-flight coordination
+ * of the loader (see {@link com.tianscar.javasound.util.SingleFlight}).
+ * Every hit of {@link #getSequence(ClassLoader, String)} materializes a new {@code Sequence} the
+ * caller owns, {@link #getPackedSequence(ClassLoader, String)} returns the shared packed form.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public class SequenceCache {
+
+    /**
+     * The default byte budget, 8 MiB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    private static final SequenceCache DEFAULT = new SequenceCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * Returns the shared {@code SequenceCache} with the default byte budget.
+     *
+     * @return the shared {@code SequenceCache}
+     */
+    public static SequenceCache getDefault() {
+        return DEFAULT;
+    }
+
+    private final Map<ResourceKey, PackedSequence> sequences = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long size;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates a {@code SequenceCache}.
+     *
+     * @param maxBytes the byte budget of the packed sequences
+     */
+    public SequenceCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes cannot be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Obtains a new MIDI sequence from the resource provided, materialized from its cached packed form.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name from which the <code>Sequence</code> should be
+     * constructed
+     * @return a new <code>Sequence</code> object based on the MIDI file data
+     * pointed to by the resource
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs while accessing the resource
+     */
+    public Sequence getSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return getPackedSequence(resourceLoader, name).toSequence();
+    }
+
+    /**
+     * Obtains the packed MIDI sequence of the resource provided, loading it on a miss.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the shared packed sequence
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs while accessing the resource
+     */
+    public PackedSequence getPackedSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        return getPackedSequence(MidiResourceLoader.getDefault(), resourceLoader, name);
+    }
+
+    PackedSequence getPackedSequence(MidiResourceLoader loader, ClassLoader resourceLoader, String name)
+            throws InvalidMidiDataException, IOException {
+        ResourceKey key = new ResourceKey(resourceLoader, name, loader.getConfiguredMidiReaders());
+        synchronized (this) {
+            PackedSequence sequence = sequences.get(key);
+            if (sequence != null) {
+                hitCount ++;
+                return sequence;
+            }
+            missCount ++;
+        }
+        PackedSequence sequence = loader.loadPackedSequence(resourceLoader, name);
+        put(key, sequence);
+        return sequence;
+    }
+
+    /**
+     * Returns whether the sequence of a resource is cached, as loaded by any loader.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return {@code true} if the sequence is cached
+     */
+    public synchronized boolean contains(ClassLoader resourceLoader, String name) {
+        for (ResourceKey key : sequences.keySet()) {
+            if (key.refersTo(resourceLoader, name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops the cached sequence of a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name, or {@code null} to drop all sequences of the {@code ClassLoader}
+     */
+    public synchronized void invalidate(ClassLoader resourceLoader, String name) {
+        for (Iterator<Map.Entry<ResourceKey, PackedSequence>> it = sequences.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ResourceKey, PackedSequence> entry = it.next();
+            if (entry.getKey().refersTo(resourceLoader, name)) {
+                size -= entry.getValue().getByteSize();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all cached sequences.
+     */
+    public synchronized void clear() {
+        sequences.clear();
+        size = 0;
+    }
+
+    /**
+     * Sets the byte budget, evicting sequences if needed.
+     *
+     * @param maxBytes the byte budget of the packed sequences
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes cannot be negative");
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Returns the byte budget.
+     *
+     * @return the byte budget of the packed sequences
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the total size of the cached sequences.
+     *
+     * @return the size, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which had to load the resource.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private synchronized void put(ResourceKey key, PackedSequence sequence) {
+        if (sequence.getByteSize() > maxBytes) return;
+        PackedSequence previous = sequences.put(key, sequence);
+        if (previous != null) size -= previous.getByteSize();
+        size += sequence.getByteSize();
+        evict();
+    }
+
+    private void evict() {
+        for (Iterator<Map.Entry<ResourceKey, PackedSequence>> it = sequences.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ResourceKey, PackedSequence> entry = it.next();
+            if (entry.getKey().isStale()) {
+                size -= entry.getValue().getByteSize();
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<ResourceKey, PackedSequence>> it = sequences.entrySet().iterator(); size > maxBytes && it.hasNext(); ) {
+            size -= it.next().getValue().getByteSize();
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.tianscar.javasound.midi;
+
+import com.tianscar.javasound.util.ResourceKey;
+import com.tianscar.javasound.util.Resources;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Soundbank;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares loaded soundbanks between their users, such as several synthesizers using the same banks.
+ * <p>
+ * {@link #acquire(ClassLoader, String)} loads a soundbank once per {@code ClassLoader} and resource name,
+ * and hands out {@link SharedSoundbank} references to the same {@code Soundbank} until all of them
+ * are closed, the soundbank is then dropped.
+ * <p>
+ * In lazy mode, the resource is read from the file system, being spooled to a temporary file first
+ * if it is not a file already, and loaded with {@link MidiSystem#getSoundbank(File)}: the JavaSound
+ * SF2 and DLS readers then only parse the bank structure, and read the sample data of an instrument
+ * from the file when a synthesizer loads it. Resources the JavaSound readers do not recognize are
+ * loaded eagerly, through {@link MidiResourceLoader}. As a synthesizer may keep reading instruments
+ * after the last reference is closed, a spooled file is only deleted once its soundbank and instruments
+ * are unreachable, or on exit. A spooled file is deleted right away if the soundbank fails to load.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public class SoundbankCache {
+
+    private static final SoundbankCache DEFAULT = new SoundbankCache(false);
+
+    /**
+     * Returns the shared eager {@code SoundbankCache}.
+     *
+     * @return the shared {@code SoundbankCache}
+     */
+    public static SoundbankCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * A reference to a shared soundbank, closing it releases the reference.
+     */
+    public static final class SharedSoundbank implements Closeable {
+
+        private final SoundbankCache cache;
+        private final Entry entry;
+        private boolean closed;
+
+        private SharedSoundbank(SoundbankCache cache, Entry entry) {
+            this.cache = cache;
+            this.entry = entry;
+        }
+
+        /**
+         * Returns the shared soundbank.
+         *
+         * @return the {@code Soundbank}
+         */
+        public Soundbank getSoundbank() {
+            return entry.soundbank;
+        }
+
+        /**
+         * Releases this reference. The soundbank must not be used through this reference afterwards.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            cache.release(entry);
+        }
+
+    }
+
+    private static final class Entry {
+        private final ResourceKey key;
+        private int references;
+        private Soundbank soundbank;
+        private File spoolFile;
+        private Entry(ResourceKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Deletes a spooled file once the soundbank read from it is unreachable.
+     */
+    private static final class SpoolFileReference extends PhantomReference<Soundbank> {
+        private final File file;
+        private SpoolFileReference(Soundbank soundbank, File file) {
+            super(soundbank, collectedSoundbanks);
+            this.file = file;
+        }
+    }
+
+    private static final ReferenceQueue<Soundbank> collectedSoundbanks = new ReferenceQueue<>();
+    private static final Set<SpoolFileReference> spoolFileReferences = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicBoolean spoolFileCleanerStarted = new AtomicBoolean();
+
+    private final Map<ResourceKey, Entry> entries = new HashMap<>();
+    private final boolean lazy;
+
+    /**
+     * Creates a {@code SoundbankCache}.
+     *
+     * @param lazy whether to read the sample data of instruments only when they are loaded
+     */
+    public SoundbankCache(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Returns whether this cache reads the sample data of instruments only when they are loaded.
+     *
+     * @return {@code true} if this cache is lazy
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Obtains a reference to the shared soundbank of the resource provided, loading it if no reference
+     * to it is open.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return a new reference to the shared soundbank, to close once done with it
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     * soundbank data recognized by the system
+     * @throws IOException if an I/O error occurred when loading the soundbank
+     */
+    public SharedSoundbank acquire(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        ResourceKey key = new ResourceKey(resourceLoader, name, null);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, Entry::new);
+            entry.references ++;
+        }
+        try {
+            synchronized (entry) {
+                if (entry.soundbank == null) load(entry, resourceLoader, name);
+            }
+            return new SharedSoundbank(this, entry);
+        }
+        catch (InvalidMidiDataException | IOException | RuntimeException e) {
+            release(entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of open references to the shared soundbank of a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the number of open references, {@code 0} if the soundbank is not loaded
+     */
+    public int getReferenceCount(ClassLoader resourceLoader, String name) {
+        synchronized (entries) {
+            Entry entry = entries.get(new ResourceKey(resourceLoader, name, null));
+            return entry == null ? 0 : entry.references;
+        }
+    }
+
+    /**
+     * Returns the number of soundbanks with open references.
+     *
+     * @return the number of shared soundbanks
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void load(Entry entry, ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException {
+        if (!lazy) {
+            entry.soundbank = MidiResourceLoader.getSoundbank(resourceLoader, name);
+            return;
+        }
+        File file = Resources.getFile(resourceLoader, name);
+        if (file == null) file = entry.spoolFile = spool(resourceLoader, name);
+        try {
+            entry.soundbank = MidiSystem.getSoundbank(file);
+        }
+        catch (InvalidMidiDataException e) {
+            deleteSpoolFile(entry);
+            entry.soundbank = MidiResourceLoader.getSoundbank(resourceLoader, name);
+        }
+        catch (IOException | RuntimeException | Error e) {
+            deleteSpoolFile(entry);
+            throw e;
+        }
+        if (entry.spoolFile != null) {
+            spoolFileReferences.add(new SpoolFileReference(entry.soundbank, entry.spoolFile));
+            if (spoolFileCleanerStarted.compareAndSet(false, true)) {
+                Thread cleaner = new Thread(SoundbankCache::deleteCollectedSpoolFiles, "javasound-spool-file-cleaner");
+                cleaner.setDaemon(true);
+                cleaner.start();
+                // one hook for all spooled files, rather than one File.deleteOnExit() registration per file
+                Runtime.getRuntime().addShutdownHook(new Thread(SoundbankCache::deleteSpoolFiles, "javasound-spool-file-remover"));
+            }
+        }
+    }
+
+    private void release(Entry entry) {
+        synchronized (entries) {
+            if (-- entry.references > 0) return;
+            entries.remove(entry.key);
+        }
+        synchronized (entry) {
+            // the spooled file is deleted once the soundbank is unreachable, synthesizers may still read it
+            entry.soundbank = null;
+            entry.spoolFile = null;
+        }
+    }
+
+    private static void deleteCollectedSpoolFiles() {
+        while (true) {
+            SpoolFileReference reference;
+            try {
+                reference = (SpoolFileReference) collectedSoundbanks.remove();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            if (spoolFileReferences.remove(reference)) delete(reference.file);
+        }
+    }
+
+    private static void deleteSpoolFiles() {
+        for (SpoolFileReference reference : spoolFileReferences) {
+            reference.file.delete();
+        }
+    }
+
+    private static File spool(ClassLoader resourceLoader, String name) throws IOException {
+        int dot = name.lastIndexOf('.');
+        String suffix = dot > name.lastIndexOf('/') ? name.substring(dot) : null;
+        File file = Files.createTempFile("javasound-soundbank-", suffix).toFile();
+        try (InputStream stream = Resources.openStream(resourceLoader, name)) {
+            Files.copy(stream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException | RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static void deleteSpoolFile(Entry entry) {
+        if (entry.spoolFile != null) {
+            delete(entry.spoolFile);
+            entry.spoolFile = null;
+        }
+    }
+
+    private static void delete(File file) {
+        // a reader may still hold the file open on some platforms, it is then deleted on exit
+        if (!file.delete() && file.exists()) file.deleteOnExit();
+    }
+
+}
@@ -1,19 +1,27 @@
 package com.tianscar.javasound.midi.spi;
 
+import com.tianscar.javasound.util.ByteBufferInputStream;
+import com.tianscar.javasound.util.ProviderHints;
+
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiFileFormat;
 import javax.sound.midi.Sequence;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A {@code MidiResourceReader} supplies MIDI resource-reading services. Classes
  * implementing this interface can parse the format information from one or more
  * types of MIDI resource, and can produce a {@link Sequence} object from resources of
  * these types.
+ * <p>
+ * Implementations may give {@link ProviderHints} about the resources they handle,
+ * so the loaders try them first for these resources.
  *
  * @author Karstian Lee
  */
-public interface MidiResourceReader {
+public interface MidiResourceReader extends ProviderHints {
 
     /**
      * Obtains the MIDI file format of the resource provided.
@@ -42,4 +50,92 @@ public interface MidiResourceReader {
      */
     Sequence getSequence(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException;
 
+    /**
+     * Obtains the MIDI file format of the resource provided, reading it from the stream
+     * the resource has already been opened into.
+     * <p>
+     * The stream is positioned at the start of the resource and supports mark/reset; it is
+     * shared with other readers probing the same resource, so closing it has no effect. The default
+     * implementation ignores the stream and calls {@link #getMidiFileFormat(ClassLoader, String)}.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name from which file format information should be extracted
+     * @param  stream the opened resource
+     * @return a {@code MidiFileFormat} object describing the MIDI file format
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     *         file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name, InputStream stream)
+            throws InvalidMidiDataException, IOException {
+        return getMidiFileFormat(resourceLoader, name);
+    }
+
+    /**
+     * Obtains a MIDI sequence from the resource provided, reading it from the stream
+     * the resource has already been opened into.
+     * <p>
+     * The stream is positioned at the start of the resource and supports mark/reset; it is
+     * shared with other readers probing the same resource, so closing it has no effect. The default
+     * implementation ignores the stream and calls {@link #getSequence(ClassLoader, String)}.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name for which the {@code Sequence} should be constructed
+     * @param  stream the opened resource
+     * @return a {@code Sequence} object based on the MIDI file data pointed to
+     *         by the resource
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     *         file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default Sequence getSequence(ClassLoader resourceLoader, String name, InputStream stream)
+            throws InvalidMidiDataException, IOException {
+        return getSequence(resourceLoader, name);
+    }
+
+    /**
+     * Obtains the MIDI file format of the resource provided, reading it from the buffer
+     * the resource has already been read or memory-mapped into.
+     * <p>
+     * The buffer is read-only and holds the whole resource from its position to its limit; it is
+     * a view of its own, so moving its position has no effect on other readers. The default
+     * implementation calls {@link #getMidiFileFormat(ClassLoader, String, InputStream)} with a stream
+     * reading the buffer.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name from which file format information should be extracted
+     * @param  buffer the content of the resource
+     * @return a {@code MidiFileFormat} object describing the MIDI file format
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     *         file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default MidiFileFormat getMidiFileFormat(ClassLoader resourceLoader, String name, ByteBuffer buffer)
+            throws InvalidMidiDataException, IOException {
+        return getMidiFileFormat(resourceLoader, name, new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Obtains a MIDI sequence from the resource provided, reading it from the buffer
+     * the resource has already been read or memory-mapped into.
+     * <p>
+     * The buffer is read-only and holds the whole resource from its position to its limit; it is
+     * a view of its own, so moving its position has no effect on other readers. The default
+     * implementation calls {@link #getSequence(ClassLoader, String, InputStream)} with a stream
+     * reading the buffer.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name the resource name for which the {@code Sequence} should be constructed
+     * @param  buffer the content of the resource
+     * @return a {@code Sequence} object based on the MIDI file data pointed to
+     *         by the resource
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     *         file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default Sequence getSequence(ClassLoader resourceLoader, String name, ByteBuffer buffer)
+            throws InvalidMidiDataException, IOException {
+        return getSequence(resourceLoader, name, new ByteBufferInputStream(buffer));
+    }
+
 }
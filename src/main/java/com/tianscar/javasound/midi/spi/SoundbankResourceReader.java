@@ -1,18 +1,26 @@
 package com.tianscar.javasound.midi.spi;
 
+import com.tianscar.javasound.util.ByteBufferInputStream;
+import com.tianscar.javasound.util.ProviderHints;
+
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.Soundbank;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A {@code SoundbankResourceReader} supplies soundbank resource-reading services. Concrete
  * subclasses of {@code SoundbankReader} parse a given soundbank resource, producing
  * a {@link javax.sound.midi.Soundbank} object that can be loaded into a
  * {@link javax.sound.midi.Synthesizer}.
+ * <p>
+ * Implementations may give {@link ProviderHints} about the resources they handle,
+ * so the loaders try them first for these resources.
  *
  * @author Karstian Lee
  */
-public interface SoundbankResourceReader {
+public interface SoundbankResourceReader extends ProviderHints {
 
     /**
      * Obtains a soundbank object from the resource provided.
@@ -26,4 +34,47 @@ public interface SoundbankResourceReader {
      */
     Soundbank getSoundbank(ClassLoader resourceLoader, String name) throws InvalidMidiDataException, IOException;
 
+    /**
+     * Obtains a soundbank object from the resource provided, reading it from the stream
+     * the resource has already been opened into.
+     * <p>
+     * The stream is positioned at the start of the resource and supports mark/reset; it is
+     * shared with other readers probing the same resource, so closing it has no effect. The default
+     * implementation ignores the stream and calls {@link #getSoundbank(ClassLoader, String)}.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name resource name representing the soundbank.
+     * @param  stream the opened resource
+     * @return soundbank object
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     *         soundbank data recognized by this soundbank reader
+     * @throws IOException if an I/O error occurs
+     */
+    default Soundbank getSoundbank(ClassLoader resourceLoader, String name, InputStream stream)
+            throws InvalidMidiDataException, IOException {
+        return getSoundbank(resourceLoader, name);
+    }
+
+    /**
+     * Obtains a soundbank object from the resource provided, reading it from the buffer
+     * the resource has already been read or memory-mapped into.
+     * <p>
+     * The buffer is read-only and holds the whole resource from its position to its limit; it is
+     * a view of its own, so moving its position has no effect on other readers. The default
+     * implementation calls {@link #getSoundbank(ClassLoader, String, InputStream)} with a stream
+     * reading the buffer.
+     *
+     * @param  resourceLoader the {@code ClassLoader} to load resource
+     * @param  name resource name representing the soundbank.
+     * @param  buffer the content of the resource
+     * @return soundbank object
+     * @throws InvalidMidiDataException if the resource does not point to valid MIDI
+     *         soundbank data recognized by this soundbank reader
+     * @throws IOException if an I/O error occurs
+     */
+    default Soundbank getSoundbank(ClassLoader resourceLoader, String name, ByteBuffer buffer)
+            throws InvalidMidiDataException, IOException {
+        return getSoundbank(resourceLoader, name, new ByteBufferInputStream(buffer));
+    }
+
 }
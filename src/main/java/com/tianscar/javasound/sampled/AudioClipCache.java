@@ -0,0 +1,295 @@
+package com.tianscar.javasound.sampled;
+
+import com.tianscar.javasound.util.ResourceKey;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A loader which keeps decoded PCM data of audio resources in memory, for short clips
+ * loaded over and over again.
+ * <p>
+ * Clips are keyed by the {@code ClassLoader}, the resource name and the target
+ * {@code AudioFormat}, and evicted in least-recently-used order once the total size of the
+ * cached PCM data exceeds the byte budget. Every hit returns a fresh {@code AudioInputStream}
+ * reading the shared PCM data, which is never copied nor modified.
+ * <p>
+ * The PCM data is stored on the heap by default; large assets such as music and ambience loops
+ * can be kept off-heap, in direct buffers or memory-mapped files, see {@link PcmStorage}.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public class AudioClipCache {
+
+    /**
+     * The default byte budget, 64 MiB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final AudioClipCache DEFAULT = new AudioClipCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * Returns the shared {@code AudioClipCache} with the default byte budget.
+     *
+     * @return the shared {@code AudioClipCache}
+     */
+    public static AudioClipCache getDefault() {
+        return DEFAULT;
+    }
+
+    private final Map<ResourceKey, PcmBuffer> clips = new LinkedHashMap<>(16, 0.75f, true);
+    private final PcmStorage storage;
+    private long maxBytes;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates an {@code AudioClipCache} storing PCM data on the heap.
+     *
+     * @param maxBytes the byte budget of the cached PCM data
+     */
+    public AudioClipCache(long maxBytes) {
+        this(maxBytes, PcmStorage.HEAP);
+    }
+
+    /**
+     * Creates an {@code AudioClipCache}.
+     *
+     * @param maxBytes the byte budget of the cached PCM data
+     * @param storage where to store the PCM data
+     */
+    public AudioClipCache(long maxBytes, PcmStorage storage) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes cannot be negative");
+        if (storage == null) throw new NullPointerException("storage cannot be null");
+        this.maxBytes = maxBytes;
+        this.storage = storage;
+    }
+
+    /**
+     * Obtains an audio input stream of the decoded PCM data of the resource provided.
+     * The resource is decoded to PCM in its own sample rate and channels if it is not PCM already.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @return an <code>AudioInputStream</code> object reading the decoded PCM data
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException, IOException {
+        return getAudioInputStream(resourceLoader, name, null);
+    }
+
+    /**
+     * Obtains an audio input stream of the resource provided, decoded to the given format.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param targetFormat the format to decode to, or {@code null} to decode to PCM in the format of the resource
+     * @return an <code>AudioInputStream</code> object reading the decoded data
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the conversion to the target format is not supported
+     */
+    public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, AudioFormat targetFormat)
+            throws UnsupportedAudioFileException, IOException {
+        return getPcmBuffer(resourceLoader, name, targetFormat).getAudioInputStream();
+    }
+
+    /**
+     * Obtains the decoded data of the resource provided, decoded to the given format.
+     * The returned {@code PcmBuffer} reads straight from the storage of this cache.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param targetFormat the format to decode to, or {@code null} to decode to PCM in the format of the resource
+     * @return the decoded data
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the conversion to the target format is not supported
+     */
+    public PcmBuffer getPcmBuffer(ClassLoader resourceLoader, String name, AudioFormat targetFormat)
+            throws UnsupportedAudioFileException, IOException {
+        return getPcmBuffer(AudioResourceLoader.getDefault(), resourceLoader, name, targetFormat);
+    }
+
+    PcmBuffer getPcmBuffer(AudioResourceLoader loader, ClassLoader resourceLoader, String name, AudioFormat targetFormat)
+            throws UnsupportedAudioFileException, IOException {
+        ResourceKey key = new ResourceKey(resourceLoader, name, AudioFormatKey.of(targetFormat));
+        PcmBuffer clip;
+        synchronized (this) {
+            clip = clips.get(key);
+            if (clip != null) hitCount ++;
+            else missCount ++;
+        }
+        if (clip == null) {
+            clip = decode(loader, resourceLoader, name, targetFormat);
+            put(key, clip);
+        }
+        return clip;
+    }
+
+    /**
+     * Returns where this cache stores PCM data.
+     *
+     * @return the {@code PcmStorage}
+     */
+    public PcmStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Returns whether the resource is cached in the given format.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param targetFormat the format decoded to, or {@code null} for PCM in the format of the resource
+     * @return {@code true} if a lookup would be a hit
+     */
+    public synchronized boolean contains(ClassLoader resourceLoader, String name, AudioFormat targetFormat) {
+        return clips.containsKey(new ResourceKey(resourceLoader, name, AudioFormatKey.of(targetFormat)));
+    }
+
+    /**
+     * Removes all cached clips of the resource, in every format.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name, or {@code null} to remove all resources of the {@code ClassLoader}
+     */
+    public synchronized void invalidate(ClassLoader resourceLoader, String name) {
+        for (Iterator<Map.Entry<ResourceKey, PcmBuffer>> it = clips.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ResourceKey, PcmBuffer> entry = it.next();
+            if (entry.getKey().refersTo(resourceLoader, name)) {
+                size -= entry.getValue().getByteLength();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached clips.
+     */
+    public synchronized void clear() {
+        clips.clear();
+        size = 0;
+    }
+
+    /**
+     * Sets the byte budget of the cached PCM data, evicting clips if needed.
+     *
+     * @param maxBytes the byte budget
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes cannot be negative");
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Returns the byte budget of the cached PCM data.
+     *
+     * @return the byte budget
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the total size of the cached PCM data.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which had to decode the resource.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of clips evicted to stay within the byte budget.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private synchronized void put(ResourceKey key, PcmBuffer clip) {
+        if (clip.getByteLength() > maxBytes) return;
+        PcmBuffer previous = clips.put(key, clip);
+        if (previous != null) size -= previous.getByteLength();
+        size += clip.getByteLength();
+        evict();
+    }
+
+    private void evict() {
+        for (Iterator<Map.Entry<ResourceKey, PcmBuffer>> it = clips.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ResourceKey, PcmBuffer> entry = it.next();
+            if (entry.getKey().isStale()) {
+                size -= entry.getValue().getByteLength();
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<ResourceKey, PcmBuffer>> it = clips.entrySet().iterator(); size > maxBytes && it.hasNext(); ) {
+            size -= it.next().getValue().getByteLength();
+            it.remove();
+            evictionCount ++;
+        }
+    }
+
+    private PcmBuffer decode(AudioResourceLoader loader, ClassLoader resourceLoader, String name, AudioFormat targetFormat)
+            throws UnsupportedAudioFileException, IOException {
+        AudioInputStream stream = loader.loadAudioInputStream(resourceLoader, name);
+        try {
+            stream = toTargetFormat(stream, targetFormat);
+            return new PcmBuffer(stream.getFormat(), storage.store(stream));
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    static AudioInputStream toTargetFormat(AudioInputStream stream, AudioFormat targetFormat) {
+        AudioFormat sourceFormat = stream.getFormat();
+        if (targetFormat == null) {
+            AudioFormat.Encoding encoding = sourceFormat.getEncoding();
+            if (AudioFormat.Encoding.PCM_SIGNED.equals(encoding) || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)) return stream;
+            // 16 bits unless the source is known to be finer, which most compressed formats leave unspecified
+            int sampleSizeInBits = sourceFormat.getSampleSizeInBits() > 16 ? 32 : 16;
+            targetFormat = new AudioFormat(sourceFormat.getSampleRate(), sampleSizeInBits, sourceFormat.getChannels(),
+                    true, sourceFormat.isBigEndian());
+        }
+        return FormatConverters.convert(stream, targetFormat);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.tianscar.javasound.sampled;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * A value key of an {@link AudioFormat}, which does not override {@code equals}.
+ *
+ * @author Karstian Lee
+ */
+final class AudioFormatKey {
+
+    private final String encoding;
+    private final float sampleRate;
+    private final int sampleSizeInBits;
+    private final int channels;
+    private final int frameSize;
+    private final float frameRate;
+    private final boolean bigEndian;
+
+    private AudioFormatKey(AudioFormat format) {
+        this.encoding = format.getEncoding().toString();
+        this.sampleRate = format.getSampleRate();
+        this.sampleSizeInBits = format.getSampleSizeInBits();
+        this.channels = format.getChannels();
+        this.frameSize = format.getFrameSize();
+        this.frameRate = format.getFrameRate();
+        this.bigEndian = format.isBigEndian();
+    }
+
+    static AudioFormatKey of(AudioFormat format) {
+        return format == null ? null : new AudioFormatKey(format);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AudioFormatKey)) return false;
+        AudioFormatKey that = (AudioFormatKey) o;
+        return Float.compare(sampleRate, that.sampleRate) == 0 &&
+                sampleSizeInBits == that.sampleSizeInBits &&
+                channels == that.channels &&
+                frameSize == that.frameSize &&
+                Float.compare(frameRate, that.frameRate) == 0 &&
+                bigEndian == that.bigEndian &&
+                encoding.equals(that.encoding);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = encoding.hashCode();
+        result = 31 * result + Float.floatToIntBits(sampleRate);
+        result = 31 * result + sampleSizeInBits;
+        result = 31 * result + channels;
+        result = 31 * result + frameSize;
+        result = 31 * result + Float.floatToIntBits(frameRate);
+        result = 31 * result + (bigEndian ? 1 : 0);
+        return result;
+    }
+
+}
@@ -1,57 +1,437 @@
 package com.tianscar.javasound.sampled;
 
 import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.FormatIndex;
+import com.tianscar.javasound.util.LoadFuture;
+import com.tianscar.javasound.util.LoadRecorder;
+import com.tianscar.javasound.util.LoaderExecutors;
+import com.tianscar.javasound.util.ProviderRegistry;
+import com.tianscar.javasound.util.ReadAheadInputStream;
+import com.tianscar.javasound.util.ReaderAffinityCache;
+import com.tianscar.javasound.util.ResourceLoadEvent;
+import com.tianscar.javasound.util.ResourceLoadListener;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.SingleFlight;
+import com.tianscar.javasound.util.WarmupStore;
 
 import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ServiceLoader;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The factory class to load audio from resources
+ * <p>
+ * The static methods load with the {@linkplain #getDefault() default loader}, which uses the installed
+ * readers and the shared caches. Loaders with their own readers, {@code ClassLoader}, caches, executors,
+ * buffer sizes and listeners are made with a {@linkplain #builder() builder}, so differently configured
+ * loaders can be used side by side in one JVM. Loaders are immutable and thread-safe.
  */
 public class AudioResourceLoader {
 
+    /**
+     * The largest stream, in bytes, read into memory to be handed over to concurrent callers.
+     */
+    private static final long SHARED_STREAM_MAX_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Hands a stream loaded once over to concurrent callers: the stream is read into memory,
+     * and each caller reads it with its own stream. Streams of unknown or larger length than
+     * {@link #SHARED_STREAM_MAX_BYTES} are declined, each caller then loads its own.
+     */
+    private static final SingleFlight.Share<AudioInputStream, PcmBuffer> SHARED_STREAM =
+            new SingleFlight.Share<AudioInputStream, PcmBuffer>() {
+        @Override
+        public PcmBuffer share(AudioInputStream stream) throws IOException {
+            long frameLength = stream.getFrameLength();
+            int frameSize = stream.getFormat().getFrameSize();
+            if (frameLength == AudioSystem.NOT_SPECIFIED || frameSize == AudioSystem.NOT_SPECIFIED
+                    || frameLength > SHARED_STREAM_MAX_BYTES / Math.max(1, frameSize)) return null;
+            try (AudioInputStream audioStream = stream) {
+                return new PcmBuffer(audioStream.getFormat(), PcmStorage.HEAP.store(audioStream));
+            }
+        }
+        @Override
+        public AudioInputStream copy(PcmBuffer shared) {
+            return shared.getAudioInputStream();
+        }
+    };
+
+    private static final AudioResourceLoader DEFAULT = builder()
+            .affinityCache(ReaderAffinityCache.getDefault())
+            .singleFlight(SingleFlight.getDefault())
+            .build();
+
+    /**
+     * Returns the loader the static methods use: with the installed readers, the {@linkplain ReaderAffinityCache#getDefault()
+     * shared reader affinity cache}, the {@linkplain SingleFlight#getDefault() shared single-flight coordination},
+     * the {@linkplain DiskAudioCache#getDefault() installed disk cache} if there is one, the
+     * {@linkplain WarmupStore#getDefault() shared warm-up store}, no clip cache and the
+     * {@linkplain LoaderExecutors default executors}.
+     *
+     * @return the default loader
+     */
+    public static AudioResourceLoader getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a builder of loaders.
+     *
+     * @return a new {@code Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder of {@code AudioResourceLoader}s. Builders are not thread-safe, the loaders they build are.
+     */
+    public static final class Builder {
+
+        private List<AudioResourceReader> providers;
+        private ClassLoader resourceLoader;
+        private ReaderAffinityCache affinityCache;
+        private boolean affinityCacheSet;
+        private SingleFlight singleFlight;
+        private boolean singleFlightSet;
+        private AudioClipCache clipCache;
+        private DiskAudioCache diskCache;
+        private boolean diskCacheSet;
+        private WarmupStore warmupStore;
+        private boolean warmupStoreSet;
+        private Executor executor;
+        private Executor readAheadExecutor;
+        private int readAheadChunkSize = ReadAheadInputStream.DEFAULT_CHUNK_SIZE;
+        private int readAheadChunkCount = ReadAheadInputStream.DEFAULT_CHUNK_COUNT;
+        private final List<ResourceLoadListener> listeners = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the readers to load with, tried in the order of their priority.
+         * By default, the installed readers are used.
+         *
+         * @param providers the readers, or {@code null} to use the installed readers
+         * @return this builder
+         */
+        public Builder providers(List<? extends AudioResourceReader> providers) {
+            this.providers = providers == null ? null : ProviderRegistry.prioritized(providers);
+            return this;
+        }
+
+        /**
+         * Sets the {@code ClassLoader} the instance methods load resources with.
+         * By default, the context {@code ClassLoader} of the calling thread is used.
+         *
+         * @param resourceLoader the {@code ClassLoader} to load resources with, or {@code null} for the context {@code ClassLoader}
+         * @return this builder
+         */
+        public Builder resourceLoader(ClassLoader resourceLoader) {
+            this.resourceLoader = resourceLoader;
+            return this;
+        }
+
+        /**
+         * Sets the cache of which reader recognized which resource. By default, the
+         * {@linkplain ReaderAffinityCache#getDefault() shared cache} is used with the installed readers,
+         * and a cache of the loader's own with given readers.
+         *
+         * @param affinityCache the reader affinity cache, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder affinityCache(ReaderAffinityCache affinityCache) {
+            this.affinityCache = affinityCache;
+            this.affinityCacheSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the coordination of concurrent loads of the same resource. By default, the loader
+         * has its own, which keeps no failures.
+         *
+         * @param singleFlight the single-flight coordination, or {@code null} to load every call on its own
+         * @return this builder
+         */
+        public Builder singleFlight(SingleFlight singleFlight) {
+            this.singleFlight = singleFlight;
+            this.singleFlightSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the cache {@link #getAudioInputStream(String, AudioFormat)} keeps converted audio in.
+         * By default, converted audio is not kept.
+         *
+         * @param clipCache the clip cache, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder clipCache(AudioClipCache clipCache) {
+            this.clipCache = clipCache;
+            return this;
+        }
+
+        /**
+         * Sets the cache of decoded audio on the disk. By default, the
+         * {@linkplain DiskAudioCache#getDefault() installed disk cache} is used, if there is one.
+         *
+         * @param diskCache the disk cache, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder diskCache(DiskAudioCache diskCache) {
+            this.diskCache = diskCache;
+            this.diskCacheSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the store of resources read ahead of their first load, see {@link WarmupStore}. By default, the
+         * {@linkplain WarmupStore#getDefault() shared store} is used.
+         *
+         * @param warmupStore the warm-up store, or {@code null} to use none
+         * @return this builder
+         */
+        public Builder warmupStore(WarmupStore warmupStore) {
+            this.warmupStore = warmupStore;
+            this.warmupStoreSet = true;
+            return this;
+        }
+
+        /**
+         * Sets the {@code Executor} of the asynchronous loads.
+         * By default, the {@linkplain LoaderExecutors#getDefaultExecutor() default executor} is used.
+         *
+         * @param executor the {@code Executor}, or {@code null} for the default executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the {@code Executor} running the producers of read-ahead streams.
+         * By default, the {@linkplain LoaderExecutors#getReadAheadExecutor() read-ahead executor} is used.
+         *
+         * @param readAheadExecutor the {@code Executor}, or {@code null} for the read-ahead executor
+         * @return this builder
+         */
+        public Builder readAheadExecutor(Executor readAheadExecutor) {
+            this.readAheadExecutor = readAheadExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the chunk size and count of read-ahead streams, {@value ReadAheadInputStream#DEFAULT_CHUNK_SIZE}
+         * bytes and {@value ReadAheadInputStream#DEFAULT_CHUNK_COUNT} chunks by default.
+         *
+         * @param chunkSize the size of a chunk
+         * @param chunkCount the number of chunks
+         * @return this builder
+         */
+        public Builder readAhead(int chunkSize, int chunkCount) {
+            if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize must be positive");
+            if (chunkCount <= 0) throw new IllegalArgumentException("chunkCount must be positive");
+            this.readAheadChunkSize = chunkSize;
+            this.readAheadChunkCount = chunkCount;
+            return this;
+        }
+
+        /**
+         * Adds a listener of the calls of the loader, in addition to the {@linkplain com.tianscar.javasound.util.ResourceLoadListeners
+         * registered listeners}.
+         *
+         * @param listener the listener
+         * @return this builder
+         */
+        public Builder listener(ResourceLoadListener listener) {
+            listeners.add(Objects.requireNonNull(listener, "listener cannot be null"));
+            return this;
+        }
+
+        /**
+         * Builds a loader.
+         *
+         * @return a new {@code AudioResourceLoader}
+         */
+        public AudioResourceLoader build() {
+            return new AudioResourceLoader(this);
+        }
+
+    }
+
+    private final List<AudioResourceReader> providers;
+    private final ClassLoader resourceLoader;
+    private final ReaderAffinityCache affinityCache;
+    private final SingleFlight singleFlight;
+    private final AudioClipCache clipCache;
+    private final DiskAudioCache diskCache;
+    private final boolean diskCacheSet;
+    private final WarmupStore warmupStore;
+    private final Executor executor;
+    private final Executor readAheadExecutor;
+    private final int readAheadChunkSize;
+    private final int readAheadChunkCount;
+    private final ResourceLoadListener[] listeners;
+
+    private AudioResourceLoader(Builder builder) {
+        this.providers = builder.providers;
+        this.resourceLoader = builder.resourceLoader;
+        if (builder.affinityCacheSet) this.affinityCache = builder.affinityCache;
+        else if (builder.providers == null) this.affinityCache = ReaderAffinityCache.getDefault();
+        else this.affinityCache = new ReaderAffinityCache(ReaderAffinityCache.DEFAULT_MAX_ENTRIES,
+                    ReaderAffinityCache.DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+        this.singleFlight = builder.singleFlightSet ? builder.singleFlight : new SingleFlight(0, TimeUnit.MILLISECONDS);
+        this.clipCache = builder.clipCache;
+        this.diskCache = builder.diskCache;
+        this.diskCacheSet = builder.diskCacheSet;
+        this.warmupStore = builder.warmupStoreSet ? builder.warmupStore : WarmupStore.getDefault();
+        this.executor = builder.executor;
+        this.readAheadExecutor = builder.readAheadExecutor;
+        this.readAheadChunkSize = builder.readAheadChunkSize;
+        this.readAheadChunkCount = builder.readAheadChunkCount;
+        this.listeners = builder.listeners.toArray(new ResourceLoadListener[0]);
+    }
+
+    /**
+     * Returns the {@code ClassLoader} the instance methods load resources with.
+     *
+     * @return the configured {@code ClassLoader}, or else the context {@code ClassLoader} of the calling thread
+     */
+    public ClassLoader getResourceLoader() {
+        if (resourceLoader != null) return resourceLoader;
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        return contextLoader == null ? AudioResourceLoader.class.getClassLoader() : contextLoader;
+    }
+
     /**
      * Obtains the audio file format of the specified resource.  The resource must
      * point to valid audio file data.
-     * @param resourceLoader the {@code ClassLoader} to load resource
      * @param name the resource name from which file format information should be
      * extracted
      * @return an <code>AudioFileFormat</code> object describing the audio file format
      * @throws UnsupportedAudioFileException if the resource does not point to valid audio
-     * file data recognized by the system
+     * file data recognized by the readers of this loader
      * @throws IOException if an input/output exception occurs
+     * @see #getAudioFileFormat(ClassLoader, String)
      */
-    public static AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name)
+    public AudioFileFormat getAudioFileFormat(String name) throws UnsupportedAudioFileException, IOException {
+        return loadAudioFileFormat(getResourceLoader(), name);
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided.  The resource must
+     * point to valid audio file data.
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @return an <code>AudioInputStream</code> object based on the audio file data pointed
+     * to by the resource
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the readers of this loader
+     * @throws IOException if an I/O exception occurs
+     * @see #getAudioInputStream(ClassLoader, String)
+     */
+    public AudioInputStream getAudioInputStream(String name) throws UnsupportedAudioFileException, IOException {
+        return loadAudioInputStream(getResourceLoader(), name);
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided, converted to the target format,
+     * and kept converted in the clip cache of this loader if it has one.
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param targetFormat the format to convert to, such as the format of the mixer
+     * @return an <code>AudioInputStream</code> object reading the data of the resource in the target format
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the readers of this loader
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the conversion to the target format is not supported
+     * @see #getAudioInputStream(ClassLoader, String, AudioFormat)
+     */
+    public AudioInputStream getAudioInputStream(String name, AudioFormat targetFormat)
             throws UnsupportedAudioFileException, IOException {
+        if (clipCache == null) return loadAudioInputStream(getResourceLoader(), name, targetFormat);
+        else return clipCache.getPcmBuffer(this, getResourceLoader(), name, targetFormat).getAudioInputStream();
+    }
 
-        List<AudioResourceReader> providers = getAudioResourceReaders();
-        AudioFileFormat format = null;
+    /**
+     * Obtains a read-ahead audio input stream from the resource provided, with the chunk size,
+     * chunk count and executor of this loader.
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @return an <code>AudioInputStream</code> object reading the decoded PCM data ahead
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the readers of this loader
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the resource cannot be decoded to PCM
+     * @see #getStreamingAudioInputStream(ClassLoader, String, int, int, Executor)
+     */
+    public AudioInputStream getStreamingAudioInputStream(String name) throws UnsupportedAudioFileException, IOException {
+        return loadStreamingAudioInputStream(getResourceLoader(), name, readAheadChunkSize, readAheadChunkCount,
+                readAheadExecutor == null ? LoaderExecutors.getReadAheadExecutor() : readAheadExecutor);
+    }
 
-        for (AudioResourceReader reader : providers) {
-            try {
-                format = reader.getAudioFileFormat(resourceLoader, name); // throws IOException
-                break;
-            }
-            catch (UnsupportedAudioFileException ignored) {
-            }
-        }
+    /**
+     * Obtains the audio file format of the specified resource asynchronously, with the executor of this loader.
+     * Cancelling the returned future closes the resource.
+     * @param name the resource name from which file format information should be
+     * extracted
+     * @return a <code>CompletableFuture</code> of the audio file format, completed exceptionally
+     * as {@link #getAudioFileFormat(String)} would throw
+     */
+    public CompletableFuture<AudioFileFormat> getAudioFileFormatAsync(String name) {
+        ClassLoader resourceLoader = getResourceLoader();
+        return LoadFuture.load(() -> loadAudioFileFormat(resourceLoader, name), getExecutor());
+    }
 
-        if (format == null) {
-            throw new UnsupportedAudioFileException("file is not a supported file type");
-        }
-        else {
-            return format;
-        }
+    /**
+     * Obtains an audio input stream from the resource provided asynchronously, with the executor of this loader.
+     * Cancelling the returned future closes the resource, and the stream if it is obtained
+     * after the cancellation.
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @return a <code>CompletableFuture</code> of the audio input stream, completed exceptionally
+     * as {@link #getAudioInputStream(String)} would throw
+     */
+    public CompletableFuture<AudioInputStream> getAudioInputStreamAsync(String name) {
+        ClassLoader resourceLoader = getResourceLoader();
+        return LoadFuture.load(() -> loadAudioInputStream(resourceLoader, name), getExecutor());
+    }
+
+    /**
+     * Obtains the audio file format of the specified resource.  The resource must
+     * point to valid audio file data.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name from which file format information should be
+     * extracted
+     * @return an <code>AudioFileFormat</code> object describing the audio file format
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an input/output exception occurs
+     */
+    public static AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException, IOException {
+        return DEFAULT.loadAudioFileFormat(resourceLoader, name);
     }
 
     /**
      * Obtains an audio input stream from the resource provided.  The resource must
      * point to valid audio file data.
+     * Concurrent calls for the same resource load it once, and each get their own stream, unless
+     * the stream is too large to be held in memory,
+     * see {@link SingleFlight}. If a {@link DiskAudioCache} is installed, the stream reads the
+     * decoded PCM data cached on the disk, decoding and caching it first if it is not cached yet.
      * @param resourceLoader the {@code ClassLoader} to load resource
      * @param name the resource name for which the <code>AudioInputStream</code> should be
      * constructed
@@ -63,45 +443,397 @@ public class AudioResourceLoader {
      */
     public static AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name)
             throws UnsupportedAudioFileException, IOException {
+        return DEFAULT.loadAudioInputStream(resourceLoader, name);
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided, converted to the target format.
+     * The conversion path is looked up once per pair of source and target formats, and the converted
+     * data is read in large blocks.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param targetFormat the format to convert to, such as the format of the mixer
+     * @return an <code>AudioInputStream</code> object reading the data of the resource in the target format
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the conversion to the target format is not supported
+     */
+    public static AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, AudioFormat targetFormat)
+            throws UnsupportedAudioFileException, IOException {
+        return DEFAULT.loadAudioInputStream(resourceLoader, name, targetFormat);
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided, converted to the target format,
+     * and kept converted in the given {@code AudioClipCache} if there is one.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param targetFormat the format to convert to, such as the format of the mixer
+     * @param clipCache the {@code AudioClipCache} to keep the converted data in, or {@code null} not to keep it
+     * @return an <code>AudioInputStream</code> object reading the data of the resource in the target format
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the conversion to the target format is not supported
+     * @see AudioClipCache#getAudioInputStream(ClassLoader, String, AudioFormat)
+     */
+    public static AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, AudioFormat targetFormat,
+                                                       AudioClipCache clipCache)
+            throws UnsupportedAudioFileException, IOException {
+        if (clipCache == null) return getAudioInputStream(resourceLoader, name, targetFormat);
+        else return clipCache.getAudioInputStream(resourceLoader, name, targetFormat);
+    }
 
-        List<AudioResourceReader> providers = getAudioResourceReaders();
-        AudioInputStream audioStream = null;
+    /**
+     * Obtains a read-ahead audio input stream from the resource provided, with the default chunk size,
+     * chunk count and {@link LoaderExecutors#getReadAheadExecutor() executor}.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @return an <code>AudioInputStream</code> object reading the decoded PCM data ahead
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     * @see #getStreamingAudioInputStream(ClassLoader, String, int, int, Executor)
+     */
+    public static AudioInputStream getStreamingAudioInputStream(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException, IOException {
+        return getStreamingAudioInputStream(resourceLoader, name, ReadAheadInputStream.DEFAULT_CHUNK_SIZE,
+                ReadAheadInputStream.DEFAULT_CHUNK_COUNT, LoaderExecutors.getReadAheadExecutor());
+    }
 
-        for (AudioResourceReader reader : providers) {
+    /**
+     * Obtains a read-ahead audio input stream from the resource provided, for long resources such as music.
+     * The resource is decoded to PCM in its own sample rate and channels if it is not PCM already,
+     * on a background producer which keeps at most {@code chunkCount} chunks of decoded data ahead of
+     * the reader, see {@link ReadAheadInputStream}. Closing the stream stops the producer.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param chunkSize the size of a chunk, rounded down to whole frames
+     * @param chunkCount the number of chunks
+     * @param executor the {@code Executor} to run the producer
+     * @return an <code>AudioInputStream</code> object reading the decoded PCM data ahead
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     * @throws IllegalArgumentException if the resource cannot be decoded to PCM
+     */
+    public static AudioInputStream getStreamingAudioInputStream(ClassLoader resourceLoader, String name,
+                                                                int chunkSize, int chunkCount, Executor executor)
+            throws UnsupportedAudioFileException, IOException {
+        return DEFAULT.loadStreamingAudioInputStream(resourceLoader, name, chunkSize, chunkCount, executor);
+    }
+
+    /**
+     * Obtains the audio file format of the specified resource asynchronously, with the
+     * {@link LoaderExecutors#getDefaultExecutor() default executor}.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name from which file format information should be
+     * extracted
+     * @return a <code>CompletableFuture</code> of the audio file format, completed exceptionally
+     * as {@link #getAudioFileFormat(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<AudioFileFormat> getAudioFileFormatAsync(ClassLoader resourceLoader, String name) {
+        return getAudioFileFormatAsync(resourceLoader, name, LoaderExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Obtains the audio file format of the specified resource asynchronously.
+     * Cancelling the returned future closes the resource.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name from which file format information should be
+     * extracted
+     * @param executor the {@code Executor} to load with
+     * @return a <code>CompletableFuture</code> of the audio file format, completed exceptionally
+     * as {@link #getAudioFileFormat(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<AudioFileFormat> getAudioFileFormatAsync(ClassLoader resourceLoader, String name,
+                                                                            Executor executor) {
+        return LoadFuture.load(() -> DEFAULT.loadAudioFileFormat(resourceLoader, name), executor);
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided asynchronously, with the
+     * {@link LoaderExecutors#getDefaultExecutor() default executor}.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @return a <code>CompletableFuture</code> of the audio input stream, completed exceptionally
+     * as {@link #getAudioInputStream(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<AudioInputStream> getAudioInputStreamAsync(ClassLoader resourceLoader, String name) {
+        return getAudioInputStreamAsync(resourceLoader, name, LoaderExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided asynchronously.
+     * Cancelling the returned future closes the resource, and the stream if it is obtained
+     * after the cancellation.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param executor the {@code Executor} to load with
+     * @return a <code>CompletableFuture</code> of the audio input stream, completed exceptionally
+     * as {@link #getAudioInputStream(ClassLoader, String)} would throw
+     */
+    public static CompletableFuture<AudioInputStream> getAudioInputStreamAsync(ClassLoader resourceLoader, String name,
+                                                                              Executor executor) {
+        return LoadFuture.load(() -> DEFAULT.loadAudioInputStream(resourceLoader, name), executor);
+    }
+
+    AudioFileFormat loadAudioFileFormat(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException, IOException {
+        return join(ResourceLoadEvent.Operation.AUDIO_FILE_FORMAT, resourceLoader, name,
+                () -> readAudioFileFormat(resourceLoader, name), null);
+    }
+
+    AudioInputStream loadAudioInputStream(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException, IOException {
+        return join(ResourceLoadEvent.Operation.AUDIO_INPUT_STREAM, resourceLoader, name,
+                () -> readAudioInputStream(resourceLoader, name, true), SHARED_STREAM);
+    }
+
+    private AudioInputStream loadAudioInputStream(ClassLoader resourceLoader, String name, AudioFormat targetFormat)
+            throws UnsupportedAudioFileException, IOException {
+        AudioInputStream audioStream = loadAudioInputStream(resourceLoader, name);
+        try {
+            AudioInputStream converted = FormatConverters.convert(audioStream, targetFormat);
+            return converted == audioStream ? audioStream : FormatConverters.blocks(converted);
+        }
+        catch (RuntimeException e) {
+            audioStream.close();
+            throw e;
+        }
+    }
+
+    private AudioInputStream loadStreamingAudioInputStream(ClassLoader resourceLoader, String name,
+                                                           int chunkSize, int chunkCount, Executor executor)
+            throws UnsupportedAudioFileException, IOException {
+        // not through the single flight or the disk cache, which would read the whole stream before returning
+        AudioInputStream audioStream = readAudioInputStream(resourceLoader, name, false);
+        try {
+            audioStream = AudioClipCache.toTargetFormat(audioStream, null);
+            AudioFormat format = audioStream.getFormat();
+            int frameSize = format.getFrameSize() > 0 ? format.getFrameSize() : 1;
+            int alignedChunkSize = Math.max(frameSize, chunkSize - chunkSize % frameSize);
+            return new AudioInputStream(new ReadAheadInputStream(audioStream, alignedChunkSize, chunkCount, executor),
+                    format, audioStream.getFrameLength());
+        }
+        catch (RuntimeException e) {
+            audioStream.close();
+            throw e;
+        }
+    }
+
+    private AudioFileFormat readAudioFileFormat(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException, IOException {
+
+        LoadRecorder recorder = LoadRecorder.start(ResourceLoadEvent.Operation.AUDIO_FILE_FORMAT, resourceLoader, name, listeners);
+        try {
+            FormatIndex.Entry entry = getIndexEntry(resourceLoader, name);
+            if (entry != null && entry.getAudioFileFormat() != null) {
+                recorder.served(entry.getReaderClassName());
+                return entry.getAudioFileFormat();
+            }
+            DiskAudioCache diskCache = getDiskCache();
+            // probing the header is cheaper than fingerprinting a resource by its whole content
+            DiskAudioCache.Identity identity = diskCache == null ? null : DiskAudioCache.identify(resourceLoader, name, false);
+            if (identity != null) {
+                AudioFileFormat cached = diskCache.getAudioFileFormat(name, identity);
+                if (cached != null) {
+                    recorder.served(DiskAudioCache.class.getName());
+                    return cached;
+                }
+            }
+
+            String preferred = getPreferredAudioResourceReader(resourceLoader, name);
+            AudioFileFormat format = null;
+
+            recorder.opening();
+            try (ResourceSource source = ResourceSource.openHeader(resourceLoader, name, warmupStore)) {
+                recorder.opened(source);
+                List<AudioResourceReader> providers = ProviderRegistry.dispatch(getAudioResourceReaders(), preferred, name, source);
+                for (AudioResourceReader reader : providers) {
+                    ByteBuffer buffer = source.getByteBuffer();
+                    recorder.attempting(reader);
+                    try {
+                        format = buffer == null ? reader.getAudioFileFormat(resourceLoader, name, source.newView())
+                                : reader.getAudioFileFormat(resourceLoader, name, buffer); // throws IOException
+                        recorder.served(reader);
+                        if (affinityCache != null) affinityCache.putReader(resourceLoader, name, AudioResourceReader.class, reader);
+                        break;
+                    }
+                    catch (UnsupportedAudioFileException ignored) {
+                    }
+                    finally {
+                        recorder.attempted();
+                    }
+                }
+            }
+
+            if (format == null) {
+                if (affinityCache != null) affinityCache.putUnsupported(resourceLoader, name, AudioResourceReader.class);
+                throw new UnsupportedAudioFileException("file is not a supported file type");
+            }
+            else {
+                return format;
+            }
+        }
+        catch (Throwable e) {
+            recorder.failed(e);
+            throw e;
+        }
+        finally {
+            recorder.finish();
+        }
+    }
+
+    private AudioInputStream readAudioInputStream(ClassLoader resourceLoader, String name, boolean useDiskCache)
+            throws UnsupportedAudioFileException, IOException {
+
+        LoadRecorder recorder = LoadRecorder.start(ResourceLoadEvent.Operation.AUDIO_INPUT_STREAM, resourceLoader, name, listeners);
+        try {
+            DiskAudioCache diskCache = useDiskCache ? getDiskCache() : null;
+            DiskAudioCache.Identity identity = diskCache == null ? null : DiskAudioCache.identify(resourceLoader, name, true);
+            if (identity != null) {
+                AudioInputStream cached = diskCache.getAudioInputStream(name, identity);
+                if (cached != null) {
+                    recorder.served(DiskAudioCache.class.getName());
+                    return cached;
+                }
+            }
+
+            String preferred = getPreferredAudioResourceReader(resourceLoader, name);
+            FormatIndex.Entry entry = identity == null ? null : getIndexEntry(resourceLoader, name);
+            AudioFileFormat fileFormat = entry == null ? null : entry.getAudioFileFormat();
+            AudioInputStream audioStream = null;
+
+            recorder.opening();
+            ResourceSource source = ResourceSource.open(resourceLoader, name, warmupStore);
+            recorder.opened(source);
             try {
-                audioStream = reader.getAudioInputStream(resourceLoader, name); // throws IOException
-                break;
+                List<AudioResourceReader> providers = ProviderRegistry.dispatch(getAudioResourceReaders(), preferred, name, source);
+                for (AudioResourceReader reader : providers) {
+                    ByteBuffer buffer = source.getByteBuffer();
+                    InputStream stream = buffer == null ? source.newView() : null;
+                    recorder.attempting(reader);
+                    try {
+                        // the disk cache stores the file format too, read here rather than by opening the resource again
+                        AudioFileFormat readerFormat = fileFormat;
+                        if (identity != null && readerFormat == null) {
+                            readerFormat = buffer == null ? reader.getAudioFileFormat(resourceLoader, name, source.newView())
+                                    : reader.getAudioFileFormat(resourceLoader, name, buffer);
+                        }
+                        audioStream = buffer == null ? reader.getAudioInputStream(resourceLoader, name, stream)
+                                : reader.getAudioInputStream(resourceLoader, name, buffer); // throws IOException
+                        fileFormat = readerFormat;
+                        source.release(stream);
+                        recorder.served(reader);
+                        if (affinityCache != null) affinityCache.putReader(resourceLoader, name, AudioResourceReader.class, reader);
+                        break;
+                    }
+                    catch (UnsupportedAudioFileException ignored) {
+                    }
+                    finally {
+                        recorder.attempted();
+                    }
+                }
+            }
+            finally {
+                if (audioStream == null) source.close();
+            }
+
+            if (audioStream == null) {
+                if (affinityCache != null) affinityCache.putUnsupported(resourceLoader, name, AudioResourceReader.class);
+                throw new UnsupportedAudioFileException("could not get audio input stream from input resource");
             }
-            catch (UnsupportedAudioFileException ignored) {
+            else if (identity != null) {
+                return diskCache.put(name, identity, fileFormat, audioStream);
             }
+            else {
+                return audioStream;
+            }
+        }
+        catch (Throwable e) {
+            recorder.failed(e);
+            throw e;
         }
+        finally {
+            recorder.finish();
+        }
+    }
 
-        if (audioStream == null) {
-            throw new UnsupportedAudioFileException("could not get audio input stream from input resource");
+    /**
+     * Runs a load, or joins the same load already running, see {@link SingleFlight}.
+     */
+    private <T, S> T join(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name,
+                          LoadFuture.Load<T> load, SingleFlight.Share<T, S> share)
+            throws UnsupportedAudioFileException, IOException {
+        try {
+            if (singleFlight == null) return load.load();
+            else return singleFlight.execute(resourceLoader, name, operation, load, share);
+        }
+        catch (UnsupportedAudioFileException | IOException | RuntimeException e) {
+            throw e;
         }
-        else {
-            return audioStream;
+        catch (Exception e) {
+            throw new IOException(e);
         }
     }
 
+    private DiskAudioCache getDiskCache() {
+        return diskCacheSet ? diskCache : DiskAudioCache.getDefault();
+    }
+
+    private Executor getExecutor() {
+        return executor == null ? LoaderExecutors.getDefaultExecutor() : executor;
+    }
+
     /**
-     * Obtains the set of audio file readers that are currently installed on the system.
+     * Obtains the audio resource readers of this loader, the installed ones unless the loader was given its own.
      * @return a List of
-     * {@link javax.sound.sampled.spi.AudioFileReader
-     * AudioFileReader}
-     * objects representing the installed audio file readers.  If no audio file
-     * readers are available on the system, an empty List is returned.
+     * {@link AudioResourceReader}
+     * objects.  If no audio resource
+     * readers are available, an empty List is returned.
      */
-    private static List<AudioResourceReader> getAudioResourceReaders() {
-        return getProviders(AudioResourceReader.class);
+    private List<AudioResourceReader> getAudioResourceReaders() {
+        return providers == null ? ProviderRegistry.getProviders(AudioResourceReader.class) : providers;
     }
 
-    private static<T> List<T> getProviders(Class<T> providerClass) {
-        List<T> providers = new ArrayList<>();
-        for (T t : ServiceLoader.load(providerClass)) {
-            if (providerClass.isInstance(t)) providers.add(t);
+    /**
+     * Looks up the format index entry of the given resource, unless it names a reader other than the
+     * audio resource readers this loader was built with.
+     *
+     * @return the entry, or {@code null} if there is none this loader can use
+     */
+    private FormatIndex.Entry getIndexEntry(ClassLoader resourceLoader, String name) {
+        FormatIndex.Entry entry = FormatIndex.get(resourceLoader).getEntry(name);
+        if (entry == null || providers == null) return entry;
+        for (AudioResourceReader reader : providers) {
+            if (reader.getClass().getName().equals(entry.getReaderClassName())) return entry;
         }
-        return providers;
+        return null;
+    }
+
+    /**
+     * Obtains the class name of the audio resource reader recorded in the format index or the reader
+     * affinity cache for the given resource.
+     *
+     * @return the reader class name, or {@code null} if nothing is known of the resource
+     * @throws UnsupportedAudioFileException if no reader recognized the resource recently
+     */
+    private String getPreferredAudioResourceReader(ClassLoader resourceLoader, String name)
+            throws UnsupportedAudioFileException {
+        FormatIndex.Entry entry = getIndexEntry(resourceLoader, name);
+        if (entry != null && entry.getAudioFileFormat() != null) return entry.getReaderClassName();
+        ReaderAffinityCache.Affinity affinity = affinityCache == null ? null : affinityCache.get(resourceLoader, name, AudioResourceReader.class);
+        if (affinity == null) return null;
+        else if (affinity.isUnsupported()) throw new UnsupportedAudioFileException("file is not a supported file type");
+        else return affinity.getReaderClassName();
     }
 
 }
@@ -0,0 +1,431 @@
+package com.tianscar.javasound.sampled;
+
+import com.tianscar.javasound.util.Formats;
+import com.tianscar.javasound.util.Resources;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * A cache of decoded audio in a local directory, which outlives the JVM, so compressed resources
+ * are only decoded once across restarts.
+ * <p>
+ * An entry holds the audio file format and the PCM data of a resource, in one file named after
+ * the resource name and its location, so resources of the same name in different jars or directories
+ * do not share an entry; a resource without a URL is located by its content. An entry is only used while
+ * the {@linkplain Resources#getFingerprint(ClassLoader, String) fingerprint} of the resource, stored with it,
+ * still matches, and is deleted once it does not.
+ * The PCM data of an entry is memory-mapped when it is read, so it is paged in from the disk as it
+ * is played rather than loaded at once. Entries are written to a temporary file first and moved in
+ * place, so other threads and processes never see a partial entry, and the least recently used
+ * entries are deleted beyond the maximum size of the directory.
+ * <p>
+ * No {@code DiskAudioCache} is used unless one is {@linkplain #setDefault(DiskAudioCache) installed};
+ * {@link AudioResourceLoader} consults the installed one for every audio input stream but streaming ones,
+ * and for the file formats of resources it can fingerprint without reading them.
+ * Audio input streams from the cache are always PCM, whatever the encoding of the resource.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public final class DiskAudioCache {
+
+    /**
+     * The default maximum size of the directory, 512 MiB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    private static final String SUFFIX = ".pcm";
+    private static final int MAGIC = 0x4A535043;
+    private static final int VERSION = 3;
+    private static final int DATA_POSITION = 8;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static volatile DiskAudioCache defaultCache;
+
+    /**
+     * Returns the {@code DiskAudioCache} the loaders use.
+     *
+     * @return the installed {@code DiskAudioCache}, or {@code null} if none is installed
+     */
+    public static DiskAudioCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Installs the {@code DiskAudioCache} the loaders use.
+     *
+     * @param cache the {@code DiskAudioCache} to use, or {@code null} to use none
+     */
+    public static void setDefault(DiskAudioCache cache) {
+        defaultCache = cache;
+    }
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * Creates a {@code DiskAudioCache} with the {@linkplain #DEFAULT_MAX_BYTES default maximum size}.
+     *
+     * @param directory the directory to keep the entries in, created if it does not exist
+     * @throws IOException if the directory could not be created
+     */
+    public DiskAudioCache(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a {@code DiskAudioCache}.
+     *
+     * @param directory the directory to keep the entries in, created if it does not exist
+     * @param maxBytes the maximum size of the directory, in bytes
+     * @throws IOException if the directory could not be created
+     */
+    public DiskAudioCache(File directory, long maxBytes) throws IOException {
+        Objects.requireNonNull(directory, "directory cannot be null");
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes cannot be negative");
+        Files.createDirectories(directory.toPath());
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the directory the entries are kept in.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum size of the directory.
+     *
+     * @return the maximum size, in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Obtains the cached audio file format of a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the audio file format, or {@code null} if the resource is not cached or has changed
+     * @throws IOException if the resource could not be found or read
+     */
+    public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name) throws IOException {
+        return getAudioFileFormat(name, identify(resourceLoader, name, true));
+    }
+
+    AudioFileFormat getAudioFileFormat(String name, Identity identity) throws IOException {
+        Entry entry = read(name, identity, false);
+        return entry == null ? null : entry.fileFormat;
+    }
+
+    /**
+     * Obtains an audio input stream reading the cached PCM data of a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return an {@code AudioInputStream} reading the memory-mapped PCM data, or {@code null} if the resource
+     * is not cached or has changed
+     * @throws IOException if the resource could not be found or read
+     */
+    public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws IOException {
+        return getAudioInputStream(name, identify(resourceLoader, name, true));
+    }
+
+    AudioInputStream getAudioInputStream(String name, Identity identity) throws IOException {
+        Entry entry = read(name, identity, true);
+        return entry == null ? null : entry.data.getAudioInputStream();
+    }
+
+    /**
+     * Decodes an audio input stream of a resource to PCM, and caches it with the audio file format.
+     * The stream is read to its end and closed, unless it cannot be decoded to PCM.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param fileFormat the audio file format of the resource
+     * @param stream the audio input stream of the resource
+     * @return an {@code AudioInputStream} reading the memory-mapped PCM data, the given stream if it cannot
+     * be decoded to PCM, or the decoded stream if the formats have properties which cannot be cached, see
+     * {@link Formats#isWritable(AudioFileFormat)}
+     * @throws IOException if an I/O error occurs while reading the stream or writing the entry
+     */
+    public AudioInputStream put(ClassLoader resourceLoader, String name, AudioFileFormat fileFormat,
+                                AudioInputStream stream) throws IOException {
+        Identity identity;
+        try {
+            identity = identify(resourceLoader, name, true);
+        }
+        catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        return put(name, identity, fileFormat, stream);
+    }
+
+    AudioInputStream put(String name, Identity identity, AudioFileFormat fileFormat, AudioInputStream stream) throws IOException {
+        AudioInputStream pcmStream;
+        try {
+            pcmStream = AudioClipCache.toTargetFormat(stream, null);
+        }
+        catch (IllegalArgumentException e) {
+            return stream;
+        }
+        if (!Formats.isWritable(fileFormat) || !Formats.isWritable(pcmStream.getFormat())) return pcmStream;
+        File entryFile = getEntryFile(name, identity.location);
+        Path temp;
+        try {
+            temp = Files.createTempFile(directory.toPath(), entryFile.getName(), ".tmp");
+        }
+        catch (IOException | RuntimeException e) {
+            pcmStream.close();
+            throw e;
+        }
+        try {
+            try (AudioInputStream in = pcmStream; RandomAccessFile out = new RandomAccessFile(temp.toFile(), "rw")) {
+                write(out, name, identity, fileFormat, in);
+            }
+            if (Files.size(temp) > maxBytes) {
+                ByteBuffer data = map(temp.toFile());
+                return new PcmBuffer(pcmStream.getFormat(), data).getAudioInputStream();
+            }
+            move(temp, entryFile.toPath());
+        }
+        finally {
+            File tempFile = temp.toFile();
+            if (tempFile.exists() && !tempFile.delete()) tempFile.deleteOnExit();
+        }
+        trim();
+        Entry entry = read(name, identity, true);
+        if (entry == null) throw new IOException("could not read back cache entry of " + name);
+        return entry.data.getAudioInputStream();
+    }
+
+    /**
+     * Deletes the entries of a resource, wherever it is located.
+     *
+     * @param name the resource name
+     * @return {@code true} if there was an entry
+     */
+    public boolean invalidate(String name) {
+        boolean deleted = false;
+        for (File file : listEntryFiles()) {
+            if (name.equals(readName(file)) && file.delete()) deleted = true;
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes all entries.
+     */
+    public void clear() {
+        for (File file : listEntryFiles()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the size of all entries.
+     *
+     * @return the size, in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (File file : listEntryFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Obtains the location and fingerprint of a resource, which identify its entry.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param readContent whether to read the whole resource to fingerprint it, see
+     * {@link Resources#getFingerprint(ClassLoader, String, boolean)}
+     * @return the identity of the resource, or {@code null} if it needs the content and {@code readContent} is {@code false}
+     * @throws IOException if the resource could not be found or read
+     */
+    static Identity identify(ClassLoader resourceLoader, String name, boolean readContent) throws IOException {
+        long fingerprint = Resources.getFingerprint(resourceLoader, name, readContent);
+        if (fingerprint == Resources.NO_FINGERPRINT) return null;
+        URL url = resourceLoader.getResource(name);
+        return new Identity(url == null ? "#" + Long.toHexString(fingerprint) : url.toExternalForm(), fingerprint);
+    }
+
+    static final class Identity {
+        private final String location;
+        private final long fingerprint;
+        private Identity(String location, long fingerprint) {
+            this.location = location;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class Entry {
+        private final AudioFileFormat fileFormat;
+        private final PcmBuffer data;
+        private Entry(AudioFileFormat fileFormat, PcmBuffer data) {
+            this.fileFormat = fileFormat;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Layout: magic, version, data offset, data length, name, location, fingerprint, file format, PCM format, PCM data.
+     */
+    private static void write(RandomAccessFile out, String name, Identity identity, AudioFileFormat fileFormat,
+                              AudioInputStream stream) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(0);
+        out.writeLong(0);
+        out.writeUTF(name);
+        out.writeUTF(identity.location);
+        out.writeLong(identity.fingerprint);
+        Formats.writeAudioFileFormat(out, fileFormat);
+        Formats.writeAudioFormat(out, stream.getFormat());
+        long dataOffset = out.getFilePointer();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long dataLength = 0;
+        int read;
+        while ((read = stream.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+            dataLength += read;
+            if (dataOffset + dataLength > Integer.MAX_VALUE) throw new IOException("decoded audio too long to cache");
+        }
+        out.seek(DATA_POSITION);
+        out.writeLong(dataOffset);
+        out.writeLong(dataLength);
+    }
+
+    private Entry read(String name, Identity identity, boolean mapData) throws IOException {
+        if (identity == null) return null;
+        File file = getEntryFile(name, identity.location);
+        if (!file.isFile()) return null;
+        AudioFileFormat fileFormat;
+        AudioFormat pcmFormat;
+        long dataOffset, dataLength;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return stale(file);
+            dataOffset = in.readLong();
+            dataLength = in.readLong();
+            if (!in.readUTF().equals(name) || !in.readUTF().equals(identity.location) || in.readLong() != identity.fingerprint) {
+                return stale(file);
+            }
+            fileFormat = Formats.readAudioFileFormat(in);
+            pcmFormat = Formats.readAudioFormat(in);
+        }
+        catch (IOException e) {
+            if (!file.exists()) return null;
+            return stale(file);
+        }
+        if (dataOffset <= 0 || dataOffset + dataLength != file.length()) return stale(file);
+        file.setLastModified(System.currentTimeMillis());
+        if (!mapData) return new Entry(fileFormat, null);
+        ByteBuffer data;
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataLength);
+        }
+        return new Entry(fileFormat, new PcmBuffer(pcmFormat, data));
+    }
+
+    private static String readName(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            in.readLong();
+            in.readLong();
+            return in.readUTF();
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Entry stale(File file) {
+        file.delete();
+        return null;
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(DATA_POSITION);
+            long dataOffset = in.readLong();
+            long dataLength = in.readLong();
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, dataOffset, dataLength);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private synchronized void trim() {
+        File[] files = listEntryFiles();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxBytes) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && size > maxBytes; i ++) {
+            long length = files[i].length();
+            if (files[i].delete()) size -= length;
+        }
+    }
+
+    private File[] listEntryFiles() {
+        File[] files = directory.listFiles((dir, fileName) -> fileName.endsWith(SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    private File getEntryFile(String name, String location) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(name.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            byte[] digest = sha.digest(location.getBytes(StandardCharsets.UTF_8));
+            StringBuilder fileName = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for (int i = 0; i < 16; i ++) {
+                fileName.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return new File(directory, fileName.append(SUFFIX).toString());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
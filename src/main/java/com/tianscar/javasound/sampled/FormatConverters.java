@@ -0,0 +1,194 @@
+package com.tianscar.javasound.sampled;
+
+import com.tianscar.javasound.util.ProviderRegistry;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.spi.FormatConversionProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts audio input streams between formats along conversion paths looked up once per pair of
+ * source and target formats, instead of querying every installed {@code FormatConversionProvider}
+ * on every conversion as {@code AudioSystem.getAudioInputStream(AudioFormat, AudioInputStream)} does.
+ * <p>
+ * A path is a single provider able to convert straight to the target format, or, failing that, two
+ * providers through an intermediate PCM format in the sample rate and channels of the source.
+ * Paths are cached with the provider list they were found among (see
+ * {@link ProviderRegistry#getAttachment}), so every context {@code ClassLoader}
+ * has its own, they are looked up again once {@link ProviderRegistry#reload()} has found new providers,
+ * and they never keep a redeployed application reachable.
+ *
+ * @author Karstian Lee
+ */
+final class FormatConverters {
+
+    private FormatConverters() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * The size of the blocks converted streams are read in, 64 KiB rounded down to whole frames.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final class Path {
+        private final FormatConversionProvider[] steps;
+        private final AudioFormat[] formats;
+        private Path(FormatConversionProvider[] steps, AudioFormat[] formats) {
+            this.steps = steps;
+            this.formats = formats;
+        }
+    }
+
+    /**
+     * Converts a stream to the target format.
+     *
+     * @param stream the stream to convert
+     * @param targetFormat the target format
+     * @return the converted stream, or the stream itself if it is in the target format already
+     * @throws IllegalArgumentException if the conversion is not supported
+     */
+    static AudioInputStream convert(AudioInputStream stream, AudioFormat targetFormat) {
+        AudioFormat sourceFormat = stream.getFormat();
+        if (sourceFormat.matches(targetFormat)) return stream;
+        List<FormatConversionProvider> providers = ProviderRegistry.getProviders(FormatConversionProvider.class);
+        List<AudioFormatKey> key = Arrays.asList(AudioFormatKey.of(sourceFormat), AudioFormatKey.of(targetFormat));
+        Map<List<AudioFormatKey>, Path> paths = ProviderRegistry.getAttachment(providers, FormatConverters.class,
+                list -> new ConcurrentHashMap<>());
+        Path path = paths.get(key);
+        if (path == null) {
+            path = findPath(providers, sourceFormat, targetFormat);
+            paths.put(key, path);
+        }
+        if (path.steps == null) throw new IllegalArgumentException("Unsupported conversion: " + targetFormat + " from " + sourceFormat);
+        for (int i = 0; i < path.steps.length; i ++) {
+            stream = path.steps[i].getAudioInputStream(path.formats[i], stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Wraps a stream so its source is read in large frame-aligned blocks, into a buffer reused
+     * for every block.
+     *
+     * @param stream the stream to wrap
+     * @return the wrapped stream
+     */
+    static AudioInputStream blocks(AudioInputStream stream) {
+        int frameSize = Math.max(1, stream.getFormat().getFrameSize());
+        int blockSize = Math.max(frameSize, BLOCK_SIZE - BLOCK_SIZE % frameSize);
+        return new AudioInputStream(new BlockInputStream(stream, blockSize, frameSize), stream.getFormat(), stream.getFrameLength());
+    }
+
+    private static Path findPath(List<FormatConversionProvider> providers, AudioFormat sourceFormat, AudioFormat targetFormat) {
+        FormatConversionProvider direct = findProvider(providers, sourceFormat, targetFormat);
+        if (direct != null) {
+            return new Path(new FormatConversionProvider[] { direct }, new AudioFormat[] { targetFormat });
+        }
+        for (AudioFormat intermediateFormat : getIntermediateFormats(sourceFormat, targetFormat)) {
+            FormatConversionProvider first = findProvider(providers, sourceFormat, intermediateFormat);
+            if (first == null) continue;
+            FormatConversionProvider second = findProvider(providers, intermediateFormat, targetFormat);
+            if (second == null) continue;
+            return new Path(new FormatConversionProvider[] { first, second },
+                    new AudioFormat[] { intermediateFormat, targetFormat });
+        }
+        return new Path(null, null);
+    }
+
+    private static FormatConversionProvider findProvider(List<FormatConversionProvider> providers,
+                                                         AudioFormat sourceFormat, AudioFormat targetFormat) {
+        for (FormatConversionProvider provider : providers) {
+            if (provider.isConversionSupported(targetFormat, sourceFormat)) return provider;
+        }
+        return null;
+    }
+
+    private static List<AudioFormat> getIntermediateFormats(AudioFormat sourceFormat, AudioFormat targetFormat) {
+        List<AudioFormat> formats = new ArrayList<>(2);
+        formats.add(new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceFormat.getSampleRate(), 16,
+                sourceFormat.getChannels(), sourceFormat.getChannels() * 2, sourceFormat.getSampleRate(), targetFormat.isBigEndian()));
+        formats.add(new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, sourceFormat.getSampleRate(), 32,
+                sourceFormat.getChannels(), sourceFormat.getChannels() * 4, sourceFormat.getSampleRate(), targetFormat.isBigEndian()));
+        formats.removeIf(format -> format.matches(sourceFormat) || format.matches(targetFormat));
+        return formats;
+    }
+
+    private static final class BlockInputStream extends InputStream {
+
+        private final InputStream in;
+        private final byte[] block;
+        private final int frameSize;
+        private int position;
+        private int count;
+
+        private BlockInputStream(InputStream in, int blockSize, int frameSize) {
+            this.in = in;
+            this.block = new byte[blockSize];
+            this.frameSize = frameSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= count && !fill()) return -1;
+            return block[position ++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+            if (len == 0) return 0;
+            if (position >= count) {
+                // reads of a block or more go straight to the source
+                if (len >= block.length) return in.read(b, off, len - len % frameSize);
+                if (!fill()) return -1;
+            }
+            int n = Math.min(len, count - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) return 0;
+            int buffered = count - position;
+            if (buffered > 0) {
+                int skipped = (int) Math.min(n, buffered);
+                position += skipped;
+                return skipped;
+            }
+            return in.skip(n - n % frameSize);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return count - position + in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean fill() throws IOException {
+            position = 0;
+            count = 0;
+            while (count < block.length) {
+                int read = in.read(block, count, block.length - count);
+                if (read <= 0) break;
+                count += read;
+            }
+            return count > 0;
+        }
+
+    }
+
+}
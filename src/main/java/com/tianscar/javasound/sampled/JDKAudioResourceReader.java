@@ -1,6 +1,8 @@
 package com.tianscar.javasound.sampled;
 
 import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Signature;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -16,19 +18,87 @@ import java.io.InputStream;
  */
 public class JDKAudioResourceReader implements AudioResourceReader {
 
+    private static final String[] FILE_EXTENSIONS = { "wav", "wave", "aif", "aiff", "aifc", "au", "snd" };
+    private static final String[] MIME_TYPES = { "audio/wav", "audio/x-wav", "audio/aiff", "audio/x-aiff", "audio/basic" };
+    private static final Signature[] SIGNATURES = {
+            Signature.of(0, "RIFF").and(8, "WAVE"),
+            Signature.of(0, "FORM").and(8, "AIFF"),
+            Signature.of(0, "FORM").and(8, "AIFC"),
+            Signature.of(0, ".snd")
+    };
+
+    /**
+     * Returns {@link #LOWEST_PRIORITY}, so readers of other providers are tried first.
+     *
+     * @return {@link #LOWEST_PRIORITY}
+     */
+    @Override
+    public int getPriority() {
+        return LOWEST_PRIORITY;
+    }
+
+    /**
+     * Returns the file extensions of the WAVE, AIFF and AU files the JDK reads.
+     *
+     * @return the file extensions
+     */
+    @Override
+    public String[] getFileExtensions() {
+        return FILE_EXTENSIONS.clone();
+    }
+
+    /**
+     * Returns the MIME types of the WAVE, AIFF and AU files the JDK reads.
+     *
+     * @return the MIME types
+     */
+    @Override
+    public String[] getMimeTypes() {
+        return MIME_TYPES.clone();
+    }
+
+    /**
+     * Returns the signatures of the WAVE, AIFF and AU files the JDK reads.
+     *
+     * @return the signatures
+     */
+    @Override
+    public Signature[] getSignatures() {
+        return SIGNATURES.clone();
+    }
+
     @Override
     public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException, IOException {
-        try (InputStream stream = resourceLoader.getResourceAsStream(name)) {
-            if (stream == null) throw new IOException("could not load resource \"" + name + "\" with ClassLoader \"" + resourceLoader + "\"");
-            else return AudioSystem.getAudioFileFormat(stream);
+        try (ResourceSource source = ResourceSource.openHeader(resourceLoader, name)) {
+            return getAudioFileFormat(resourceLoader, name, source.newView());
         }
     }
 
     @Override
     public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException, IOException {
-        InputStream stream = resourceLoader.getResourceAsStream(name);
-        if (stream == null) throw new IOException("could not load resource \"" + name + "\" with ClassLoader \"" + resourceLoader + "\"");
-        else return AudioSystem.getAudioInputStream(stream);
+        ResourceSource source = ResourceSource.open(resourceLoader, name);
+        InputStream stream = source.newView();
+        AudioInputStream audioStream = null;
+        try {
+            audioStream = getAudioInputStream(resourceLoader, name, stream);
+            source.release(stream);
+            return audioStream;
+        }
+        finally {
+            if (audioStream == null) source.close();
+        }
+    }
+
+    @Override
+    public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name, InputStream stream)
+            throws UnsupportedAudioFileException, IOException {
+        return AudioSystem.getAudioFileFormat(stream);
+    }
+
+    @Override
+    public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, InputStream stream)
+            throws UnsupportedAudioFileException, IOException {
+        return AudioSystem.getAudioInputStream(stream);
     }
 
 }
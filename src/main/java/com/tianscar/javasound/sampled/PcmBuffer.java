@@ -0,0 +1,86 @@
+package com.tianscar.javasound.sampled;
+
+import com.tianscar.javasound.util.ByteBufferInputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Decoded PCM data held in a {@code ByteBuffer}, on the heap, off-heap or in a memory-mapped file,
+ * see {@link PcmStorage}.
+ * <p>
+ * The data is immutable, every {@link #getAudioInputStream() stream}, {@link #newChannel() channel} and
+ * {@link #getByteBuffer() buffer view} handed out reads the same storage without copying it.
+ *
+ * @author Karstian Lee
+ */
+public final class PcmBuffer {
+
+    private final AudioFormat format;
+    private final ByteBuffer data;
+    private final long frameLength;
+
+    PcmBuffer(AudioFormat format, ByteBuffer data) {
+        this.format = format;
+        this.data = data.asReadOnlyBuffer();
+        this.frameLength = data.remaining() / Math.max(1, format.getFrameSize());
+    }
+
+    /**
+     * Returns the format of the PCM data.
+     *
+     * @return the {@code AudioFormat}
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns the length of the PCM data, in sample frames.
+     *
+     * @return the frame length
+     */
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Returns the length of the PCM data, in bytes.
+     *
+     * @return the byte length
+     */
+    public int getByteLength() {
+        return data.remaining();
+    }
+
+    /**
+     * Returns a new read-only view of the PCM data, positioned at its first byte.
+     *
+     * @return a read-only {@code ByteBuffer} sharing the storage
+     */
+    public ByteBuffer getByteBuffer() {
+        return data.duplicate();
+    }
+
+    /**
+     * Returns a new audio input stream reading the PCM data from its first frame.
+     *
+     * @return an {@code AudioInputStream} reading straight from the storage
+     */
+    public AudioInputStream getAudioInputStream() {
+        return new AudioInputStream(new ByteBufferInputStream(data), format, frameLength);
+    }
+
+    /**
+     * Returns a new channel reading the PCM data from its first byte, which copies straight from
+     * the storage into the buffers it reads into, direct buffers included.
+     *
+     * @return a {@code ReadableByteChannel} reading straight from the storage
+     */
+    public ReadableByteChannel newChannel() {
+        return new ByteBufferInputStream(data);
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.tianscar.javasound.sampled;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Where decoded PCM data is stored, see {@link AudioClipCache}.
+ *
+ * @author Karstian Lee
+ */
+public enum PcmStorage {
+
+    /**
+     * In a {@code byte[]} on the Java heap.
+     */
+    HEAP {
+        @Override
+        ByteBuffer store(AudioInputStream stream) throws IOException {
+            long length = getByteLength(stream);
+            byte[] data = new byte[length < 0 ? CHUNK_SIZE : (int) length];
+            int total = 0;
+            while (true) {
+                if (total == data.length) {
+                    // AudioInputStream never reads past its frame length
+                    if (length >= 0) break;
+                    if (data.length >= MAX_LENGTH) throw new IOException("audio data too large to store");
+                    data = Arrays.copyOf(data, (int) Math.min(MAX_LENGTH, (long) data.length << 1));
+                }
+                int read = stream.read(data, total, data.length - total);
+                if (read < 0) break;
+                total += read;
+            }
+            // not to keep up to twice the data alive with the buffer grown for an unknown length
+            if (data.length > total) data = Arrays.copyOf(data, total);
+            return ByteBuffer.wrap(data);
+        }
+    },
+
+    /**
+     * In a direct {@code ByteBuffer}, off the Java heap.
+     */
+    DIRECT {
+        @Override
+        ByteBuffer store(AudioInputStream stream) throws IOException {
+            long length = getByteLength(stream);
+            ByteBuffer data = ByteBuffer.allocateDirect(length < 0 ? CHUNK_SIZE * 16 : (int) length);
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (true) {
+                int read = stream.read(chunk, 0, chunk.length);
+                if (read < 0) break;
+                if (data.remaining() < read) {
+                    if (data.capacity() >= MAX_LENGTH) throw new IOException("audio data too large to store");
+                    ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(MAX_LENGTH,
+                            Math.max((long) data.capacity() << 1, (long) data.position() + read)));
+                    data.flip();
+                    grown.put(data);
+                    data = grown;
+                }
+                data.put(chunk, 0, read);
+            }
+            data.flip();
+            return data;
+        }
+    },
+
+    /**
+     * In a temporary file mapped into memory, off the Java heap and paged in by the OS on demand.
+     * The file is deleted right away where the OS allows it, and on exit otherwise.
+     */
+    MAPPED {
+        @Override
+        ByteBuffer store(AudioInputStream stream) throws IOException {
+            File file = File.createTempFile("javasound-pcm", ".raw");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+                long total = 0;
+                while (true) {
+                    int read = stream.read(chunk, 0, chunk.length);
+                    if (read < 0) break;
+                    total += read;
+                    if (total > MAX_LENGTH) throw new IOException("audio data too large to store");
+                    chunkBuffer.clear().limit(read);
+                    while (chunkBuffer.hasRemaining()) channel.write(chunkBuffer);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, total);
+            }
+            finally {
+                if (!file.delete()) file.deleteOnExit();
+            }
+        }
+    };
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * Reads the stream to its end into the storage.
+     *
+     * @param stream the stream to store
+     * @return the stored data, from position {@code 0} to its limit
+     * @throws IOException if an I/O error occurs
+     */
+    abstract ByteBuffer store(AudioInputStream stream) throws IOException;
+
+    private static long getByteLength(AudioInputStream stream) throws IOException {
+        if (stream.getFrameLength() == AudioSystem.NOT_SPECIFIED) return -1;
+        long length = stream.getFrameLength() * stream.getFormat().getFrameSize();
+        if (length < 0) return -1;
+        else if (length > MAX_LENGTH) throw new IOException("audio data too large to store");
+        else return length;
+    }
+
+}
@@ -1,18 +1,26 @@
 package com.tianscar.javasound.sampled.spi;
 
+import com.tianscar.javasound.util.ByteBufferInputStream;
+import com.tianscar.javasound.util.ProviderHints;
+
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Provider for audio resource-reading services.  Classes providing concrete
  * implementations can parse the format information from one or more types of
  * audio resource, and can produce audio input streams from resources of these types.
+ * <p>
+ * Implementations may give {@link ProviderHints} about the resources they handle,
+ * so the loaders try them first for these resources.
  *
  * @author Karstian Lee
  */
-public interface AudioResourceReader {
+public interface AudioResourceReader extends ProviderHints {
 
     /**
      * Obtains the audio file format of the resource provided.  The resource must
@@ -41,4 +49,93 @@ public interface AudioResourceReader {
      */
     AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException, IOException;
 
+    /**
+     * Obtains the audio file format of the resource provided, reading it from the stream
+     * the resource has already been opened into.
+     * <p>
+     * The stream is positioned at the start of the resource and supports mark/reset; it is
+     * shared with other readers probing the same resource, so closing it has no effect. The default
+     * implementation ignores the stream and calls {@link #getAudioFileFormat(ClassLoader, String)}.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name from which file format information should be
+     * extracted
+     * @param stream the opened resource
+     * @return an <code>AudioFileFormat</code> object describing the audio file format
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name, InputStream stream)
+            throws UnsupportedAudioFileException, IOException {
+        return getAudioFileFormat(resourceLoader, name);
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided, reading it from the stream
+     * the resource has already been opened into.
+     * <p>
+     * The stream is positioned at the start of the resource and supports mark/reset until a reader
+     * accepts it. If the returned <code>AudioInputStream</code> is built on the stream, closing
+     * it closes the resource. The default implementation ignores the stream and calls
+     * {@link #getAudioInputStream(ClassLoader, String)}.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param stream the opened resource
+     * @return an <code>AudioInputStream</code> object based on the audio file data pointed
+     * to by the resource
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, InputStream stream)
+            throws UnsupportedAudioFileException, IOException {
+        return getAudioInputStream(resourceLoader, name);
+    }
+
+    /**
+     * Obtains the audio file format of the resource provided, reading it from the buffer
+     * the resource has already been read or memory-mapped into.
+     * <p>
+     * The buffer is read-only and holds the whole resource from its position to its limit; it is
+     * a view of its own, so moving its position has no effect on other readers. The default
+     * implementation calls {@link #getAudioFileFormat(ClassLoader, String, InputStream)} with a stream
+     * reading the buffer.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name from which file format information should be
+     * extracted
+     * @param buffer the content of the resource
+     * @return an <code>AudioFileFormat</code> object describing the audio file format
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name, ByteBuffer buffer)
+            throws UnsupportedAudioFileException, IOException {
+        return getAudioFileFormat(resourceLoader, name, new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * Obtains an audio input stream from the resource provided, reading it from the buffer
+     * the resource has already been read or memory-mapped into.
+     * <p>
+     * The buffer is read-only and holds the whole resource from its position to its limit; it is
+     * a view of its own, so moving its position has no effect on other readers, and the returned
+     * <code>AudioInputStream</code> may read it for as long as it is open. The default implementation
+     * calls {@link #getAudioInputStream(ClassLoader, String, InputStream)} with a stream reading the buffer.
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name for which the <code>AudioInputStream</code> should be
+     * constructed
+     * @param buffer the content of the resource
+     * @return an <code>AudioInputStream</code> object based on the audio file data pointed
+     * to by the resource
+     * @throws UnsupportedAudioFileException if the resource does not point to valid audio
+     * file data recognized by the system
+     * @throws IOException if an I/O exception occurs
+     */
+    default AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name, ByteBuffer buffer)
+            throws UnsupportedAudioFileException, IOException {
+        return getAudioInputStream(resourceLoader, name, new ByteBufferInputStream(buffer));
+    }
+
 }
@@ -0,0 +1,111 @@
+package com.tianscar.javasound.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * An {@code InputStream} reading straight from a {@code ByteBuffer}, heap, direct or mapped alike.
+ * <p>
+ * The stream reads a duplicate of the buffer, from its position to its limit; the buffer itself
+ * and its content are never modified, so any number of streams can share it.
+ * <p>
+ * It is a {@code ReadableByteChannel} as well, which reads into direct buffers with a single bulk copy.
+ *
+ * @author Karstian Lee
+ */
+public class ByteBufferInputStream extends InputStream implements ReadableByteChannel {
+
+    private final ByteBuffer buffer;
+    private int mark;
+    private volatile boolean closed;
+
+    /**
+     * Creates a {@code ByteBufferInputStream}.
+     *
+     * @param buffer the buffer to read from its position to its limit
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.mark = this.buffer.position();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        if (!buffer.hasRemaining()) return -1;
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    /**
+     * Reads bytes into the given buffer, without any intermediate copy.
+     *
+     * @param dst the buffer to read into
+     * @return the number of bytes read, or {@code -1} at the end of the stream
+     * @throws ClosedChannelException if this stream is closed
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (closed) throw new ClosedChannelException();
+        if (!buffer.hasRemaining()) return -1;
+        int n = Math.min(dst.remaining(), buffer.remaining());
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(slice.position() + n);
+        dst.put(slice);
+        buffer.position(buffer.position() + n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) return 0;
+        int skipped = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buffer.position(mark);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Closes this stream as a channel, further {@link #read(ByteBuffer)} calls fail.
+     * The buffer is left untouched.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+}
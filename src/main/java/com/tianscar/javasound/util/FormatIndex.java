@@ -0,0 +1,404 @@
+package com.tianscar.javasound.util;
+
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.sampled.AudioFileFormat;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * A header-only index of audio and MIDI resources, built ahead of time by
+ * {@link com.tianscar.javasound.FormatIndexer} and stored as {@value #RESOURCE_NAME}.
+ * <p>
+ * For every indexed resource, the index records its file format and the reader which
+ * recognized it, so the loaders can answer format queries without any I/O, and hand full
+ * loads straight to the right reader instead of trying every installed one.
+ * <p>
+ * The index of a {@code ClassLoader} merges all index resources visible from it, the first one
+ * on the class path wins for a resource indexed twice. Entries also record the size, CRC and
+ * modification time of their resource, and an entry is dropped the first time it is looked up if its
+ * resource is a jar entry of another size or CRC, or a file of another size, or of another modification
+ * time and CRC, so a stale index costs the probing it would have saved, not wrong formats. A file only
+ * gets read for its CRC if it was modified since it was indexed, or copied without its modification time.
+ * <p>
+ * The formats are written by {@link Formats}, along with their properties as long as their values are
+ * strings, booleans or numbers of the primitive types; entries with properties of other types are left out.
+ * <p>
+ * Looking up the index of a {@code ClassLoader} never locks once it has been read.
+ *
+ * @author Karstian Lee
+ */
+public final class FormatIndex {
+
+    /**
+     * The resource name of the index.
+     */
+    public static final String RESOURCE_NAME = "META-INF/javasound/formats.idx";
+
+    private static final int MAGIC = 0x4A534649; // "JSFI"
+    private static final int VERSION = 3;
+    private static final byte KIND_AUDIO = 1;
+    private static final byte KIND_MIDI = 2;
+
+    private static final byte UNCHECKED = 0;
+    private static final byte CURRENT = 1;
+    private static final byte STALE = 2;
+
+    private static final FormatIndex EMPTY = new FormatIndex(null, Collections.emptyMap());
+    private static final Object lock = new Object();
+    private static volatile FormatIndex[] indexes = new FormatIndex[0];
+
+    /**
+     * An indexed resource.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final String readerClassName;
+        private final AudioFileFormat audioFileFormat;
+        private final MidiFileFormat midiFileFormat;
+        private final long size;
+        private final long crc;
+        private final long lastModified;
+        private volatile byte state = UNCHECKED;
+
+        /**
+         * Creates an entry of an audio resource, of unknown size, CRC and modification time.
+         *
+         * @param name the resource name
+         * @param readerClassName the class name of the reader which recognized the resource
+         * @param format the audio file format of the resource
+         */
+        public Entry(String name, String readerClassName, AudioFileFormat format) {
+            this(name, readerClassName, format, null, -1, -1, -1);
+        }
+
+        /**
+         * Creates an entry of an audio resource.
+         *
+         * @param name the resource name
+         * @param readerClassName the class name of the reader which recognized the resource
+         * @param format the audio file format of the resource
+         * @param size the size of the resource in bytes, or -1 if unknown
+         * @param crc the CRC-32 of the resource, or -1 if unknown
+         * @param lastModified the modification time of the resource in milliseconds since the epoch, or -1 if unknown
+         */
+        public Entry(String name, String readerClassName, AudioFileFormat format, long size, long crc, long lastModified) {
+            this(name, readerClassName, format, null, size, crc, lastModified);
+        }
+
+        /**
+         * Creates an entry of a MIDI resource, of unknown size, CRC and modification time.
+         *
+         * @param name the resource name
+         * @param readerClassName the class name of the reader which recognized the resource
+         * @param format the MIDI file format of the resource
+         */
+        public Entry(String name, String readerClassName, MidiFileFormat format) {
+            this(name, readerClassName, null, format, -1, -1, -1);
+        }
+
+        /**
+         * Creates an entry of a MIDI resource.
+         *
+         * @param name the resource name
+         * @param readerClassName the class name of the reader which recognized the resource
+         * @param format the MIDI file format of the resource
+         * @param size the size of the resource in bytes, or -1 if unknown
+         * @param crc the CRC-32 of the resource, or -1 if unknown
+         * @param lastModified the modification time of the resource in milliseconds since the epoch, or -1 if unknown
+         */
+        public Entry(String name, String readerClassName, MidiFileFormat format, long size, long crc, long lastModified) {
+            this(name, readerClassName, null, format, size, crc, lastModified);
+        }
+
+        private Entry(String name, String readerClassName, AudioFileFormat audioFileFormat, MidiFileFormat midiFileFormat,
+                      long size, long crc, long lastModified) {
+            this.name = name;
+            this.readerClassName = readerClassName;
+            this.audioFileFormat = audioFileFormat;
+            this.midiFileFormat = midiFileFormat;
+            this.size = size;
+            this.crc = crc;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the resource name.
+         *
+         * @return the resource name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the class name of the reader which recognized the resource.
+         *
+         * @return the reader class name
+         */
+        public String getReaderClassName() {
+            return readerClassName;
+        }
+
+        /**
+         * Returns the audio file format of the resource.
+         *
+         * @return the audio file format, or {@code null} if the resource is not audio
+         */
+        public AudioFileFormat getAudioFileFormat() {
+            return audioFileFormat;
+        }
+
+        /**
+         * Returns the MIDI file format of the resource.
+         *
+         * @return the MIDI file format, or {@code null} if the resource is not MIDI
+         */
+        public MidiFileFormat getMidiFileFormat() {
+            return midiFileFormat;
+        }
+
+        /**
+         * Returns the size of the resource when it was indexed.
+         *
+         * @return the size in bytes, or -1 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the CRC-32 of the resource when it was indexed.
+         *
+         * @return the CRC-32, or -1 if unknown
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Returns the modification time of the resource when it was indexed.
+         *
+         * @return the modification time in milliseconds since the epoch, or -1 if unknown
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+    }
+
+    private final WeakReference<ClassLoader> loaderRef;
+    private final Map<String, Entry> entries;
+
+    private FormatIndex(ClassLoader resourceLoader, Map<String, Entry> entries) {
+        this.loaderRef = new WeakReference<>(resourceLoader);
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the index of the resources visible from the given {@code ClassLoader}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @return the index, empty if there is none or it could not be read
+     */
+    public static FormatIndex get(ClassLoader resourceLoader) {
+        if (resourceLoader == null) return EMPTY;
+        for (FormatIndex index : indexes) {
+            if (index.loaderRef.get() == resourceLoader) return index;
+        }
+        FormatIndex loaded = load(resourceLoader);
+        synchronized (lock) {
+            FormatIndex[] current = indexes;
+            for (FormatIndex index : current) {
+                if (index.loaderRef.get() == resourceLoader) return index;
+            }
+            List<FormatIndex> updated = new ArrayList<>(current.length + 1);
+            for (FormatIndex index : current) {
+                if (index.loaderRef.get() != null) updated.add(index);
+            }
+            updated.add(loaded);
+            indexes = updated.toArray(new FormatIndex[0]);
+            return loaded;
+        }
+    }
+
+    /**
+     * Drops the index of the given {@code ClassLoader}, it will be read again on next use.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     */
+    public static void reload(ClassLoader resourceLoader) {
+        synchronized (lock) {
+            List<FormatIndex> retained = new ArrayList<>(indexes.length);
+            for (FormatIndex index : indexes) {
+                ClassLoader loader = index.loaderRef.get();
+                if (loader != null && loader != resourceLoader) retained.add(index);
+            }
+            indexes = retained.toArray(new FormatIndex[0]);
+        }
+    }
+
+    /**
+     * Returns the entry of the given resource.
+     *
+     * @param name the resource name
+     * @return the entry, or {@code null} if the resource is not indexed or has changed since
+     */
+    public Entry getEntry(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) return null;
+        byte state = entry.state;
+        if (state == UNCHECKED) entry.state = state = isCurrent(entry) ? CURRENT : STALE;
+        return state == CURRENT ? entry : null;
+    }
+
+    /**
+     * Compares the size and CRC of an entry to what the file or jar entry of its resource tells, reading
+     * a file for its CRC only if its modification time changed. Resources neither in a file nor in a jar
+     * cannot be checked, and are assumed current.
+     */
+    private boolean isCurrent(Entry entry) {
+        ClassLoader resourceLoader = loaderRef.get();
+        if (entry.size < 0 || resourceLoader == null) return true;
+        File file = Resources.getFile(resourceLoader, entry.name);
+        if (file != null) {
+            if (file.length() != entry.size) return false;
+            else if (entry.crc == -1 || (entry.lastModified != -1 && file.lastModified() == entry.lastModified)) return true;
+            try (InputStream in = new FileInputStream(file)) {
+                CRC32 crc = new CRC32();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) crc.update(buffer, 0, read);
+                return crc.getValue() == entry.crc;
+            }
+            catch (IOException e) {
+                return false;
+            }
+        }
+        URL url = resourceLoader.getResource(entry.name);
+        if (url == null) return true;
+        try {
+            URLConnection connection = url.openConnection();
+            if (!(connection instanceof JarURLConnection)) return true;
+            JarEntry jarEntry = ((JarURLConnection) connection).getJarEntry();
+            if (jarEntry == null) return true;
+            if (jarEntry.getSize() != -1 && jarEntry.getSize() != entry.size) return false;
+            return jarEntry.getCrc() == -1 || entry.crc == -1 || jarEntry.getCrc() == entry.crc;
+        }
+        catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether this index is empty.
+     *
+     * @return {@code true} if no resource is indexed
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Writes an index. Entries whose formats have properties of other types than strings, booleans or
+     * numbers of the primitive types are left out, as they could not be read back as they are.
+     *
+     * @param entries the entries to write
+     * @param out the stream to write to, left open
+     * @return the number of entries written
+     * @throws IOException if an I/O error occurs
+     */
+    public static int write(Collection<Entry> entries, OutputStream out) throws IOException {
+        List<Entry> written = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            if (entry.audioFileFormat != null ? Formats.isWritable(entry.audioFileFormat) : Formats.isWritable(entry.midiFileFormat)) {
+                written.add(entry);
+            }
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(written.size());
+        for (Entry entry : written) {
+            data.writeUTF(entry.name);
+            data.writeUTF(entry.readerClassName);
+            data.writeLong(entry.size);
+            data.writeLong(entry.crc);
+            data.writeLong(entry.lastModified);
+            if (entry.audioFileFormat != null) {
+                data.writeByte(KIND_AUDIO);
+                Formats.writeAudioFileFormat(data, entry.audioFileFormat);
+            }
+            else {
+                data.writeByte(KIND_MIDI);
+                Formats.writeMidiFileFormat(data, entry.midiFileFormat);
+            }
+        }
+        data.flush();
+        return written.size();
+    }
+
+    private static FormatIndex load(ClassLoader resourceLoader) {
+        Map<String, Entry> entries = new HashMap<>();
+        try {
+            Enumeration<URL> urls = resourceLoader.getResources(RESOURCE_NAME);
+            while (urls.hasMoreElements()) {
+                try (InputStream in = urls.nextElement().openStream()) {
+                    read(in, entries);
+                }
+            }
+        }
+        catch (IOException ignored) {
+            // a broken index only costs the probing it would have saved
+        }
+        return new FormatIndex(resourceLoader, entries.isEmpty() ? Collections.emptyMap() : entries);
+    }
+
+    private static void read(InputStream in, Map<String, Entry> entries) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) throw new IOException("not a format index");
+        int version = data.readInt();
+        if (version < 1 || version > VERSION) throw new IOException("unsupported format index version");
+        int count = data.readInt();
+        for (int i = 0; i < count; i ++) {
+            String name = data.readUTF();
+            String readerClassName = data.readUTF();
+            // version 1 did not record the size and CRC
+            long size = version < 2 ? -1 : data.readLong();
+            long crc = version < 2 ? -1 : data.readLong();
+            // nor did version 2 the modification time and properties
+            long lastModified = version < 3 ? -1 : data.readLong();
+            byte kind = data.readByte();
+            Entry entry;
+            if (kind == KIND_AUDIO) {
+                entry = new Entry(name, readerClassName, Formats.readAudioFileFormat(data, version >= 3), size, crc, lastModified);
+            }
+            else if (kind == KIND_MIDI) {
+                entry = new Entry(name, readerClassName, Formats.readMidiFileFormat(data, version >= 3), size, crc, lastModified);
+            }
+            else throw new IOException("unknown format index entry kind: " + kind);
+            if (!entries.containsKey(name)) entries.put(name, entry);
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.tianscar.javasound.util;
+
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes and reads file formats in the binary layout shared by the {@link FormatIndex} and the
+ * {@link com.tianscar.javasound.sampled.DiskAudioCache}, so both read back the same formats.
+ * <p>
+ * Formats are written with their properties, as long as their values are strings, booleans or numbers
+ * of the primitive types, see {@link #isWritable(AudioFileFormat)}. Well-known encodings and file types
+ * are read back as the constants of {@code AudioFormat.Encoding} and {@code AudioFileFormat.Type}.
+ *
+ * @author Karstian Lee
+ */
+public final class Formats {
+
+    private Formats() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final byte PROPERTY_STRING = 'S';
+    private static final byte PROPERTY_BOOLEAN = 'Z';
+    private static final byte PROPERTY_INT = 'I';
+    private static final byte PROPERTY_LONG = 'J';
+    private static final byte PROPERTY_FLOAT = 'F';
+    private static final byte PROPERTY_DOUBLE = 'D';
+
+    /**
+     * Returns whether an audio file format can be written and read back as it is.
+     *
+     * @param fileFormat the audio file format
+     * @return {@code true} if the properties of the file format and of its audio format are all of the written types
+     */
+    public static boolean isWritable(AudioFileFormat fileFormat) {
+        return isWritable(fileFormat.properties()) && isWritable(fileFormat.getFormat());
+    }
+
+    /**
+     * Returns whether an audio format can be written and read back as it is.
+     *
+     * @param format the audio format
+     * @return {@code true} if the properties of the format are all of the written types
+     */
+    public static boolean isWritable(AudioFormat format) {
+        return isWritable(format.properties());
+    }
+
+    static boolean isWritable(MidiFileFormat fileFormat) {
+        return isWritable(fileFormat.properties());
+    }
+
+    /**
+     * Writes an audio file format, see {@link #isWritable(AudioFileFormat)}.
+     *
+     * @param out the output to write to
+     * @param fileFormat the audio file format
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the file format has properties of other types
+     */
+    public static void writeAudioFileFormat(DataOutput out, AudioFileFormat fileFormat) throws IOException {
+        AudioFileFormat.Type type = fileFormat.getType();
+        out.writeUTF(type.toString());
+        out.writeUTF(type.getExtension() == null ? "" : type.getExtension());
+        out.writeInt(fileFormat.getByteLength());
+        out.writeInt(fileFormat.getFrameLength());
+        writeAudioFormat(out, fileFormat.getFormat());
+        writeProperties(out, fileFormat.properties());
+    }
+
+    /**
+     * Reads an audio file format written by {@link #writeAudioFileFormat(DataOutput, AudioFileFormat)}.
+     *
+     * @param in the input to read from
+     * @return the audio file format
+     * @throws IOException if an I/O error occurs, or the input is malformed
+     */
+    public static AudioFileFormat readAudioFileFormat(DataInput in) throws IOException {
+        return readAudioFileFormat(in, true);
+    }
+
+    /**
+     * Reads an audio file format, without properties if it was written by a version of the format index
+     * which did not write them.
+     */
+    static AudioFileFormat readAudioFileFormat(DataInput in, boolean withProperties) throws IOException {
+        AudioFileFormat.Type type = toType(in.readUTF(), in.readUTF());
+        int byteLength = in.readInt();
+        int frameLength = in.readInt();
+        AudioFormat format = readAudioFormat(in, withProperties);
+        Map<String, Object> properties = withProperties ? readProperties(in) : Collections.emptyMap();
+        return new ReadAudioFileFormat(type, byteLength, format, frameLength, properties);
+    }
+
+    /**
+     * Writes an audio format, see {@link #isWritable(AudioFormat)}.
+     *
+     * @param out the output to write to
+     * @param format the audio format
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the format has properties of other types
+     */
+    public static void writeAudioFormat(DataOutput out, AudioFormat format) throws IOException {
+        out.writeUTF(format.getEncoding().toString());
+        out.writeFloat(format.getSampleRate());
+        out.writeInt(format.getSampleSizeInBits());
+        out.writeInt(format.getChannels());
+        out.writeInt(format.getFrameSize());
+        out.writeFloat(format.getFrameRate());
+        out.writeBoolean(format.isBigEndian());
+        writeProperties(out, format.properties());
+    }
+
+    /**
+     * Reads an audio format written by {@link #writeAudioFormat(DataOutput, AudioFormat)}.
+     *
+     * @param in the input to read from
+     * @return the audio format
+     * @throws IOException if an I/O error occurs, or the input is malformed
+     */
+    public static AudioFormat readAudioFormat(DataInput in) throws IOException {
+        return readAudioFormat(in, true);
+    }
+
+    private static AudioFormat readAudioFormat(DataInput in, boolean withProperties) throws IOException {
+        AudioFormat.Encoding encoding = toEncoding(in.readUTF());
+        float sampleRate = in.readFloat();
+        int sampleSizeInBits = in.readInt();
+        int channels = in.readInt();
+        int frameSize = in.readInt();
+        float frameRate = in.readFloat();
+        boolean bigEndian = in.readBoolean();
+        Map<String, Object> properties = withProperties ? readProperties(in) : Collections.emptyMap();
+        return new AudioFormat(encoding, sampleRate, sampleSizeInBits, channels, frameSize, frameRate, bigEndian, properties);
+    }
+
+    static void writeMidiFileFormat(DataOutput out, MidiFileFormat fileFormat) throws IOException {
+        out.writeInt(fileFormat.getType());
+        out.writeFloat(fileFormat.getDivisionType());
+        out.writeInt(fileFormat.getResolution());
+        out.writeInt(fileFormat.getByteLength());
+        out.writeLong(fileFormat.getMicrosecondLength());
+        writeProperties(out, fileFormat.properties());
+    }
+
+    static MidiFileFormat readMidiFileFormat(DataInput in, boolean withProperties) throws IOException {
+        int type = in.readInt();
+        float divisionType = in.readFloat();
+        int resolution = in.readInt();
+        int byteLength = in.readInt();
+        long microsecondLength = in.readLong();
+        Map<String, Object> properties = withProperties ? readProperties(in) : Collections.emptyMap();
+        return new MidiFileFormat(type, divisionType, resolution, byteLength, microsecondLength, properties);
+    }
+
+    private static boolean isWritable(Map<String, Object> properties) {
+        for (Object value : properties.values()) {
+            if (!(value instanceof String || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                    || value instanceof Float || value instanceof Double)) return false;
+        }
+        return true;
+    }
+
+    private static void writeProperties(DataOutput out, Map<String, Object> properties) throws IOException {
+        if (!isWritable(properties)) throw new IllegalArgumentException("properties of unsupported types: " + properties);
+        out.writeInt(properties.size());
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            out.writeUTF(property.getKey());
+            Object value = property.getValue();
+            if (value instanceof String) {
+                out.writeByte(PROPERTY_STRING);
+                out.writeUTF((String) value);
+            }
+            else if (value instanceof Boolean) {
+                out.writeByte(PROPERTY_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            }
+            else if (value instanceof Integer) {
+                out.writeByte(PROPERTY_INT);
+                out.writeInt((Integer) value);
+            }
+            else if (value instanceof Long) {
+                out.writeByte(PROPERTY_LONG);
+                out.writeLong((Long) value);
+            }
+            else if (value instanceof Float) {
+                out.writeByte(PROPERTY_FLOAT);
+                out.writeFloat((Float) value);
+            }
+            else {
+                out.writeByte(PROPERTY_DOUBLE);
+                out.writeDouble((Double) value);
+            }
+        }
+    }
+
+    private static Map<String, Object> readProperties(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) throw new IOException("negative property count: " + count);
+        else if (count == 0) return Collections.emptyMap();
+        Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < count; i ++) {
+            String key = in.readUTF();
+            byte kind = in.readByte();
+            Object value;
+            if (kind == PROPERTY_STRING) value = in.readUTF();
+            else if (kind == PROPERTY_BOOLEAN) value = in.readBoolean();
+            else if (kind == PROPERTY_INT) value = in.readInt();
+            else if (kind == PROPERTY_LONG) value = in.readLong();
+            else if (kind == PROPERTY_FLOAT) value = in.readFloat();
+            else if (kind == PROPERTY_DOUBLE) value = in.readDouble();
+            else throw new IOException("unknown property kind: " + kind);
+            properties.put(key, value);
+        }
+        return properties;
+    }
+
+    private static AudioFileFormat.Type toType(String name, String extension) {
+        if (extension.isEmpty()) extension = null;
+        for (AudioFileFormat.Type type : new AudioFileFormat.Type[] {
+                AudioFileFormat.Type.WAVE, AudioFileFormat.Type.AU, AudioFileFormat.Type.AIFF,
+                AudioFileFormat.Type.AIFC, AudioFileFormat.Type.SND }) {
+            if (type.toString().equals(name) && type.getExtension().equals(extension)) return type;
+        }
+        return new AudioFileFormat.Type(name, extension);
+    }
+
+    private static AudioFormat.Encoding toEncoding(String name) {
+        for (AudioFormat.Encoding encoding : new AudioFormat.Encoding[] {
+                AudioFormat.Encoding.PCM_SIGNED, AudioFormat.Encoding.PCM_UNSIGNED, AudioFormat.Encoding.PCM_FLOAT,
+                AudioFormat.Encoding.ULAW, AudioFormat.Encoding.ALAW }) {
+            if (encoding.toString().equals(name)) return encoding;
+        }
+        return new AudioFormat.Encoding(name);
+    }
+
+    /**
+     * An audio file format of both a byte length and properties, which no constructor of {@code AudioFileFormat} takes.
+     */
+    private static final class ReadAudioFileFormat extends AudioFileFormat {
+        private final Map<String, Object> properties;
+        private ReadAudioFileFormat(Type type, int byteLength, AudioFormat format, int frameLength,
+                                    Map<String, Object> properties) {
+            super(type, byteLength, format, frameLength);
+            this.properties = properties;
+        }
+        @Override
+        public Map<String, Object> properties() {
+            return Collections.unmodifiableMap(properties);
+        }
+        @Override
+        public Object getProperty(String key) {
+            return properties.get(key);
+        }
+    }
+
+}
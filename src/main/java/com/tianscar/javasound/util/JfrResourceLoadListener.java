@@ -0,0 +1,26 @@
+package com.tianscar.javasound.util;
+
+/**
+ * Records every loader call as a {@code com.tianscar.javasound.ResourceLoad} Flight Recorder event.
+ * <p>
+ * Flight Recorder events need Java 11, on older runtimes this listener does nothing,
+ * see {@link #isAvailable()}. Register it with {@link ResourceLoadListeners#add(ResourceLoadListener)}.
+ *
+ * @author Karstian Lee
+ */
+public final class JfrResourceLoadListener implements ResourceLoadListener {
+
+    /**
+     * Returns whether Flight Recorder events can be recorded on this runtime.
+     *
+     * @return {@code true} if the events are recorded
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    @Override
+    public void resourceLoaded(ResourceLoadEvent event) {
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.tianscar.javasound.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A {@code CompletableFuture} of an asynchronous resource load.
+ * <p>
+ * Cancelling a {@code LoadFuture} closes the resource streams the load has opened so far,
+ * so a load blocked reading a resource fails fast instead of running to its end, and closes
+ * the result if it is {@code Closeable} and arrives after the cancellation.
+ *
+ * @param <T> the result type
+ * @author Karstian Lee
+ */
+public class LoadFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * A resource load, which may throw checked exceptions.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Load<T> {
+        /**
+         * Performs the load.
+         *
+         * @return the result
+         * @throws Exception if the load fails
+         */
+        T load() throws Exception;
+    }
+
+    private static final ThreadLocal<LoadFuture<?>> current = new ThreadLocal<>();
+
+    private final List<Closeable> resources = new ArrayList<>();
+
+    /**
+     * Runs the load with the given {@code Executor}.
+     *
+     * @param load the load to run
+     * @param executor the {@code Executor} to run the load with
+     * @param <T> the result type
+     * @return the {@code LoadFuture} of the load
+     */
+    public static <T> LoadFuture<T> load(Load<T> load, Executor executor) {
+        Objects.requireNonNull(load, "load cannot be null");
+        Objects.requireNonNull(executor, "executor cannot be null");
+        LoadFuture<T> future = new LoadFuture<>();
+        try {
+            executor.execute(() -> future.run(load));
+        }
+        catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Registers a resource opened by the load running on the current thread, to be closed
+     * if the load gets cancelled. Does nothing if no load is running on the current thread.
+     *
+     * @param resource the opened resource
+     * @throws IOException if the load has been cancelled already, the resource is closed then
+     */
+    public static void register(Closeable resource) throws IOException {
+        LoadFuture<?> future = current.get();
+        if (future == null) return;
+        synchronized (future.resources) {
+            if (!future.isCancelled()) {
+                future.resources.add(resource);
+                return;
+            }
+        }
+        resource.close();
+        throw new IOException("load cancelled");
+    }
+
+    /**
+     * Returns whether the load running on the current thread has been cancelled.
+     */
+    static boolean isCurrentCancelled() {
+        LoadFuture<?> future = current.get();
+        return future != null && future.isCancelled();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) closeResources();
+        return cancelled;
+    }
+
+    private void run(Load<T> load) {
+        if (isDone()) return;
+        current.set(this);
+        try {
+            T result = load.load();
+            if (!complete(result) && result instanceof Closeable) closeQuietly((Closeable) result);
+        }
+        catch (Throwable e) {
+            completeExceptionally(e);
+        }
+        finally {
+            current.remove();
+            synchronized (resources) {
+                resources.clear();
+            }
+        }
+    }
+
+    private void closeResources() {
+        List<Closeable> toClose;
+        synchronized (resources) {
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+        for (Closeable resource : toClose) closeQuietly(resource);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        }
+        catch (IOException ignored) {
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.tianscar.javasound.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures a call of the resource loaders and reports it to the {@link ResourceLoadListeners}.
+ * <p>
+ * Starting a recorder tells the listeners the call starts, see {@link ResourceLoadListener#resourceLoading}.
+ * When no listener is registered, {@link #start(ResourceLoadEvent.Operation, ClassLoader, String)}
+ * returns a recorder which does nothing, so an unobserved loader pays for nothing but a few empty calls.
+ * <p>
+ * This class is not thread-safe, a recorder belongs to the thread running the call.
+ *
+ * @author Karstian Lee
+ */
+public class LoadRecorder {
+
+    private static final ResourceLoadListener[] NO_LISTENERS = new ResourceLoadListener[0];
+
+    private static final LoadRecorder NOOP = new LoadRecorder(null, null, null, NO_LISTENERS, NO_LISTENERS) {
+        @Override
+        public void opening() {
+        }
+        @Override
+        public void opened(ResourceSource source) {
+        }
+        @Override
+        public void attempting(Object provider) {
+        }
+        @Override
+        public void attempted() {
+        }
+        @Override
+        public void served(Object provider) {
+        }
+        @Override
+        public void served(String providerClassName) {
+        }
+        @Override
+        public void failed(Throwable failure) {
+        }
+        @Override
+        public void finish() {
+        }
+    };
+
+    private final ResourceLoadEvent.Operation operation;
+    private final ClassLoader resourceLoader;
+    private final String name;
+    private final ResourceLoadListener[] registeredListeners;
+    private final ResourceLoadListener[] listeners;
+    private final List<String> attemptedProviders = new ArrayList<>(2);
+    private String provider;
+    private ResourceSource source;
+    private long openStart;
+    private long openNanos;
+    private long parseStart;
+    private long parseNanos;
+    private Throwable failure;
+
+    private LoadRecorder(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name,
+                         ResourceLoadListener[] registeredListeners, ResourceLoadListener[] listeners) {
+        this.operation = operation;
+        this.resourceLoader = resourceLoader;
+        this.name = name;
+        this.registeredListeners = registeredListeners;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Starts recording a loader call.
+     *
+     * @param operation the loader operation
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the recorder of the call, which does nothing if no listener is registered
+     */
+    public static LoadRecorder start(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name) {
+        return start(operation, resourceLoader, name, NO_LISTENERS);
+    }
+
+    /**
+     * Starts recording a loader call, reported to the given listeners as well as the registered ones.
+     *
+     * @param operation the loader operation
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param listeners the listeners of the loader making the call
+     * @return the recorder of the call, which does nothing if no listener is given or registered
+     */
+    public static LoadRecorder start(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name,
+                                     ResourceLoadListener[] listeners) {
+        // the listeners registered when the call starts are the ones told of its completion
+        ResourceLoadListener[] registeredListeners = ResourceLoadListeners.getListenerArray();
+        if (registeredListeners.length == 0 && listeners.length == 0) return NOOP;
+        ResourceLoadListeners.fireLoading(operation, resourceLoader, name, registeredListeners);
+        ResourceLoadListeners.fireLoading(operation, resourceLoader, name, listeners);
+        return new LoadRecorder(operation, resourceLoader, name, registeredListeners, listeners);
+    }
+
+    /**
+     * Marks the start of opening the resource.
+     */
+    public void opening() {
+        openStart = System.nanoTime();
+    }
+
+    /**
+     * Marks the resource as opened.
+     *
+     * @param source the opened resource
+     */
+    public void opened(ResourceSource source) {
+        openNanos += System.nanoTime() - openStart;
+        this.source = source;
+    }
+
+    /**
+     * Marks the start of a provider attempt.
+     *
+     * @param provider the provider
+     */
+    public void attempting(Object provider) {
+        attemptedProviders.add(provider.getClass().getName());
+        parseStart = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a provider attempt, successful or not.
+     */
+    public void attempted() {
+        parseNanos += System.nanoTime() - parseStart;
+    }
+
+    /**
+     * Records the provider which served the call.
+     *
+     * @param provider the provider
+     */
+    public void served(Object provider) {
+        served(provider.getClass().getName());
+    }
+
+    /**
+     * Records the provider which served the call.
+     *
+     * @param providerClassName the class name of the provider
+     */
+    public void served(String providerClassName) {
+        provider = providerClassName;
+    }
+
+    /**
+     * Records the failure of the call.
+     *
+     * @param failure the exception thrown by the loader
+     */
+    public void failed(Throwable failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Ends recording and reports the call to the listeners.
+     */
+    public void finish() {
+        ResourceLoadEvent event = new ResourceLoadEvent(resourceLoader, operation, name, failure == null ? provider : null,
+                Collections.unmodifiableList(attemptedProviders), openNanos, parseNanos,
+                source == null ? 0 : source.getBytesRead(), failure);
+        ResourceLoadListeners.fire(event, registeredListeners);
+        ResourceLoadListeners.fire(event, listeners);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.tianscar.javasound.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code Executor}s asynchronous loads run with by default.
+ *
+ * @author Karstian Lee
+ */
+public final class LoaderExecutors {
+
+    private LoaderExecutors() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final class DefaultExecutorHolder {
+        private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+    }
+
+    /**
+     * Returns the default {@code Executor} of asynchronous loads: a virtual thread per load
+     * when running on JDK 21 or later, otherwise a pool of daemon threads bounded to the number
+     * of available processors.
+     *
+     * @return the default {@code Executor}
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.DEFAULT_EXECUTOR;
+    }
+
+    private static final class ReadAheadExecutorHolder {
+        private static final Executor READ_AHEAD_EXECUTOR = createReadAheadExecutor();
+    }
+
+    /**
+     * Returns the default {@code Executor} of {@link ReadAheadInputStream} producers: a virtual thread
+     * per producer when running on JDK 21 or later, otherwise a daemon thread per producer, since
+     * a producer blocks for as long as its stream is open.
+     *
+     * @return the default read-ahead {@code Executor}
+     */
+    public static Executor getReadAheadExecutor() {
+        return ReadAheadExecutorHolder.READ_AHEAD_EXECUTOR;
+    }
+
+    /**
+     * Creates a pool of daemon loader threads.
+     *
+     * @param threads the maximum number of threads
+     * @return the new pool, idle threads exit after a minute
+     */
+    public static ExecutorService newLoaderPool(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive");
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new LoaderThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return newLoaderPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    private static Executor createReadAheadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            ThreadFactory threadFactory = new LoaderThreadFactory("javasound-read-ahead-");
+            return command -> threadFactory.newThread(command).start();
+        }
+    }
+
+    private static final class LoaderThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger(1);
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+        private LoaderThreadFactory() {
+            this("javasound-loader-" + poolNumber.getAndIncrement() + "-thread-");
+        }
+        private LoaderThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
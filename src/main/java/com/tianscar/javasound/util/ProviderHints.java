@@ -0,0 +1,64 @@
+package com.tianscar.javasound.util;
+
+/**
+ * Hints of a resource reader provider about the resources it handles, so the loaders can try
+ * the right provider first instead of probing all installed providers in turn.
+ * <p>
+ * Providers are tried in the order of their {@linkplain #getPriority() priority}. For a given
+ * resource, providers whose {@linkplain #getSignatures() signature} is found at the start of the
+ * resource are tried first, then providers claiming the {@linkplain #getFileExtensions() file extension}
+ * or {@linkplain #getMimeTypes() MIME type} of the resource name, then providers which give no hints,
+ * and last the providers whose hints do not match. Hints only change the order, every provider is
+ * still tried before a resource is reported unsupported. All methods have defaults giving no hints.
+ *
+ * @author Karstian Lee
+ */
+public interface ProviderHints {
+
+    /**
+     * The priority of providers which give none.
+     */
+    int DEFAULT_PRIORITY = 0;
+
+    /**
+     * The priority of the providers which re-direct to the JDK, tried after all others.
+     */
+    int LOWEST_PRIORITY = Integer.MIN_VALUE;
+
+    /**
+     * Returns the priority of the provider, providers with a higher priority are tried first.
+     *
+     * @return the priority, {@link #DEFAULT_PRIORITY} by default
+     */
+    default int getPriority() {
+        return DEFAULT_PRIORITY;
+    }
+
+    /**
+     * Returns the file extensions, without the dot, of the resources the provider handles.
+     *
+     * @return the file extensions, empty by default
+     */
+    default String[] getFileExtensions() {
+        return new String[0];
+    }
+
+    /**
+     * Returns the MIME types of the resources the provider handles.
+     *
+     * @return the MIME types, empty by default
+     */
+    default String[] getMimeTypes() {
+        return new String[0];
+    }
+
+    /**
+     * Returns the magic-byte signatures of the resources the provider handles.
+     *
+     * @return the signatures, empty by default
+     */
+    default Signature[] getSignatures() {
+        return new Signature[0];
+    }
+
+}
@@ -0,0 +1,415 @@
+package com.tianscar.javasound.util;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URLConnection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The shared registry of resource reader providers.
+ * <p>
+ * Providers are looked up with {@link ServiceLoader} against the context {@code ClassLoader}
+ * of the calling thread, the same way the loaders always did, but the resolved lists are cached
+ * per {@code ClassLoader}, so {@code META-INF/services} is only scanned once for every
+ * provider type. The {@code ClassLoader}s are weakly referenced. A provider list holding providers
+ * defined by the {@code ClassLoader} itself, or by any other loader than the system {@code ClassLoader}
+ * and its ancestors, would keep its {@code ClassLoader} reachable, so it is kept with a class such a
+ * provider is defined by (see {@link ClassValue}) instead: it lives exactly as long as that
+ * {@code ClassLoader}, and a redeployed application does not get pinned by the registry.
+ * <p>
+ * Values derived from a provider list, such as the conversion paths found among format conversion
+ * providers, can be cached with the list by {@link #getAttachment(List, Object, Function)}, so they
+ * share its lifetime rather than pinning the providers in a static map.
+ * <p>
+ * The lists are sorted by the {@linkplain ProviderHints#getPriority() priority} of the providers,
+ * providers of the same priority stay in {@link ServiceLoader} order.
+ * <p>
+ * Lookups never lock, only the first lookup for a {@code ClassLoader} and {@link #reload()}
+ * do. Call {@link #reload()} or {@link #reload(ClassLoader)} after installing new providers at runtime.
+ *
+ * @author Karstian Lee
+ */
+public final class ProviderRegistry {
+
+    private ProviderRegistry() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final class Entry {
+        private final WeakReference<ClassLoader> loaderRef;
+        private final boolean bootstrap;
+        private final ConcurrentMap<Class<?>, Supplier<List<?>>> providers = new ConcurrentHashMap<>();
+        private Entry(ClassLoader loader) {
+            this.loaderRef = new WeakReference<>(loader, collected);
+            this.bootstrap = loader == null;
+        }
+        private boolean matches(ClassLoader loader) {
+            return loader == null ? bootstrap : loaderRef.get() == loader;
+        }
+        private boolean isStale() {
+            return !bootstrap && loaderRef.get() == null;
+        }
+        private void clear() {
+            for (Supplier<List<?>> providersRef : providers.values()) {
+                if (providersRef instanceof Anchored) ((Anchored) providersRef).clear();
+            }
+            providers.clear();
+        }
+    }
+
+    /**
+     * A provider list kept in the {@link #anchoredProviders class value} of a class its {@code ClassLoader}
+     * defines, and only weakly referenced from the registry.
+     */
+    private static final class Anchored implements Supplier<List<?>> {
+        private final WeakReference<Class<?>> anchorRef;
+        private Anchored(Class<?> anchor, List<?> providers) {
+            this.anchorRef = new WeakReference<>(anchor);
+            anchoredProviders.get(anchor).put(this, providers);
+        }
+        @Override
+        public List<?> get() {
+            Class<?> anchor = anchorRef.get();
+            return anchor == null ? null : anchoredProviders.get(anchor).get(this);
+        }
+        private void clear() {
+            Class<?> anchor = anchorRef.get();
+            if (anchor != null) anchoredProviders.get(anchor).remove(this);
+        }
+    }
+
+    /**
+     * A provider list of the registry, which can carry values derived from it.
+     */
+    private static final class ProviderList<T> extends AbstractList<T> implements RandomAccess {
+        private final List<T> providers;
+        private final ConcurrentMap<Object, Object> attachments = new ConcurrentHashMap<>();
+        private ProviderList(List<T> providers) {
+            this.providers = providers;
+        }
+        @Override
+        public T get(int index) {
+            return providers.get(index);
+        }
+        @Override
+        public int size() {
+            return providers.size();
+        }
+    }
+
+    private static final ClassValue<ConcurrentMap<Anchored, List<?>>> anchoredProviders = new ClassValue<ConcurrentMap<Anchored, List<?>>>() {
+        @Override
+        protected ConcurrentMap<Anchored, List<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final Object lock = new Object();
+    private static final ReferenceQueue<ClassLoader> collected = new ReferenceQueue<>();
+    private static volatile Entry[] entries = new Entry[0];
+
+    /**
+     * Obtains the installed providers of the given type, visible from the context {@code ClassLoader}
+     * of the current thread.
+     *
+     * @param providerClass the provider type
+     * @param <T> the provider type
+     * @return an unmodifiable list of the installed providers, possibly empty
+     */
+    public static <T> List<T> getProviders(Class<T> providerClass) {
+        return getProviders(Thread.currentThread().getContextClassLoader(), providerClass);
+    }
+
+    /**
+     * Obtains the installed providers of the given type, visible from the given {@code ClassLoader}.
+     *
+     * @param serviceLoader the {@code ClassLoader} to look up providers with, {@code null} for the system {@code ClassLoader}
+     * @param providerClass the provider type
+     * @param <T> the provider type
+     * @return an unmodifiable list of the installed providers, possibly empty
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> getProviders(ClassLoader serviceLoader, Class<T> providerClass) {
+        if (collected.poll() != null) expungeStale();
+        Entry entry = getEntry(serviceLoader);
+        Supplier<List<?>> providersRef = entry.providers.get(providerClass);
+        List<?> providers = providersRef == null ? null : providersRef.get();
+        if (providers == null) {
+            List<?> loaded = loadProviders(serviceLoader, providerClass);
+            providers = loaded;
+            Class<?> anchor = getAnchor(serviceLoader, loaded);
+            entry.providers.put(providerClass, anchor == null ? () -> loaded : new Anchored(anchor, loaded));
+        }
+        return (List<T>) providers;
+    }
+
+    /**
+     * Obtains a value derived from a provider list, computing it once for every list the registry returned:
+     * the value is kept with the list, and dropped with it once the list is reloaded or its {@code ClassLoader}
+     * is collected. Values derived from other lists are computed on every call.
+     *
+     * @param providers the provider list
+     * @param key the key of the value, such as the class deriving it
+     * @param compute computes the value from the list
+     * @param <V> the value type
+     * @return the value derived from the list
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> V getAttachment(List<?> providers, Object key, Function<? super List<?>, ? extends V> compute) {
+        if (!(providers instanceof ProviderList)) return compute.apply(providers);
+        return (V) ((ProviderList<?>) providers).attachments.computeIfAbsent(key, k -> compute.apply(providers));
+    }
+
+    /**
+     * Drops all cached providers, the next lookups will scan {@code META-INF/services} again.
+     * Also clears the {@link ReaderAffinityCache#getDefault() shared reader affinity cache}, as
+     * new providers may recognize resources no provider recognized before.
+     */
+    public static void reload() {
+        synchronized (lock) {
+            for (Entry entry : entries) {
+                entry.clear();
+            }
+            entries = new Entry[0];
+        }
+        ReaderAffinityCache.getDefault().clear();
+    }
+
+    /**
+     * Drops the cached providers of the given {@code ClassLoader}, the next lookups with it
+     * will scan {@code META-INF/services} again. Also clears the
+     * {@link ReaderAffinityCache#getDefault() shared reader affinity cache}.
+     *
+     * @param serviceLoader the {@code ClassLoader} to drop the cached providers of, {@code null} for the system {@code ClassLoader}
+     */
+    public static void reload(ClassLoader serviceLoader) {
+        synchronized (lock) {
+            List<Entry> retained = new ArrayList<>(entries.length);
+            for (Entry entry : entries) {
+                if (entry.matches(serviceLoader)) entry.clear();
+                else if (!entry.isStale()) retained.add(entry);
+            }
+            entries = retained.toArray(new Entry[0]);
+        }
+        ReaderAffinityCache.getDefault().clear();
+    }
+
+    /**
+     * Moves the provider of the given class to the front of the list, so it is tried first.
+     *
+     * @param providers the providers
+     * @param className the class name of the provider to try first, may be {@code null}
+     * @param <T> the provider type
+     * @return the reordered providers, or the same list if no provider has the class name
+     */
+    public static <T> List<T> preferring(List<T> providers, String className) {
+        if (className == null) return providers;
+        for (int i = 0; i < providers.size(); i ++) {
+            if (providers.get(i).getClass().getName().equals(className)) {
+                if (i == 0) return providers;
+                List<T> reordered = new ArrayList<>(providers.size());
+                reordered.add(providers.get(i));
+                for (int j = 0; j < providers.size(); j ++) {
+                    if (j != i) reordered.add(providers.get(j));
+                }
+                return reordered;
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * Orders the providers to try for a resource: the provider of the given class first if there is one,
+     * otherwise by the {@link ProviderHints} of the providers, matched against the resource name and the
+     * first bytes of the resource.
+     *
+     * @param providers the providers, in the order of their priority
+     * @param className the class name of the provider known to handle the resource, may be {@code null}
+     * @param name the resource name
+     * @param source the opened resource
+     * @param <T> the provider type
+     * @return the reordered providers, or the same list if the order does not change
+     * @throws IOException if an I/O error occurs while peeking the resource
+     */
+    public static <T> List<T> dispatch(List<T> providers, String className, String name, ResourceSource source) throws IOException {
+        if (className != null) return preferring(providers, className);
+        if (providers.size() < 2) return providers;
+        int[] ranks = rank(providers, name, source);
+        List<T> ordered = new ArrayList<>(providers.size());
+        boolean reordered = false;
+        for (int rank = 3; rank >= 0; rank --) {
+            for (int i = 0; i < ranks.length; i ++) {
+                if (ranks[i] == rank) {
+                    reordered |= ordered.size() != i;
+                    ordered.add(providers.get(i));
+                }
+            }
+        }
+        return reordered ? ordered : providers;
+    }
+
+    /**
+     * Returns whether any of the providers claims a resource by its {@link ProviderHints}: its
+     * signature is found at the start of the resource, or its file extension or MIME type matches
+     * the resource name.
+     *
+     * @param providers the providers
+     * @param name the resource name
+     * @param source the opened resource
+     * @return {@code true} if a provider claims the resource
+     * @throws IOException if an I/O error occurs while peeking the resource
+     */
+    public static boolean claims(List<?> providers, String name, ResourceSource source) throws IOException {
+        for (int rank : rank(providers, name, source)) {
+            if (rank >= 2) return true;
+        }
+        return false;
+    }
+
+    private static int[] rank(List<?> providers, String name, ResourceSource source) throws IOException {
+        int headLength = 0;
+        for (Object provider : providers) {
+            if (provider instanceof ProviderHints) {
+                for (Signature signature : ((ProviderHints) provider).getSignatures()) {
+                    headLength = Math.max(headLength, signature.getLength());
+                }
+            }
+        }
+        byte[] head = headLength == 0 ? null : source.peek(headLength);
+        String extension = getExtension(name);
+        String mimeType = URLConnection.guessContentTypeFromName(name);
+        int[] ranks = new int[providers.size()];
+        for (int i = 0; i < ranks.length; i ++) {
+            ranks[i] = rank(providers.get(i), head, extension, mimeType);
+        }
+        return ranks;
+    }
+
+    /**
+     * 3 for a matching signature, 2 for a matching name, 1 for no hints, 0 for hints not matching.
+     */
+    private static int rank(Object provider, byte[] head, String extension, String mimeType) {
+        if (!(provider instanceof ProviderHints)) return 1;
+        ProviderHints hints = (ProviderHints) provider;
+        Signature[] signatures = hints.getSignatures();
+        if (signatures.length > 0 && head != null) {
+            for (Signature signature : signatures) {
+                if (signature.matches(head)) return 3;
+            }
+            return 0;
+        }
+        String[] extensions = hints.getFileExtensions();
+        String[] mimeTypes = hints.getMimeTypes();
+        if (extensions.length == 0 && mimeTypes.length == 0) return 1;
+        for (String candidate : extensions) {
+            if (candidate.equalsIgnoreCase(extension)) return 2;
+        }
+        for (String candidate : mimeTypes) {
+            if (candidate.equalsIgnoreCase(mimeType)) return 2;
+        }
+        return 0;
+    }
+
+    private static String getExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 || dot < name.lastIndexOf('/') ? null : name.substring(dot + 1);
+    }
+
+    /**
+     * Returns the class to keep the providers with if they would keep the {@code ClassLoader} reachable, and it
+     * can be collected at all: a provider class it defines itself, or else one defined by another loader than
+     * its ancestors.
+     */
+    private static Class<?> getAnchor(ClassLoader serviceLoader, List<?> providers) {
+        if (serviceLoader == null) return null;
+        ClassLoader permanent = ClassLoader.getSystemClassLoader();
+        for (ClassLoader loader = permanent; loader != null; loader = loader.getParent()) {
+            if (loader == serviceLoader) return null;
+        }
+        Class<?> anchor = null;
+        for (Object provider : providers) {
+            Class<?> providerClass = provider.getClass();
+            if (providerClass.getClassLoader() == serviceLoader) return providerClass;
+            else if (anchor == null && !isAncestor(providerClass.getClassLoader(), serviceLoader)) anchor = providerClass;
+        }
+        return anchor;
+    }
+
+    private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+        for (ClassLoader parent = loader.getParent(); ; parent = parent.getParent()) {
+            if (parent == ancestor) return true;
+            else if (parent == null) return false;
+        }
+    }
+
+    private static void expungeStale() {
+        while (collected.poll() != null) {
+            // drain, the stale entries are dropped below
+        }
+        synchronized (lock) {
+            List<Entry> retained = new ArrayList<>(entries.length);
+            for (Entry entry : entries) {
+                if (!entry.isStale()) retained.add(entry);
+            }
+            entries = retained.toArray(new Entry[0]);
+        }
+    }
+
+    private static Entry getEntry(ClassLoader serviceLoader) {
+        for (Entry entry : entries) {
+            if (entry.matches(serviceLoader)) return entry;
+        }
+        synchronized (lock) {
+            Entry[] current = entries;
+            for (Entry entry : current) {
+                if (entry.matches(serviceLoader)) return entry;
+            }
+            List<Entry> updated = new ArrayList<>(current.length + 1);
+            for (Entry entry : current) {
+                if (!entry.isStale()) updated.add(entry);
+            }
+            Entry entry = new Entry(serviceLoader);
+            updated.add(entry);
+            entries = updated.toArray(new Entry[0]);
+            return entry;
+        }
+    }
+
+    /**
+     * Sorts providers by their {@linkplain ProviderHints#getPriority() priority}, providers of the same
+     * priority stay in the given order.
+     *
+     * @param providers the providers
+     * @param <T> the provider type
+     * @return an unmodifiable sorted copy of the providers
+     */
+    public static <T> List<T> prioritized(Collection<? extends T> providers) {
+        List<T> sorted = new ArrayList<>(providers);
+        sorted.sort((a, b) -> Integer.compare(getPriority(b), getPriority(a)));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private static int getPriority(Object provider) {
+        return provider instanceof ProviderHints ? ((ProviderHints) provider).getPriority() : ProviderHints.DEFAULT_PRIORITY;
+    }
+
+    private static <T> List<T> loadProviders(ClassLoader serviceLoader, Class<T> providerClass) {
+        List<T> providers = new ArrayList<>();
+        for (T t : ServiceLoader.load(providerClass, serviceLoader)) {
+            if (providerClass.isInstance(t)) providers.add(t);
+        }
+        return new ProviderList<>(prioritized(providers));
+    }
+
+}
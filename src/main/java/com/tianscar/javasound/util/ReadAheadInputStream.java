@@ -0,0 +1,248 @@
+package com.tianscar.javasound.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@code InputStream} which reads its source ahead on a background producer, into a bounded
+ * ring of reusable chunks.
+ * <p>
+ * The producer reads the source in whole chunks, so any inflation or decoding the source does runs
+ * off the consumer thread, and hands the filled chunks over to the consumer, whose reads are served
+ * from memory. Once all chunks are filled, the producer waits for the consumer to drain one, so
+ * memory stays at {@code chunkSize * chunkCount} bytes however long the source is.
+ * <p>
+ * Closing this stream stops the producer, which then closes the source.
+ * An exception thrown while reading the source is rethrown to the consumer once it has read
+ * everything before it.
+ * <p>
+ * This class is not thread-safe, it is meant to be read by one consumer thread.
+ *
+ * @author Karstian Lee
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+    /**
+     * The default chunk size, 64 KiB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The default number of chunks.
+     */
+    public static final int DEFAULT_CHUNK_COUNT = 4;
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int CLOSED = 2;
+
+    private static final Chunk END = new Chunk(0);
+    private static final Chunk STOP = new Chunk(0);
+
+    private final InputStream in;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final AtomicInteger state = new AtomicInteger(NEW);
+    private volatile boolean closed;
+    private Chunk current;
+    private IOException failure;
+    private boolean ended;
+
+    /**
+     * Creates a {@code ReadAheadInputStream} and starts its producer.
+     *
+     * @param in the source stream
+     * @param chunkSize the size of a chunk, the source is read with this size at most
+     * @param chunkCount the number of chunks
+     * @param executor the {@code Executor} to run the producer, which blocks for as long as
+     * the stream is open, so a thread per task executor fits best
+     * @see LoaderExecutors#getReadAheadExecutor()
+     */
+    public ReadAheadInputStream(InputStream in, int chunkSize, int chunkCount, Executor executor) {
+        if (in == null) throw new NullPointerException("in cannot be null");
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be positive");
+        if (chunkCount < 1) throw new IllegalArgumentException("chunkCount must be positive");
+        this.in = in;
+        free = new ArrayBlockingQueue<>(chunkCount + 1);
+        filled = new ArrayBlockingQueue<>(chunkCount + 1);
+        for (int i = 0; i < chunkCount; i ++) free.add(new Chunk(chunkSize));
+        try {
+            executor.execute(this::produce);
+        }
+        catch (RejectedExecutionException e) {
+            state.set(CLOSED);
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        if (!nextChunk()) return -1;
+        return current.data[current.position ++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        ensureOpen();
+        if (len == 0) return 0;
+        if (!nextChunk()) return -1;
+        int n = Math.min(len, current.length - current.position);
+        System.arraycopy(current.data, current.position, b, off, n);
+        current.position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        long skipped = 0;
+        while (skipped < n && nextChunk()) {
+            int step = (int) Math.min(n - skipped, current.length - current.position);
+            current.position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of bytes already read ahead.
+     *
+     * @return the number of bytes which can be read without waiting for the producer
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        long available = current == null ? 0 : current.length - current.position;
+        for (Chunk chunk : filled) available += chunk.length;
+        return (int) Math.min(Integer.MAX_VALUE, available);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        current = null;
+        if (state.compareAndSet(NEW, CLOSED)) in.close();
+        else free.offer(STOP);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("stream closed");
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (current != null) {
+            if (current.position < current.length) return true;
+            recycle(current);
+            current = null;
+        }
+        if (failure != null) throw failure;
+        if (ended) return false;
+        Chunk chunk;
+        try {
+            chunk = filled.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the read-ahead producer");
+        }
+        if (chunk == END) {
+            ended = true;
+            return false;
+        }
+        else if (chunk.failure != null) {
+            failure = new IOException(chunk.failure.getMessage(), chunk.failure);
+            throw failure;
+        }
+        else {
+            current = chunk;
+            return true;
+        }
+    }
+
+    private void recycle(Chunk chunk) {
+        chunk.position = 0;
+        chunk.length = 0;
+        free.offer(chunk);
+    }
+
+    private void produce() {
+        if (!state.compareAndSet(NEW, RUNNING)) return;
+        try {
+            while (!closed) {
+                Chunk chunk = free.take();
+                if (chunk == STOP || closed) break;
+                boolean eof = chunk.fill(in);
+                if (chunk.length > 0) filled.put(chunk);
+                else free.put(chunk);
+                if (eof) {
+                    filled.put(END);
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException ignored) {
+            filled.offer(new Chunk(new InterruptedIOException("read-ahead producer interrupted")));
+        }
+        catch (IOException | RuntimeException e) {
+            if (!closed) filled.offer(new Chunk(e));
+        }
+        finally {
+            state.set(CLOSED);
+            try {
+                in.close();
+            }
+            catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static final class Chunk {
+
+        private final byte[] data;
+        private final Exception failure;
+        private int position;
+        private int length;
+
+        private Chunk(int size) {
+            data = new byte[size];
+            failure = null;
+        }
+
+        private Chunk(Exception failure) {
+            data = new byte[0];
+            this.failure = failure;
+        }
+
+        /**
+         * Reads until the chunk is full, or the source has nothing more to read without blocking after
+         * filling a part of it. A source returning no bytes for an empty chunk is read a byte at a time,
+         * which blocks until there is one, so the producer never spins on it.
+         */
+        private boolean fill(InputStream in) throws IOException {
+            while (length < data.length) {
+                int read = in.read(data, length, data.length - length);
+                if (read < 0) return true;
+                else if (read == 0) {
+                    if (length > 0) break;
+                    int b = in.read();
+                    if (b < 0) return true;
+                    data[length] = (byte) b;
+                    read = 1;
+                }
+                length += read;
+            }
+            return false;
+        }
+
+    }
+
+}
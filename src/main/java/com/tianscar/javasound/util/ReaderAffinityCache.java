@@ -0,0 +1,226 @@
+package com.tianscar.javasound.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which reader recognized a resource, and which resources no reader recognizes,
+ * so later loads of the same resource go straight to the right reader, or fail right away,
+ * instead of walking all installed readers and building their exceptions again.
+ * <p>
+ * Entries are keyed by the {@code ClassLoader}, the resource name and the reader type
+ * (such as {@code AudioResourceReader.class}), expire after a while, and are evicted in
+ * least-recently-used order beyond the maximum number of entries.
+ * <p>
+ * This class is thread-safe. Lookups and records never lock; the entries are only locked to evict
+ * some of them at once when there are too many, and the recency of an entry is the time it was last
+ * looked up or recorded, so the eviction order is approximate under contention.
+ *
+ * @author Karstian Lee
+ */
+public final class ReaderAffinityCache {
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /**
+     * The default time to live of entries, in minutes.
+     */
+    public static final long DEFAULT_TTL_MINUTES = 10;
+
+    private static final ReaderAffinityCache DEFAULT = new ReaderAffinityCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MINUTES, TimeUnit.MINUTES);
+
+    /**
+     * Returns the shared {@code ReaderAffinityCache} the loaders use.
+     *
+     * @return the shared {@code ReaderAffinityCache}
+     */
+    public static ReaderAffinityCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * What is known of a resource.
+     */
+    public static final class Affinity {
+        private final String readerClassName;
+        private final long expiresAt;
+        private volatile long lastAccess;
+        private Affinity(String readerClassName, long expiresAt, long lastAccess) {
+            this.readerClassName = readerClassName;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+        /**
+         * Returns whether no reader recognized the resource.
+         *
+         * @return {@code true} if the resource is not supported
+         */
+        public boolean isUnsupported() {
+            return readerClassName == null;
+        }
+        /**
+         * Returns the class name of the reader which recognized the resource.
+         *
+         * @return the reader class name, or {@code null} if the resource is not supported
+         */
+        public String getReaderClassName() {
+            return readerClassName;
+        }
+    }
+
+    private final ConcurrentMap<ResourceKey, Affinity> entries = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+
+    /**
+     * Creates a {@code ReaderAffinityCache}.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param ttl the time to live of entries
+     * @param unit the unit of the time to live
+     */
+    public ReaderAffinityCache(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, ttl, unit, System::nanoTime);
+    }
+
+    /**
+     * Creates a {@code ReaderAffinityCache} with its own clock.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param ttl the time to live of entries
+     * @param unit the unit of the time to live
+     * @param ticker the clock the entries expire by, in nanoseconds, like {@link System#nanoTime()}
+     */
+    public ReaderAffinityCache(int maxEntries, long ttl, TimeUnit unit, LongSupplier ticker) {
+        if (maxEntries < 0) throw new IllegalArgumentException("maxEntries cannot be negative");
+        if (ttl < 0) throw new IllegalArgumentException("ttl cannot be negative");
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.ticker = Objects.requireNonNull(ticker, "ticker cannot be null");
+    }
+
+    /**
+     * Returns what is known of a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param readerType the reader type
+     * @return the affinity of the resource, or {@code null} if nothing is known
+     */
+    public Affinity get(ClassLoader resourceLoader, String name, Class<?> readerType) {
+        if (entries.isEmpty()) return null;
+        ResourceKey key = new ResourceKey(resourceLoader, name, readerType);
+        Affinity affinity = entries.get(key);
+        if (affinity == null) return null;
+        long now = ticker.getAsLong();
+        if (now - affinity.expiresAt > 0) {
+            entries.remove(key, affinity);
+            return null;
+        }
+        affinity.lastAccess = now;
+        return affinity;
+    }
+
+    /**
+     * Records the reader which recognized a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param readerType the reader type
+     * @param reader the reader
+     */
+    public void putReader(ClassLoader resourceLoader, String name, Class<?> readerType, Object reader) {
+        put(new ResourceKey(resourceLoader, name, readerType), reader.getClass().getName());
+    }
+
+    /**
+     * Records that no reader recognizes a resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param readerType the reader type
+     */
+    public void putUnsupported(ClassLoader resourceLoader, String name, Class<?> readerType) {
+        put(new ResourceKey(resourceLoader, name, readerType), null);
+    }
+
+    /**
+     * Forgets what is known of a resource, for every reader type.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name, or {@code null} to forget all resources of the {@code ClassLoader}
+     */
+    public void invalidate(ClassLoader resourceLoader, String name) {
+        entries.keySet().removeIf(key -> key.refersTo(resourceLoader, name));
+    }
+
+    /**
+     * Forgets everything.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries, including expired ones not removed yet.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void put(ResourceKey key, String readerClassName) {
+        if (maxEntries == 0) return;
+        long now = ticker.getAsLong();
+        entries.put(key, new Affinity(readerClassName, now + ttlNanos, now));
+        if (entries.size() > maxEntries) evict();
+    }
+
+    private static final class Candidate {
+        private final ResourceKey key;
+        private final Affinity affinity;
+        private final long age;
+        private Candidate(ResourceKey key, Affinity affinity, long age) {
+            this.key = key;
+            this.affinity = affinity;
+            this.age = age;
+        }
+    }
+
+    /**
+     * Removes the expired entries and the entries of collected {@code ClassLoader}s, then the least recently
+     * used entries down to an eighth below the maximum, so the entries are not sorted again on every record.
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            if (entries.size() <= maxEntries) return;
+            long now = ticker.getAsLong();
+            entries.values().removeIf(affinity -> now - affinity.expiresAt > 0);
+            entries.keySet().removeIf(ResourceKey::isStale);
+            int excess = entries.size() - (maxEntries - maxEntries / 8);
+            if (excess <= 0) return;
+            // the recency is read once, lookups keep updating it while sorting
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            for (Map.Entry<ResourceKey, Affinity> entry : entries.entrySet()) {
+                candidates.add(new Candidate(entry.getKey(), entry.getValue(), entry.getValue().lastAccess - now));
+            }
+            candidates.sort((a, b) -> Long.compare(a.age, b.age));
+            for (int i = 0; i < excess && i < candidates.size(); i ++) {
+                entries.remove(candidates.get(i).key, candidates.get(i).affinity);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.tianscar.javasound.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+
+/**
+ * A cache key of a resource, made of the {@code ClassLoader} it is loaded with, its name,
+ * and an optional qualifier (an operation, a target format, etc.).
+ * <p>
+ * The {@code ClassLoader} is weakly referenced and compared by identity, a cache keyed by
+ * {@code ResourceKey}s does not pin a redeployed application. Once the {@code ClassLoader}
+ * has been collected, the key only equals itself and {@link #isStale()} returns {@code true}.
+ *
+ * @author Karstian Lee
+ */
+public final class ResourceKey {
+
+    private final WeakReference<ClassLoader> loaderRef;
+    private final boolean bootstrap;
+    private final String name;
+    private final Object qualifier;
+    private final int hash;
+
+    /**
+     * Creates a {@code ResourceKey}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param qualifier the qualifier, may be {@code null}
+     */
+    public ResourceKey(ClassLoader resourceLoader, String name, Object qualifier) {
+        this.loaderRef = new WeakReference<>(resourceLoader);
+        this.bootstrap = resourceLoader == null;
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        this.qualifier = qualifier;
+        int hash = System.identityHashCode(resourceLoader);
+        hash = 31 * hash + name.hashCode();
+        hash = 31 * hash + Objects.hashCode(qualifier);
+        this.hash = hash;
+    }
+
+    /**
+     * Returns the {@code ClassLoader} of this key.
+     *
+     * @return the {@code ClassLoader}, or {@code null} if it has been collected
+     */
+    public ClassLoader getResourceLoader() {
+        return loaderRef.get();
+    }
+
+    /**
+     * Returns the resource name of this key.
+     *
+     * @return the resource name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the qualifier of this key.
+     *
+     * @return the qualifier, may be {@code null}
+     */
+    public Object getQualifier() {
+        return qualifier;
+    }
+
+    /**
+     * Returns whether the {@code ClassLoader} of this key has been collected.
+     *
+     * @return {@code true} if the key can never be looked up again
+     */
+    public boolean isStale() {
+        return !bootstrap && loaderRef.get() == null;
+    }
+
+    /**
+     * Returns whether this key refers to the given resource, regardless of its qualifier.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name, or {@code null} to match any resource of the {@code ClassLoader}
+     * @return {@code true} if this key refers to the resource
+     */
+    public boolean refersTo(ClassLoader resourceLoader, String name) {
+        if (isStale()) return false;
+        return loaderRef.get() == resourceLoader && (name == null || this.name.equals(name));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ResourceKey)) return false;
+        ResourceKey that = (ResourceKey) o;
+        if (hash != that.hash || isStale() || that.isStale()) return false;
+        return loaderRef.get() == that.loaderRef.get() && name.equals(that.name) && Objects.equals(qualifier, that.qualifier);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceKey{" + loaderRef.get() + ", \"" + name + "\"" + (qualifier == null ? "" : ", " + qualifier) + "}";
+    }
+
+}
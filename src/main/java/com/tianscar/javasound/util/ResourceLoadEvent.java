@@ -0,0 +1,170 @@
+package com.tianscar.javasound.util;
+
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * Describes a call of the resource loaders, see {@link ResourceLoadListener}.
+ * <p>
+ * The source of the event is the {@code ClassLoader} the resource was loaded with.
+ *
+ * @author Karstian Lee
+ */
+public class ResourceLoadEvent extends EventObject {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The loader operations.
+     */
+    public enum Operation {
+        /**
+         * {@code AudioResourceLoader.getAudioFileFormat}
+         */
+        AUDIO_FILE_FORMAT,
+        /**
+         * {@code AudioResourceLoader.getAudioInputStream}
+         */
+        AUDIO_INPUT_STREAM,
+        /**
+         * {@code MidiResourceLoader.getMidiFileFormat}
+         */
+        MIDI_FILE_FORMAT,
+        /**
+         * {@code MidiResourceLoader.getSequence}
+         */
+        SEQUENCE,
+        /**
+         * {@code MidiResourceLoader.getSoundbank}
+         */
+        SOUNDBANK
+    }
+
+    private final Operation operation;
+    private final String name;
+    private final String provider;
+    private final List<String> attemptedProviders;
+    private final long openNanos;
+    private final long parseNanos;
+    private final long bytesRead;
+    private final Throwable failure;
+
+    /**
+     * Creates a {@code ResourceLoadEvent}.
+     *
+     * @param resourceLoader the {@code ClassLoader} the resource was loaded with
+     * @param operation the loader operation
+     * @param name the resource name
+     * @param provider the class name of the provider which served the call, or {@code null}
+     * @param attemptedProviders the class names of the providers tried, in order
+     * @param openNanos the time spent opening the resource, in nanoseconds
+     * @param parseNanos the time spent in providers, in nanoseconds
+     * @param bytesRead the number of bytes read from the resource during the call
+     * @param failure the failure of the call, or {@code null}
+     */
+    public ResourceLoadEvent(ClassLoader resourceLoader, Operation operation, String name, String provider,
+                             List<String> attemptedProviders, long openNanos, long parseNanos, long bytesRead,
+                             Throwable failure) {
+        super(resourceLoader == null ? ClassLoader.getSystemClassLoader() : resourceLoader);
+        this.operation = operation;
+        this.name = name;
+        this.provider = provider;
+        this.attemptedProviders = attemptedProviders;
+        this.openNanos = openNanos;
+        this.parseNanos = parseNanos;
+        this.bytesRead = bytesRead;
+        this.failure = failure;
+    }
+
+    /**
+     * Returns the {@code ClassLoader} the resource was loaded with.
+     *
+     * @return the {@code ClassLoader}
+     */
+    public ClassLoader getResourceLoader() {
+        return (ClassLoader) getSource();
+    }
+
+    /**
+     * Returns the loader operation.
+     *
+     * @return the operation
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the resource name.
+     *
+     * @return the resource name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the class name of the provider which served the call. For format queries answered
+     * from the {@link FormatIndex}, this is the provider recorded in the index.
+     *
+     * @return the provider class name, or {@code null} if no provider recognized the resource
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns the class names of the providers tried, in order, including the one which served the call.
+     *
+     * @return the unmodifiable list of the attempted providers
+     */
+    public List<String> getAttemptedProviders() {
+        return attemptedProviders;
+    }
+
+    /**
+     * Returns the time spent opening the resource.
+     *
+     * @return the open latency, in nanoseconds
+     */
+    public long getOpenNanos() {
+        return openNanos;
+    }
+
+    /**
+     * Returns the time spent in providers, probing and parsing the resource.
+     *
+     * @return the parse latency, in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Returns the number of bytes read from the resource during the call, as counted by
+     * {@link ResourceSource#getBytesRead()}: the length of the resource if it was mapped or held in memory.
+     * For audio input streams, this only counts what has been read before the stream was returned.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the failure of the call.
+     *
+     * @return the exception thrown by the loader, or {@code null} if the call succeeded
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[operation=" + operation + ", name=" + name + ", provider=" + provider +
+                ", attemptedProviders=" + attemptedProviders + ", openNanos=" + openNanos + ", parseNanos=" + parseNanos +
+                ", bytesRead=" + bytesRead + ", failure=" + failure + "]";
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.tianscar.javasound.util;
+
+import java.util.EventListener;
+
+/**
+ * Receives an event for every call of the resource loaders, see {@link ResourceLoadListeners}.
+ * <p>
+ * Listeners are called on the loading thread, when a loader call starts and right before it
+ * returns or throws, so they should be quick and must not throw. Calls made while another
+ * runs on the same thread complete before it, so the calls of a thread nest like a stack.
+ *
+ * @author Karstian Lee
+ */
+@FunctionalInterface
+public interface ResourceLoadListener extends EventListener {
+
+    /**
+     * Called when a loader call starts. Each call started is completed with
+     * {@link #resourceLoaded(ResourceLoadEvent)} on the same thread. Does nothing by default.
+     *
+     * @param operation the loader operation
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     */
+    default void resourceLoading(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name) {
+    }
+
+    /**
+     * Called when a loader call completes, successfully or not.
+     *
+     * @param event the event describing the call
+     */
+    void resourceLoaded(ResourceLoadEvent event);
+
+}
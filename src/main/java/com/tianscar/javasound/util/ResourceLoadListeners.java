@@ -0,0 +1,105 @@
+package com.tianscar.javasound.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of {@link ResourceLoadListener}s.
+ * <p>
+ * Listeners are added with {@link #add(ResourceLoadListener)}, or installed as providers of
+ * {@code ResourceLoadListener} in {@code META-INF/services}, which are looked up once, with the
+ * {@code ClassLoader} of this library. When no listener is registered, the loaders neither measure
+ * nor build events.
+ *
+ * @author Karstian Lee
+ */
+public final class ResourceLoadListeners {
+
+    private ResourceLoadListeners() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final Object lock = new Object();
+    private static volatile ResourceLoadListener[] listeners = loadInstalledListeners();
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener to register
+     */
+    public static void add(ResourceLoadListener listener) {
+        Objects.requireNonNull(listener, "listener cannot be null");
+        synchronized (lock) {
+            ResourceLoadListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+            updated[listeners.length] = listener;
+            listeners = updated;
+        }
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to unregister
+     */
+    public static void remove(ResourceLoadListener listener) {
+        synchronized (lock) {
+            List<ResourceLoadListener> updated = new ArrayList<>(Arrays.asList(listeners));
+            if (updated.remove(listener)) listeners = updated.toArray(new ResourceLoadListener[0]);
+        }
+    }
+
+    /**
+     * Returns the registered listeners.
+     *
+     * @return the unmodifiable list of registered listeners
+     */
+    public static List<ResourceLoadListener> getListeners() {
+        return Collections.unmodifiableList(Arrays.asList(listeners));
+    }
+
+    static ResourceLoadListener[] getListenerArray() {
+        return listeners;
+    }
+
+    static void fireLoading(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name,
+                            ResourceLoadListener[] listeners) {
+        for (ResourceLoadListener listener : listeners) {
+            try {
+                listener.resourceLoading(operation, resourceLoader, name);
+            }
+            catch (RuntimeException ignored) {
+                // a broken listener must not break loading
+            }
+        }
+    }
+
+    static void fire(ResourceLoadEvent event, ResourceLoadListener[] listeners) {
+        for (ResourceLoadListener listener : listeners) {
+            try {
+                listener.resourceLoaded(event);
+            }
+            catch (RuntimeException ignored) {
+                // a broken listener must not break loading
+            }
+        }
+    }
+
+    private static ResourceLoadListener[] loadInstalledListeners() {
+        List<ResourceLoadListener> installed = new ArrayList<>();
+        try {
+            for (ResourceLoadListener listener : ServiceLoader.load(ResourceLoadListener.class, ResourceLoadListeners.class.getClassLoader())) {
+                installed.add(listener);
+            }
+        }
+        catch (ServiceConfigurationError | LinkageError ignored) {
+            // e.g. a listener requiring a newer JDK
+        }
+        return installed.toArray(new ResourceLoadListener[0]);
+    }
+
+}
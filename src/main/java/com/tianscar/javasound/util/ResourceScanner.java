@@ -0,0 +1,196 @@
+package com.tianscar.javasound.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+/**
+ * Lists the resources visible from a {@code ClassLoader}, in directories and jars on its class path.
+ * <p>
+ * Resources are matched with glob patterns: {@code *} matches any characters but {@code /},
+ * {@code **} matches any characters including {@code /}, and {@code ?} matches a single character but {@code /}.
+ * Only the {@code file:} and {@code jar:} protocols can be listed; resources served by other
+ * protocols are skipped. Patterns should start with a directory, like {@code sounds/*.wav}: the
+ * jars at the root of the class path can only be found through the URLs of the {@code URLClassLoader}s
+ * and the {@code java.class.path} of the system {@code ClassLoader}, which root-level patterns such as
+ * {@code **.wav} fall back to.
+ *
+ * @author Karstian Lee
+ */
+public final class ResourceScanner {
+
+    private ResourceScanner() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Lists the resources matching the glob pattern.
+     *
+     * @param resourceLoader the {@code ClassLoader} to list resources of
+     * @param glob the glob pattern of resource names, such as {@code sounds/**.wav}
+     * @return the sorted names of the matching resources
+     * @throws IOException if an I/O error occurs
+     */
+    public static Set<String> list(ClassLoader resourceLoader, String glob) throws IOException {
+        Pattern pattern = toPattern(glob);
+        String prefix = getDirectoryPrefix(glob);
+        Set<String> names = new TreeSet<>();
+        for (String name : listPrefix(resourceLoader, prefix)) {
+            if (pattern.matcher(name).matches()) names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Lists the resources whose names start with the given prefix.
+     *
+     * @param resourceLoader the {@code ClassLoader} to list resources of
+     * @param prefix the name prefix, such as {@code sounds/} to list a package
+     * @return the sorted names of the matching resources
+     * @throws IOException if an I/O error occurs
+     */
+    public static Set<String> listPrefix(ClassLoader resourceLoader, String prefix) throws IOException {
+        String directory = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        Set<String> names = new TreeSet<>();
+        Enumeration<URL> roots = resourceLoader.getResources(directory);
+        while (roots.hasMoreElements()) {
+            URL root = roots.nextElement();
+            if ("file".equals(root.getProtocol())) listDirectory(new File(decode(root.getPath())), directory, prefix, names);
+            else if ("jar".equals(root.getProtocol())) listJar(root, prefix, names);
+        }
+        // ClassLoader.getResources("") finds no jar roots
+        if (directory.isEmpty()) {
+            for (File jar : getClassPathJars(resourceLoader)) {
+                try (JarFile jarFile = new JarFile(jar)) {
+                    listJar(jarFile, prefix, names);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns whether the name contains glob wildcards.
+     *
+     * @param name the name
+     * @return {@code true} if the name is a glob pattern
+     */
+    public static boolean isGlob(String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0;
+    }
+
+    private static void listDirectory(File root, String directory, String prefix, Set<String> names) {
+        Deque<File> files = new ArrayDeque<>();
+        Deque<String> paths = new ArrayDeque<>();
+        files.push(root);
+        paths.push(directory);
+        while (!files.isEmpty()) {
+            File file = files.pop();
+            String path = paths.pop();
+            File[] children = file.listFiles();
+            if (children == null) continue;
+            for (File child : children) {
+                String name = path + child.getName();
+                if (child.isDirectory()) {
+                    files.push(child);
+                    paths.push(name + "/");
+                }
+                else if (name.startsWith(prefix)) names.add(name);
+            }
+        }
+    }
+
+    private static void listJar(URL root, String prefix, Set<String> names) throws IOException {
+        URLConnection connection = root.openConnection();
+        if (!(connection instanceof JarURLConnection)) return;
+        connection.setUseCaches(false);
+        try (JarFile jar = ((JarURLConnection) connection).getJarFile()) {
+            listJar(jar, prefix, names);
+        }
+    }
+
+    private static void listJar(JarFile jar, String prefix, Set<String> names) {
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && entry.getName().startsWith(prefix)) names.add(entry.getName());
+        }
+    }
+
+    private static Set<File> getClassPathJars(ClassLoader resourceLoader) {
+        Set<File> jars = new LinkedHashSet<>();
+        ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+        boolean system = false;
+        for (ClassLoader loader = resourceLoader; loader != null; loader = loader.getParent()) {
+            if (loader == systemLoader) system = true;
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    if ("file".equals(url.getProtocol())) addJar(new File(decode(url.getPath())), jars);
+                }
+            }
+        }
+        if (system) {
+            for (String path : System.getProperty("java.class.path", "").split(Pattern.quote(File.pathSeparator))) {
+                if (!path.isEmpty()) addJar(new File(path), jars);
+            }
+        }
+        return jars;
+    }
+
+    private static void addJar(File file, Set<File> jars) {
+        if (file.isFile()) jars.add(file.getAbsoluteFile());
+    }
+
+    private static String getDirectoryPrefix(String glob) {
+        int wildcard = glob.length();
+        for (int i = 0; i < glob.length(); i ++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                wildcard = i;
+                break;
+            }
+        }
+        return glob.substring(0, glob.lastIndexOf('/', wildcard - 1) + 1);
+    }
+
+    private static Pattern toPattern(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        for (int i = 0; i < glob.length(); i ++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i ++;
+                }
+                else regex.append("[^/]*");
+            }
+            else if (c == '?') regex.append("[^/]");
+            else regex.append(Pattern.quote(String.valueOf(c)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static String decode(String path) {
+        try {
+            return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
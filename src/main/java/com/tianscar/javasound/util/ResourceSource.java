@@ -0,0 +1,351 @@
+package com.tianscar.javasound.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A resource opened once, which can be read from the start again any number of times.
+ * <p>
+ * Every byte read from the underlying resource stream is kept in a buffer, so every
+ * {@link #newView() view} starts at the first byte of the resource, and supports
+ * mark/reset without any read limit. This lets several readers probe the same resource
+ * while the resource itself is opened, inflated and read only once.
+ * <p>
+ * Once a reader accepts the resource, {@link #release(InputStream)} stops the buffering:
+ * the accepted view drains the bytes already buffered, then reads straight from the
+ * underlying stream, and closing it closes the underlying stream.
+ * <p>
+ * Resources in the file system or stored raw in the {@link WarmupStore#getDefault() warm-up store} are
+ * not streamed at all: they are read or memory-mapped at once (see
+ * {@link Resources#getFileByteBuffer(ClassLoader, String)}), views read straight from that
+ * buffer, and readers can be handed the {@link #getByteBuffer() buffer} itself. Only the
+ * warm-up store is used so by a source {@linkplain #openHeader(ClassLoader, String) opened to probe the header}.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public final class ResourceSource implements Closeable {
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final ByteBuffer data;
+    private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+    private int count;
+    private long bytesRead;
+    private boolean eof;
+    private boolean released;
+    private boolean closed;
+
+    /**
+     * Creates a {@code ResourceSource} over an opened stream.
+     *
+     * @param in the underlying resource stream, read from its current position
+     */
+    public ResourceSource(InputStream in) {
+        if (in == null) throw new NullPointerException("in cannot be null");
+        this.in = in;
+        this.data = null;
+    }
+
+    /**
+     * Creates a {@code ResourceSource} over the whole content of a resource.
+     *
+     * @param data the content of the resource, from its position to its limit
+     */
+    public ResourceSource(ByteBuffer data) {
+        if (data == null) throw new NullPointerException("data cannot be null");
+        this.in = null;
+        this.data = data.asReadOnlyBuffer();
+        this.buf = null;
+        this.count = this.data.remaining();
+        this.bytesRead = count;
+        this.eof = true;
+    }
+
+    /**
+     * Opens the resource with the given {@code ClassLoader}, from the {@link WarmupStore#getDefault() warm-up store}
+     * if it is stored there.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the {@code ResourceSource} over the resource
+     * @throws IOException if the resource could not be found or opened
+     * @see LoadFuture#register(Closeable)
+     */
+    public static ResourceSource open(ClassLoader resourceLoader, String name) throws IOException {
+        return open(resourceLoader, name, WarmupStore.getDefault());
+    }
+
+    /**
+     * Opens the resource with the given {@code ClassLoader}, from the given warm-up store if it is stored there.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param warmupStore the warm-up store, or {@code null} to use none
+     * @return the {@code ResourceSource} over the resource
+     * @throws IOException if the resource could not be found or opened
+     * @see LoadFuture#register(Closeable)
+     */
+    public static ResourceSource open(ClassLoader resourceLoader, String name, WarmupStore warmupStore) throws IOException {
+        ByteBuffer data = warmupStore == null ? null : warmupStore.getByteBuffer(resourceLoader, name);
+        if (data == null) data = Resources.getFileByteBuffer(resourceLoader, name);
+        ResourceSource source = data == null ? new ResourceSource(Resources.openStream(resourceLoader, name, warmupStore))
+                : new ResourceSource(data);
+        LoadFuture.register(source);
+        return source;
+    }
+
+    /**
+     * Opens the resource with the given {@code ClassLoader} to probe its header, such as to obtain its file format.
+     * Unlike {@link #open(ClassLoader, String)}, a file is streamed rather than read or memory-mapped whole, so
+     * only the bytes the readers look at are read, and no mapping is left for the garbage collector to release.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the {@code ResourceSource} over the resource
+     * @throws IOException if the resource could not be found or opened
+     * @see LoadFuture#register(Closeable)
+     */
+    public static ResourceSource openHeader(ClassLoader resourceLoader, String name) throws IOException {
+        return openHeader(resourceLoader, name, WarmupStore.getDefault());
+    }
+
+    /**
+     * Opens the resource with the given {@code ClassLoader} to probe its header, from the given warm-up store if it
+     * is stored there, see {@link #openHeader(ClassLoader, String)}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param warmupStore the warm-up store, or {@code null} to use none
+     * @return the {@code ResourceSource} over the resource
+     * @throws IOException if the resource could not be found or opened
+     * @see LoadFuture#register(Closeable)
+     */
+    public static ResourceSource openHeader(ClassLoader resourceLoader, String name, WarmupStore warmupStore) throws IOException {
+        ByteBuffer data = warmupStore == null ? null : warmupStore.getByteBuffer(resourceLoader, name);
+        ResourceSource source = data == null ? new ResourceSource(Resources.openStream(resourceLoader, name, warmupStore))
+                : new ResourceSource(data);
+        LoadFuture.register(source);
+        return source;
+    }
+
+    /**
+     * Creates a new view positioned at the first byte of the resource.
+     * Closing a view before {@link #release(InputStream)} has no effect on the resource.
+     *
+     * @return a new view of the resource
+     * @throws IOException if this source is closed
+     */
+    public InputStream newView() throws IOException {
+        ensureOpen();
+        return data == null ? new View() : new ByteBufferInputStream(data);
+    }
+
+    /**
+     * Returns the content of the resource, if this source is over a buffer rather than a stream.
+     *
+     * @return a new read-only view of the content of the resource, or {@code null} if the resource is streamed
+     * @throws IOException if this source is closed
+     */
+    public ByteBuffer getByteBuffer() throws IOException {
+        ensureOpen();
+        return data == null ? null : data.duplicate();
+    }
+
+    /**
+     * Stops buffering and hands the resource over to the view a reader accepted. The view will
+     * read the rest of the resource straight from the underlying stream, and closing it
+     * will close the underlying stream. If the reader never read from the view, the resource
+     * is closed immediately. A source over a buffer holds nothing to hand over.
+     *
+     * @param owner the view the accepting reader was given
+     * @throws IOException if an I/O error occurs
+     */
+    public void release(InputStream owner) throws IOException {
+        released = true;
+        if (data != null) return;
+        if (!(owner instanceof View) || ((View) owner).source() != this || !((View) owner).touched) close();
+    }
+
+    /**
+     * Returns how many bytes have been read from the underlying resource stream so far,
+     * or the length of the resource if this source is over a buffer.
+     *
+     * @return the number of bytes read so far
+     */
+    public int getBufferedLength() {
+        return count;
+    }
+
+    /**
+     * Returns how many bytes have been read from the underlying resource stream so far,
+     * including those read through the released view, or the length of the resource
+     * if this source is over a buffer.
+     *
+     * @return the number of bytes read so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the first bytes of the resource, reading them if not buffered yet.
+     * The returned array may be shorter than requested if the resource is shorter.
+     *
+     * @param length the number of bytes to peek
+     * @return a copy of the first bytes of the resource
+     * @throws IOException if an I/O error occurs
+     */
+    public byte[] peek(int length) throws IOException {
+        ensureOpen();
+        if (data != null) {
+            byte[] bytes = new byte[Math.min(length, data.remaining())];
+            data.duplicate().get(bytes);
+            return bytes;
+        }
+        while (count < length && !eof && !released) fill(length - count);
+        return Arrays.copyOf(buf, Math.min(length, count));
+    }
+
+    /**
+     * Closes the underlying resource stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        buf = null;
+        if (in != null) in.close();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("resource source closed");
+    }
+
+    private void fill(int hint) throws IOException {
+        int want = Math.max(hint, INITIAL_BUFFER_SIZE);
+        if (count + want > buf.length) {
+            int newLength = Math.max(buf.length << 1, count + want);
+            if (newLength < 0) throw new IOException("resource too large to buffer");
+            buf = Arrays.copyOf(buf, newLength);
+        }
+        int read = in.read(buf, count, buf.length - count);
+        if (read < 0) eof = true;
+        else {
+            count += read;
+            bytesRead += read;
+        }
+    }
+
+    private final class View extends InputStream {
+
+        private long pos;
+        private long markpos = -1;
+        private boolean viewClosed;
+        private boolean touched;
+
+        @Override
+        public int read() throws IOException {
+            ensureViewOpen();
+            touched = true;
+            if (pos >= count && !released && !eof) fill(1);
+            if (pos < count) return buf[(int) pos ++] & 0xFF;
+            if (!released || eof) return -1;
+            int read = in.read();
+            if (read >= 0) {
+                pos ++;
+                bytesRead ++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+            ensureViewOpen();
+            if (len == 0) return 0;
+            touched = true;
+            if (pos >= count && !released && !eof) fill(len);
+            if (pos < count) {
+                int n = (int) Math.min(len, count - pos);
+                System.arraycopy(buf, (int) pos, b, off, n);
+                pos += n;
+                return n;
+            }
+            if (!released || eof) return -1;
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                pos += read;
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            ensureViewOpen();
+            if (n <= 0) return 0;
+            if (pos < count || !released) {
+                touched = true;
+                if (pos >= count && !eof) fill((int) Math.min(n, INITIAL_BUFFER_SIZE));
+                long skipped = Math.max(0, Math.min(n, count - pos));
+                pos += skipped;
+                return skipped;
+            }
+            long skipped = in.skip(n);
+            pos += skipped;
+            bytesRead += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureViewOpen();
+            long buffered = Math.max(0, count - pos);
+            return (int) Math.min(Integer.MAX_VALUE, buffered + (eof ? 0 : in.available()));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return !released;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            markpos = pos;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            ensureViewOpen();
+            if (released) throw new IOException("mark/reset not supported");
+            if (markpos < 0) throw new IOException("resetting to invalid mark");
+            pos = markpos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (viewClosed) return;
+            viewClosed = true;
+            if (released) ResourceSource.this.close();
+        }
+
+        private ResourceSource source() {
+            return ResourceSource.this;
+        }
+
+        private void ensureViewOpen() throws IOException {
+            if (viewClosed) throw new IOException("stream closed");
+            ensureOpen();
+        }
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.tianscar.javasound.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Helpers to access resources through a {@code ClassLoader}.
+ *
+ * @author Karstian Lee
+ */
+public final class Resources {
+
+    private Resources() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Files from this size on are memory-mapped rather than read, 64 KiB.
+     */
+    public static final int MAP_THRESHOLD = 64 * 1024;
+
+    /**
+     * The fingerprint no resource has, see {@link #getFingerprint(ClassLoader, String, boolean)}.
+     */
+    public static final long NO_FINGERPRINT = 0;
+
+    /**
+     * Opens the resource with the given {@code ClassLoader}, from the {@link WarmupStore#getDefault() warm-up store}
+     * if it is stored there.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the resource stream, never {@code null}
+     * @throws IOException if the resource could not be found or opened
+     */
+    public static InputStream openStream(ClassLoader resourceLoader, String name) throws IOException {
+        return openStream(resourceLoader, name, WarmupStore.getDefault());
+    }
+
+    /**
+     * Opens the resource with the given {@code ClassLoader}, from the given warm-up store if it is stored there.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param warmupStore the warm-up store, or {@code null} to use none
+     * @return the resource stream, never {@code null}
+     * @throws IOException if the resource could not be found or opened
+     */
+    public static InputStream openStream(ClassLoader resourceLoader, String name, WarmupStore warmupStore) throws IOException {
+        InputStream stream = warmupStore == null ? null : warmupStore.openStream(resourceLoader, name);
+        if (stream != null) return stream;
+        stream = resourceLoader.getResourceAsStream(name);
+        if (stream == null) throw new IOException("could not load resource \"" + name + "\" with ClassLoader \"" + resourceLoader + "\"");
+        else return stream;
+    }
+
+    /**
+     * Opens the resource with the given {@code ClassLoader} as a channel. Resources in the file system,
+     * such as exploded class path directories, are opened as a {@code FileChannel}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the resource channel, never {@code null}
+     * @throws IOException if the resource could not be found or opened
+     */
+    public static ReadableByteChannel openChannel(ClassLoader resourceLoader, String name) throws IOException {
+        File file = getFile(resourceLoader, name);
+        if (file != null) return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        else return Channels.newChannel(openStream(resourceLoader, name));
+    }
+
+    /**
+     * Reads the whole resource with the given {@code ClassLoader} into a read-only buffer.
+     * Resources in the file system are memory-mapped from {@value #MAP_THRESHOLD} bytes on.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the content of the resource, never {@code null}
+     * @throws IOException if the resource could not be found or read
+     */
+    public static ByteBuffer getByteBuffer(ClassLoader resourceLoader, String name) throws IOException {
+        ByteBuffer buffer = getFileByteBuffer(resourceLoader, name);
+        if (buffer != null) return buffer;
+        try (InputStream stream = openStream(resourceLoader, name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, stream.available()));
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = stream.read(chunk)) != -1) out.write(chunk, 0, read);
+            return ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Reads the resource with the given {@code ClassLoader} into a read-only buffer if it is a file
+     * in the file system, memory-mapped from {@value #MAP_THRESHOLD} bytes on. A mapping is only released
+     * once the buffer is garbage collected, so this is meant for whole loads, not for probing headers.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the content of the resource, or {@code null} if it is not a file or is too large for a buffer
+     * @throws IOException if the file could not be read
+     */
+    public static ByteBuffer getFileByteBuffer(ClassLoader resourceLoader, String name) throws IOException {
+        File file = getFile(resourceLoader, name);
+        if (file == null) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) return null;
+            else if (size >= MAP_THRESHOLD) return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Returns the file of the resource with the given {@code ClassLoader}, if it is a file in the file system,
+     * such as a resource of an exploded class path directory.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the file of the resource, or {@code null} if it is not a file or could not be found
+     */
+    public static File getFile(ClassLoader resourceLoader, String name) {
+        URL url = resourceLoader.getResource(name);
+        if (url == null || !"file".equals(url.getProtocol())) return null;
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        }
+        catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the resource with the given {@code ClassLoader}, which changes when the resource changes:
+     * from the size and modification time of a file, from the CRC, size and time of a jar entry, or else
+     * from the CRC of the content.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return the fingerprint of the resource, never {@link #NO_FINGERPRINT}
+     * @throws IOException if the resource could not be found or read
+     */
+    public static long getFingerprint(ClassLoader resourceLoader, String name) throws IOException {
+        return getFingerprint(resourceLoader, name, true);
+    }
+
+    /**
+     * Computes a fingerprint of the resource with the given {@code ClassLoader}, without reading its content
+     * unless allowed to, see {@link #getFingerprint(ClassLoader, String)}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param readContent whether to read the whole resource if it is neither a file nor a jar entry
+     * @return the fingerprint of the resource, or {@link #NO_FINGERPRINT} if it needs the content and {@code readContent} is {@code false}
+     * @throws IOException if the resource could not be found or read
+     */
+    public static long getFingerprint(ClassLoader resourceLoader, String name, boolean readContent) throws IOException {
+        URL url = resourceLoader.getResource(name);
+        if (url != null) {
+            File file = getFile(resourceLoader, name);
+            if (file != null) return fingerprint(mix(mix(1, file.length()), file.lastModified()));
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+                if (entry != null && entry.getCrc() != -1) return fingerprint(mix(mix(mix(2, entry.getCrc()), entry.getSize()), entry.getTime()));
+            }
+        }
+        if (!readContent) return NO_FINGERPRINT;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        try (InputStream stream = openStream(resourceLoader, name)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        return fingerprint(mix(mix(3, crc.getValue()), size));
+    }
+
+    private static long fingerprint(long hash) {
+        return hash == NO_FINGERPRINT ? 1 : hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+
+}
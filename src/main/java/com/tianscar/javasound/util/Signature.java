@@ -0,0 +1,105 @@
+package com.tianscar.javasound.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A magic-byte signature of a resource type: one or more byte sequences, each at a fixed offset
+ * from the start of the resource, which all have to be present, such as {@code "RIFF"} at 0 and
+ * {@code "WAVE"} at 8 for WAVE files.
+ * <p>
+ * Instances are immutable.
+ *
+ * @author Karstian Lee
+ */
+public final class Signature {
+
+    private final int[] offsets;
+    private final byte[][] parts;
+
+    private Signature(int[] offsets, byte[][] parts) {
+        this.offsets = offsets;
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a signature of a byte sequence at the given offset.
+     *
+     * @param offset the offset from the start of the resource
+     * @param bytes the bytes
+     * @return the signature
+     */
+    public static Signature of(int offset, byte... bytes) {
+        if (offset < 0) throw new IllegalArgumentException("offset cannot be negative");
+        return new Signature(new int[] { offset }, new byte[][] { bytes.clone() });
+    }
+
+    /**
+     * Creates a signature of an ASCII string at the given offset.
+     *
+     * @param offset the offset from the start of the resource
+     * @param ascii the string
+     * @return the signature
+     */
+    public static Signature of(int offset, String ascii) {
+        return of(offset, ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns a signature which also requires a byte sequence at the given offset.
+     *
+     * @param offset the offset from the start of the resource
+     * @param bytes the bytes
+     * @return the new signature
+     */
+    public Signature and(int offset, byte... bytes) {
+        if (offset < 0) throw new IllegalArgumentException("offset cannot be negative");
+        int[] offsets = Arrays.copyOf(this.offsets, this.offsets.length + 1);
+        byte[][] parts = Arrays.copyOf(this.parts, this.parts.length + 1);
+        offsets[this.offsets.length] = offset;
+        parts[this.parts.length] = bytes.clone();
+        return new Signature(offsets, parts);
+    }
+
+    /**
+     * Returns a signature which also requires an ASCII string at the given offset.
+     *
+     * @param offset the offset from the start of the resource
+     * @param ascii the string
+     * @return the new signature
+     */
+    public Signature and(int offset, String ascii) {
+        return and(offset, ascii.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the number of bytes from the start of the resource needed to match the signature.
+     *
+     * @return the length of the signature
+     */
+    public int getLength() {
+        int length = 0;
+        for (int i = 0; i < offsets.length; i ++) {
+            length = Math.max(length, offsets[i] + parts[i].length);
+        }
+        return length;
+    }
+
+    /**
+     * Returns whether the first bytes of a resource match the signature.
+     *
+     * @param head the first bytes of the resource, may be shorter than the signature
+     * @return {@code true} if the signature is present
+     */
+    public boolean matches(byte[] head) {
+        for (int i = 0; i < offsets.length; i ++) {
+            byte[] part = parts[i];
+            if (head.length < offsets[i] + part.length) return false;
+            for (int j = 0; j < part.length; j ++) {
+                if (head[offsets[i] + j] != part[j]) return false;
+            }
+        }
+        return true;
+    }
+
+}
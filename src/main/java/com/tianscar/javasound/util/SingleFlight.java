@@ -0,0 +1,272 @@
+package com.tianscar.javasound.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs identical resource loads only once at a time.
+ * <p>
+ * Loads are keyed by the {@code ClassLoader}, the resource name and the operation (such as a
+ * {@link ResourceLoadEvent.Operation}). The first caller of a key runs the load, callers of the
+ * same key arriving while it runs wait for it instead of opening and parsing the resource again,
+ * and get the result, or the failure of the load: errors and unchecked exceptions as they are, checked
+ * exceptions recreated with the same type for each waiter. If the first caller is
+ * a {@link LoadFuture} which gets cancelled, its failure is not handed over: the waiters run the
+ * load again. Nothing is kept once the load is over, except
+ * failures if a failure time to live is set, so the same failure is reported right away to the
+ * callers arriving within it.
+ * <p>
+ * Results which are not safe to share, such as streams, are handed over with a {@link Share}: the
+ * result is turned once into a shareable form, only if there are waiters, and each caller gets
+ * its own copy of it. Results the {@code Share} declines, such as streams too large to be held in
+ * memory, are not handed over: the waiters then run the load on their own.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public final class SingleFlight {
+
+    private static final SingleFlight DEFAULT = new SingleFlight(0, TimeUnit.MILLISECONDS);
+
+    /**
+     * Returns the shared {@code SingleFlight} the loaders use, which keeps no failures.
+     *
+     * @return the shared {@code SingleFlight}
+     */
+    public static SingleFlight getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Hands a result which is not safe to share over to the waiting callers.
+     *
+     * @param <T> the result type
+     * @param <S> the shareable form type
+     */
+    public interface Share<T, S> {
+        /**
+         * Turns the result into a shareable form, which takes over the result, unless the result
+         * is declined.
+         *
+         * @param result the result of the load
+         * @return the shareable form, or {@code null} to decline the result, which is left as it is
+         * @throws Exception if the result cannot be turned into a shareable form
+         */
+        S share(T result) throws Exception;
+        /**
+         * Makes a copy of the result for one caller.
+         *
+         * @param shared the shareable form
+         * @return the copy of the result
+         * @throws Exception if the copy cannot be made
+         */
+        T copy(S shared) throws Exception;
+    }
+
+    /**
+     * The result of a flight whose result was declined by its {@code Share}.
+     */
+    private static final Object DECLINED = new Object();
+
+    /**
+     * The result of a flight whose caller was cancelled, the waiters then run the load again.
+     */
+    private static final Object ABANDONED = new Object();
+
+    private static final class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile int waiters;
+        private volatile long expiresAt;
+        private boolean isExpired() {
+            return result.isCompletedExceptionally() && System.nanoTime() - expiresAt > 0;
+        }
+    }
+
+    private final ConcurrentMap<ResourceKey, Flight> flights = new ConcurrentHashMap<>();
+    private final long failureTtlNanos;
+
+    /**
+     * Creates a {@code SingleFlight}.
+     *
+     * @param failureTtl how long failures are kept, {@code 0} not to keep them
+     * @param unit the unit of the failure time to live
+     */
+    public SingleFlight(long failureTtl, TimeUnit unit) {
+        if (failureTtl < 0) throw new IllegalArgumentException("failureTtl cannot be negative");
+        this.failureTtlNanos = unit.toNanos(failureTtl);
+    }
+
+    /**
+     * Runs a load whose result is immutable, or joins the same load already running.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param operation the operation
+     * @param load the load
+     * @param <T> the result type
+     * @return the result of the load
+     * @throws Exception the failure of the load
+     */
+    public <T> T execute(ClassLoader resourceLoader, String name, Object operation, LoadFuture.Load<T> load) throws Exception {
+        return execute(resourceLoader, name, operation, load, null);
+    }
+
+    /**
+     * Runs a load, or joins the same load already running.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param operation the operation
+     * @param load the load
+     * @param share how to hand the result over to the waiting callers, or {@code null} to hand over the result itself
+     * @param <T> the result type
+     * @param <S> the shareable form type
+     * @return the result of the load, or a copy of it
+     * @throws Exception the failure of the load
+     */
+    public <T, S> T execute(ClassLoader resourceLoader, String name, Object operation, LoadFuture.Load<T> load,
+                            Share<T, S> share) throws Exception {
+        ResourceKey key = new ResourceKey(resourceLoader, name, operation);
+        while (true) {
+            Flight created = new Flight();
+            Flight flight = flights.compute(key, (k, existing) -> {
+                if (existing == null || existing.isExpired()) return created;
+                existing.waiters ++;
+                return existing;
+            });
+            if (flight == created) return lead(key, flight, load, share);
+            Object result = await(flight);
+            if (result == ABANDONED) continue;
+            else if (share == null) return cast(result);
+            else if (result == DECLINED) return load.load();
+            else return share.copy(cast(result));
+        }
+    }
+
+    /**
+     * Returns the number of callers waiting for a load running.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @param operation the operation
+     * @return the number of callers waiting, {@code 0} if the load is not running
+     */
+    public int getWaiterCount(ClassLoader resourceLoader, String name, Object operation) {
+        Flight flight = flights.get(new ResourceKey(resourceLoader, name, operation));
+        return flight == null || flight.result.isDone() ? 0 : flight.waiters;
+    }
+
+    /**
+     * Returns the number of loads running, and failures kept.
+     *
+     * @return the number of loads
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    /**
+     * Forgets the kept failures.
+     */
+    public void clear() {
+        flights.values().removeIf(flight -> flight.result.isCompletedExceptionally());
+    }
+
+    private int land(ResourceKey key, Flight flight) {
+        int[] waiters = new int[1];
+        flights.computeIfPresent(key, (k, existing) -> {
+            if (existing != flight) return existing;
+            waiters[0] = existing.waiters;
+            return null;
+        });
+        return waiters[0];
+    }
+
+    private <T, S> T lead(ResourceKey key, Flight flight, LoadFuture.Load<T> load, Share<T, S> share) throws Exception {
+        T result;
+        try {
+            result = load.load();
+        }
+        catch (Throwable e) {
+            if (LoadFuture.isCurrentCancelled()) {
+                // the caller of this load gave up, which failed the load, the waiters load again
+                flights.remove(key, flight);
+                flight.result.complete(ABANDONED);
+            }
+            else {
+                if (failureTtlNanos > 0) flight.expiresAt = System.nanoTime() + failureTtlNanos;
+                else flights.remove(key, flight);
+                flight.result.completeExceptionally(e);
+            }
+            throw e;
+        }
+        int waiters = land(key, flight);
+        if (waiters == 0) {
+            flight.result.complete(null);
+            return result;
+        }
+        else if (share == null) {
+            flight.result.complete(result);
+            return result;
+        }
+        S shared;
+        try {
+            shared = share.share(result);
+        }
+        catch (Throwable e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+        if (shared == null) {
+            flight.result.complete(DECLINED);
+            return result;
+        }
+        flight.result.complete(shared);
+        return share.copy(shared);
+    }
+
+    private static Object await(Flight flight) throws Exception {
+        try {
+            return flight.result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the same load");
+        }
+        catch (ExecutionException e) {
+            Throwable failure = e.getCause();
+            if (failure instanceof Error) throw (Error) failure;
+            else if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            else throw forWaiter((Exception) failure);
+        }
+    }
+
+    /**
+     * Creates the exception a waiter throws for the checked failure of the load, of the same type, so the
+     * stack trace and suppressed exceptions of each waiter are its own. A failure whose type has no public
+     * constructor taking the message is thrown as it is, with the stack trace of the waiter suppressed.
+     */
+    private static Exception forWaiter(Exception failure) {
+        Exception e;
+        try {
+            e = failure.getClass().getConstructor(String.class).newInstance(failure.getMessage());
+            e.initCause(failure);
+        }
+        catch (ReflectiveOperationException | RuntimeException ignored) {
+            failure.addSuppressed(new Exception("waited for the failed load in " + Thread.currentThread().getName()));
+            return failure;
+        }
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object result) {
+        return (T) result;
+    }
+
+}
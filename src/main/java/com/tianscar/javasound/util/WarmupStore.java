@@ -0,0 +1,270 @@
+package com.tianscar.javasound.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An in-memory store of resources read ahead of their first load, such as the entries of a large
+ * assets jar, which would otherwise be looked up and inflated on first use.
+ * <p>
+ * {@link #warmUp(ClassLoader, Collection, boolean, Executor)} reads resources in the background
+ * through their {@code ClassLoader} into the store, raw or deflated, within the byte budget of the
+ * store; resources not fitting in the budget are left out, once the resources of collected
+ * {@code ClassLoader}s have been dropped. Resources in the file system are left out too, as the loaders
+ * map them already (see {@link Resources#getFileByteBuffer(ClassLoader, String)}).
+ * <p>
+ * {@link Resources#openStream(ClassLoader, String, WarmupStore)} and
+ * {@link ResourceSource#open(ClassLoader, String, WarmupStore)} read from a store transparently, the
+ * loaders from the store they were built with, the {@link #getDefault() default store} unless configured
+ * otherwise.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Karstian Lee
+ */
+public final class WarmupStore {
+
+    /**
+     * The default byte budget, 32 MiB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static final WarmupStore DEFAULT = new WarmupStore(DEFAULT_MAX_BYTES);
+
+    /**
+     * Returns the shared {@code WarmupStore} the loaders read from.
+     *
+     * @return the shared {@code WarmupStore}
+     */
+    public static WarmupStore getDefault() {
+        return DEFAULT;
+    }
+
+    private static final class Entry {
+        private final byte[] data;
+        private final boolean compressed;
+        private Entry(byte[] data, boolean compressed) {
+            this.data = data;
+            this.compressed = compressed;
+        }
+    }
+
+    private final Map<ResourceKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final long maxBytes;
+
+    /**
+     * Creates a {@code WarmupStore}.
+     *
+     * @param maxBytes the byte budget of the stored resources
+     */
+    public WarmupStore(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("maxBytes cannot be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reads resources into this store in the background. Cancelling the returned future stops reading,
+     * resources stored so far are kept.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resources
+     * @param names the resource names
+     * @param compress whether to store resources deflated, trading CPU time on load for memory
+     * @param executor the {@code Executor} to read with
+     * @return a {@code CompletableFuture} of the number of resources stored
+     */
+    public CompletableFuture<Integer> warmUp(ClassLoader resourceLoader, Collection<String> names, boolean compress,
+                                             Executor executor) {
+        List<String> toRead = new ArrayList<>(names);
+        return LoadFuture.load(() -> {
+            int stored = 0;
+            for (String name : toRead) {
+                if (store(resourceLoader, name, compress)) stored ++;
+            }
+            return stored;
+        }, executor);
+    }
+
+    /**
+     * Reads all resources under a prefix into this store in the background, see
+     * {@link ResourceScanner#listPrefix(ClassLoader, String)}.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resources
+     * @param prefix the name prefix, such as a package path ending with {@code /}
+     * @param compress whether to store resources deflated, trading CPU time on load for memory
+     * @param executor the {@code Executor} to read with
+     * @return a {@code CompletableFuture} of the number of resources stored
+     */
+    public CompletableFuture<Integer> warmUpPrefix(ClassLoader resourceLoader, String prefix, boolean compress,
+                                                   Executor executor) {
+        return LoadFuture.load(() -> {
+            int stored = 0;
+            for (String name : ResourceScanner.listPrefix(resourceLoader, prefix)) {
+                if (store(resourceLoader, name, compress)) stored ++;
+            }
+            return stored;
+        }, executor);
+    }
+
+    /**
+     * Opens a stored resource.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return a stream of the resource, or {@code null} if it is not stored
+     */
+    public InputStream openStream(ClassLoader resourceLoader, String name) {
+        Entry entry = getEntry(resourceLoader, name);
+        if (entry == null) return null;
+        else if (entry.compressed) return new InflaterInputStream(new ByteArrayInputStream(entry.data));
+        else return new ByteArrayInputStream(entry.data);
+    }
+
+    /**
+     * Returns a stored resource, if it is stored raw.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return a read-only view of the resource, or {@code null} if it is not stored or is stored deflated
+     */
+    public ByteBuffer getByteBuffer(ClassLoader resourceLoader, String name) {
+        Entry entry = getEntry(resourceLoader, name);
+        if (entry == null || entry.compressed) return null;
+        else return ByteBuffer.wrap(entry.data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns whether a resource is stored.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name
+     * @return {@code true} if the resource is stored
+     */
+    public boolean contains(ClassLoader resourceLoader, String name) {
+        return getEntry(resourceLoader, name) != null;
+    }
+
+    /**
+     * Drops stored resources.
+     *
+     * @param resourceLoader the {@code ClassLoader} to load resource
+     * @param name the resource name, or {@code null} to drop all resources of the {@code ClassLoader}
+     */
+    public void invalidate(ClassLoader resourceLoader, String name) {
+        entries.entrySet().removeIf(entry -> {
+            if (!entry.getKey().refersTo(resourceLoader, name) && !entry.getKey().isStale()) return false;
+            size.addAndGet(-entry.getValue().data.length);
+            return true;
+        });
+    }
+
+    /**
+     * Drops all stored resources.
+     */
+    public void clear() {
+        entries.entrySet().removeIf(entry -> {
+            size.addAndGet(-entry.getValue().data.length);
+            return true;
+        });
+    }
+
+    /**
+     * Returns the byte budget.
+     *
+     * @return the byte budget of the stored resources
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the total size of the stored resources, as stored.
+     *
+     * @return the size, in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    private Entry getEntry(ClassLoader resourceLoader, String name) {
+        if (entries.isEmpty()) return null;
+        return entries.get(new ResourceKey(resourceLoader, name, null));
+    }
+
+    private boolean store(ClassLoader resourceLoader, String name, boolean compress) throws IOException {
+        ResourceKey key = new ResourceKey(resourceLoader, name, null);
+        if (entries.containsKey(key) || Resources.getFile(resourceLoader, name) != null) return false;
+        InputStream in = resourceLoader.getResourceAsStream(name);
+        if (in == null) return false;
+        LoadFuture.register(in);
+        byte[] data;
+        try (InputStream stream = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, stream.available()));
+            boolean fits;
+            if (compress) {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+                    fits = copy(stream, out, bytes);
+                }
+                finally {
+                    deflater.end();
+                }
+            }
+            else fits = copy(stream, bytes, bytes);
+            if (!fits) return false;
+            data = bytes.toByteArray();
+        }
+        if (!fits(data.length)) return false;
+        long total;
+        do {
+            total = size.get();
+            if (total + data.length > maxBytes) return false;
+        } while (!size.compareAndSet(total, total + data.length));
+        if (entries.putIfAbsent(key, new Entry(data, compress)) != null) {
+            size.addAndGet(-data.length);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean copy(InputStream in, OutputStream out, ByteArrayOutputStream stored) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+            // give up early on resources which cannot fit in the budget anyway
+            if (!fits(stored.size())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the given number of bytes fits in the budget, dropping the resources of
+     * collected {@code ClassLoader}s first if it does not.
+     */
+    private boolean fits(long bytes) {
+        if (size.get() + bytes <= maxBytes) return true;
+        entries.entrySet().removeIf(entry -> {
+            if (!entry.getKey().isStale()) return false;
+            size.addAndGet(-entry.getValue().data.length);
+            return true;
+        });
+        return size.get() + bytes <= maxBytes;
+    }
+
+}
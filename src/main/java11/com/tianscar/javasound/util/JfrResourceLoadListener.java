@@ -0,0 +1,55 @@
+package com.tianscar.javasound.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Records every loader call as a {@code com.tianscar.javasound.ResourceLoad} Flight Recorder event.
+ * <p>
+ * Flight Recorder events need Java 11, on older runtimes this listener does nothing,
+ * see {@link #isAvailable()}. Register it with {@link ResourceLoadListeners#add(ResourceLoadListener)}.
+ *
+ * @author Karstian Lee
+ */
+public final class JfrResourceLoadListener implements ResourceLoadListener {
+
+    /**
+     * The events of the calls running on each thread, begun when the calls start.
+     */
+    private static final ThreadLocal<Deque<ResourceLoadJfrEvent>> running = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Returns whether Flight Recorder events can be recorded on this runtime.
+     *
+     * @return {@code true} if the events are recorded
+     */
+    public static boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public void resourceLoading(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name) {
+        ResourceLoadJfrEvent jfrEvent = new ResourceLoadJfrEvent();
+        jfrEvent.begin();
+        running.get().push(jfrEvent);
+    }
+
+    @Override
+    public void resourceLoaded(ResourceLoadEvent event) {
+        ResourceLoadJfrEvent jfrEvent = running.get().poll();
+        // the listener was not told of the start of the call
+        if (jfrEvent == null) jfrEvent = new ResourceLoadJfrEvent();
+        jfrEvent.end();
+        if (!jfrEvent.shouldCommit()) return;
+        jfrEvent.operation = event.getOperation().name();
+        jfrEvent.name = event.getName();
+        jfrEvent.provider = event.getProvider();
+        jfrEvent.attemptedProviders = String.join(",", event.getAttemptedProviders());
+        jfrEvent.openDuration = event.getOpenNanos();
+        jfrEvent.parseDuration = event.getParseNanos();
+        jfrEvent.bytesRead = event.getBytesRead();
+        jfrEvent.failure = event.getFailure() == null ? null : event.getFailure().toString();
+        jfrEvent.commit();
+    }
+
+}
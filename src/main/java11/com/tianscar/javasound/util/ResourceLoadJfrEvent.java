@@ -0,0 +1,52 @@
+package com.tianscar.javasound.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder event of a loader call, see {@link JfrResourceLoadListener}.
+ *
+ * @author Karstian Lee
+ */
+@Name("com.tianscar.javasound.ResourceLoad")
+@Label("Resource Load")
+@Description("A call of the JavaSound resource loaders")
+@Category({ "Java Application", "JavaSound" })
+@StackTrace(false)
+final class ResourceLoadJfrEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Resource Name")
+    String name;
+
+    @Label("Provider")
+    String provider;
+
+    @Label("Attempted Providers")
+    String attemptedProviders;
+
+    @Label("Open Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long openDuration;
+
+    @Label("Parse Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseDuration;
+
+    @Label("Bytes Read")
+    @Description("Bytes read from the resource before the call returned, the length of the resource if it was mapped or held in memory")
+    @DataAmount(DataAmount.BYTES)
+    long bytesRead;
+
+    @Label("Failure")
+    String failure;
+
+}
@@ -0,0 +1,42 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLoaderTest {
+
+    @Test
+    @DisplayName("async load completes with the stream")
+    public void loadAsync() throws IOException, ExecutionException, InterruptedException {
+        TestResources resources = new TestResources().put("async.wav", TestResources.wav(1000));
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStreamAsync(resources, "async.wav").get()) {
+            assertEquals(1000, stream.getFrameLength());
+        }
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> AudioResourceLoader.getAudioInputStreamAsync(resources, "missing.wav").get());
+        assertTrue(e.getCause() instanceof IOException);
+    }
+
+    @Test
+    @DisplayName("cancelled load never opens the resource")
+    public void cancelAsync() throws IOException {
+        TestResources resources = new TestResources().put("cancel.wav", TestResources.wav(1000));
+        List<Runnable> queued = new ArrayList<>();
+        CompletableFuture<AudioInputStream> future = AudioResourceLoader.getAudioInputStreamAsync(resources, "cancel.wav", queued::add);
+        assertTrue(future.cancel(true));
+        for (Runnable task : queued) task.run();
+        assertEquals(0, resources.getOpenCount());
+        assertTrue(future.isCancelled());
+    }
+
+}
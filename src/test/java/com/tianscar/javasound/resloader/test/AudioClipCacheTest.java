@@ -0,0 +1,75 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioClipCache;
+import com.tianscar.javasound.sampled.PcmBuffer;
+import com.tianscar.javasound.sampled.PcmStorage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AudioClipCacheTest {
+
+    @Test
+    @DisplayName("hits return fresh streams over the cached pcm")
+    public void cacheHits() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("clip.wav", TestResources.wav(1000));
+        AudioClipCache cache = new AudioClipCache(1024 * 1024);
+        for (int i = 0; i < 3; i ++) {
+            try (AudioInputStream stream = cache.getAudioInputStream(resources, "clip.wav")) {
+                assertEquals(1000, stream.getFrameLength());
+                assertEquals(4000, stream.available());
+            }
+        }
+        assertEquals(1, resources.getOpenCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4000, cache.getSize());
+    }
+
+    @Test
+    @DisplayName("least recently used clips are evicted over the byte budget")
+    public void evictLeastRecentlyUsed() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources()
+                .put("a.wav", TestResources.wav(1000))
+                .put("b.wav", TestResources.wav(1000))
+                .put("c.wav", TestResources.wav(1000));
+        AudioClipCache cache = new AudioClipCache(8000);
+        cache.getAudioInputStream(resources, "a.wav").close();
+        cache.getAudioInputStream(resources, "b.wav").close();
+        cache.getAudioInputStream(resources, "a.wav").close();
+        cache.getAudioInputStream(resources, "c.wav").close();
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.contains(resources, "a.wav", null));
+        assertFalse(cache.contains(resources, "b.wav", null));
+        assertTrue(cache.contains(resources, "c.wav", null));
+        cache.invalidate(resources, null);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    @DisplayName("pcm can be stored off-heap and memory-mapped")
+    public void offHeapStorage() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("loop.wav", TestResources.wav(1000));
+        for (PcmStorage storage : new PcmStorage[] { PcmStorage.DIRECT, PcmStorage.MAPPED }) {
+            AudioClipCache cache = new AudioClipCache(1024 * 1024, storage);
+            PcmBuffer pcm = cache.getPcmBuffer(resources, "loop.wav", null);
+            ByteBuffer buffer = pcm.getByteBuffer();
+            assertTrue(buffer.isDirect());
+            assertTrue(buffer.isReadOnly());
+            assertEquals(4000, buffer.remaining());
+            assertEquals((byte) 123, buffer.get(123));
+            try (AudioInputStream stream = cache.getAudioInputStream(resources, "loop.wav")) {
+                byte[] head = new byte[200];
+                assertEquals(200, stream.read(head));
+                assertEquals((byte) 123, head[123]);
+            }
+        }
+    }
+
+}
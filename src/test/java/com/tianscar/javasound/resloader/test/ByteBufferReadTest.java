@@ -0,0 +1,66 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioClipCache;
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.sampled.PcmBuffer;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Resources;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteBufferReadTest {
+
+    @Test
+    @DisplayName("file resources are mapped and read without streaming")
+    public void mappedResources() throws IOException, UnsupportedAudioFileException {
+        File directory = Files.createTempDirectory("mapped").toFile();
+        Files.write(new File(directory, "large.wav").toPath(), TestResources.wav(100000));
+        Files.write(new File(directory, "small.wav").toPath(), TestResources.wav(10));
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            assertTrue(Resources.getFileByteBuffer(resources, "large.wav") instanceof MappedByteBuffer);
+            assertFalse(Resources.getFileByteBuffer(resources, "small.wav") instanceof MappedByteBuffer);
+            try (ReadableByteChannel channel = Resources.openChannel(resources, "large.wav")) {
+                assertTrue(channel instanceof FileChannel);
+            }
+            try (ResourceSource source = ResourceSource.open(resources, "large.wav")) {
+                assertNotNull(source.getByteBuffer());
+                assertArrayEquals(new byte[] { 'R', 'I', 'F', 'F' }, source.peek(4));
+            }
+            try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "large.wav")) {
+                assertEquals(100000, stream.getFrameLength());
+                byte[] frame = new byte[TestResources.PCM_FORMAT.getFrameSize()];
+                assertEquals(frame.length, stream.read(frame));
+                assertArrayEquals(new byte[] { 0, 1, 2, 3 }, frame);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("PCM data is read into direct buffers")
+    public void directRead() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("clip.wav", TestResources.wav(1000));
+        PcmBuffer pcm = new AudioClipCache(Long.MAX_VALUE).getPcmBuffer(resources, "clip.wav", null);
+        ByteBuffer dst = ByteBuffer.allocateDirect(pcm.getByteLength() + 16);
+        try (ReadableByteChannel channel = pcm.newChannel()) {
+            assertEquals(pcm.getByteLength(), channel.read(dst));
+            assertEquals(-1, channel.read(dst));
+        }
+        dst.flip();
+        assertEquals(pcm.getByteBuffer(), dst);
+    }
+
+}
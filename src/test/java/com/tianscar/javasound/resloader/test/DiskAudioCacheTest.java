@@ -0,0 +1,166 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.sampled.DiskAudioCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskAudioCacheTest {
+
+    @Test
+    @DisplayName("decoded audio is cached on the disk, read back by a new cache and dropped when the resource changes")
+    public void persistentEntries() throws IOException, UnsupportedAudioFileException {
+        File resourceDirectory = Files.createTempDirectory("disk-cache-resources").toFile();
+        File wav = new File(resourceDirectory, "sounds/cached.wav");
+        assertTrue(wav.getParentFile().mkdirs());
+        Files.write(wav.toPath(), TestResources.wav(1000));
+        File cacheDirectory = Files.createTempDirectory("disk-cache").toFile();
+        byte[] expected = pcm(TestResources.wav(1000));
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { resourceDirectory.toURI().toURL() })) {
+            DiskAudioCache.setDefault(new DiskAudioCache(cacheDirectory));
+            try {
+                assertArrayEquals(expected, TestResources.readAll(AudioResourceLoader.getAudioInputStream(resources, "sounds/cached.wav")));
+            }
+            finally {
+                DiskAudioCache.setDefault(null);
+            }
+            DiskAudioCache restarted = new DiskAudioCache(cacheDirectory);
+            assertTrue(restarted.getSize() > expected.length);
+            AudioFileFormat format = restarted.getAudioFileFormat(resources, "sounds/cached.wav");
+            assertNotNull(format);
+            assertEquals(AudioFileFormat.Type.WAVE, format.getType());
+            assertEquals(1000, format.getFrameLength());
+            try (AudioInputStream stream = restarted.getAudioInputStream(resources, "sounds/cached.wav")) {
+                assertNotNull(stream);
+                assertTrue(stream.getFormat().matches(TestResources.PCM_FORMAT));
+                assertEquals(1000, stream.getFrameLength());
+                assertArrayEquals(expected, TestResources.readAll(stream));
+            }
+
+            Files.write(wav.toPath(), TestResources.wav(500));
+            assertTrue(wav.setLastModified(wav.lastModified() - 60_000));
+            assertNull(restarted.getAudioInputStream(resources, "sounds/cached.wav"));
+            assertEquals(0, restarted.getSize());
+        }
+    }
+
+    @Test
+    @DisplayName("the directory is kept under its maximum size")
+    public void maxSize() throws IOException, UnsupportedAudioFileException {
+        byte[] wav = TestResources.wav(1000);
+        TestResources resources = new TestResources().put("sounds/a.wav", wav).put("sounds/b.wav", wav);
+        File cacheDirectory = Files.createTempDirectory("disk-cache").toFile();
+        DiskAudioCache cache = new DiskAudioCache(cacheDirectory, wav.length * 3 / 2);
+        for (String name : new String[] { "sounds/a.wav", "sounds/b.wav" }) {
+            AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, name);
+            AudioFileFormat format = AudioResourceLoader.getAudioFileFormat(resources, name);
+            assertArrayEquals(pcm(wav), TestResources.readAll(cache.put(resources, name, format, stream)));
+        }
+        assertTrue(cache.getSize() <= cache.getMaxBytes());
+        assertEquals(1, cacheDirectory.list().length);
+
+        DiskAudioCache tiny = new DiskAudioCache(Files.createTempDirectory("disk-cache").toFile(), 100);
+        AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "sounds/a.wav");
+        AudioFileFormat format = AudioResourceLoader.getAudioFileFormat(resources, "sounds/a.wav");
+        assertArrayEquals(pcm(wav), TestResources.readAll(tiny.put(resources, "sounds/a.wav", format, stream)));
+        assertEquals(0, tiny.getSize());
+        assertEquals(0, tiny.getDirectory().list().length);
+    }
+
+    @Test
+    @DisplayName("resources of the same name in different locations keep their own entries")
+    public void locatedEntries() throws IOException, UnsupportedAudioFileException {
+        File first = Files.createTempDirectory("disk-cache-resources").toFile();
+        File second = Files.createTempDirectory("disk-cache-resources").toFile();
+        Files.write(new File(first, "shared.wav").toPath(), TestResources.wav(1000));
+        Files.write(new File(second, "shared.wav").toPath(), TestResources.wav(500));
+        File cacheDirectory = Files.createTempDirectory("disk-cache").toFile();
+        DiskAudioCache.setDefault(new DiskAudioCache(cacheDirectory));
+        try (URLClassLoader firstResources = new URLClassLoader(new URL[] { first.toURI().toURL() });
+             URLClassLoader secondResources = new URLClassLoader(new URL[] { second.toURI().toURL() })) {
+            for (int i = 0; i < 2; i ++) {
+                try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(firstResources, "shared.wav")) {
+                    assertEquals(1000, stream.getFrameLength());
+                }
+                try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(secondResources, "shared.wav")) {
+                    assertEquals(500, stream.getFrameLength());
+                }
+            }
+            DiskAudioCache cache = DiskAudioCache.getDefault();
+            assertEquals(2, cacheDirectory.list().length);
+            assertEquals(500, cache.getAudioFileFormat(secondResources, "shared.wav").getFrameLength());
+            assertTrue(cache.invalidate("shared.wav"));
+            assertEquals(0, cache.getSize());
+        }
+        finally {
+            DiskAudioCache.setDefault(null);
+        }
+    }
+
+    @Test
+    @DisplayName("streaming loads bypass the cache, and file types without an extension are cached")
+    public void uncachedLoads() throws IOException, UnsupportedAudioFileException {
+        byte[] wav = TestResources.wav(1000);
+        TestResources resources = new TestResources().put("sounds/raw.wav", wav);
+        File cacheDirectory = Files.createTempDirectory("disk-cache").toFile();
+        DiskAudioCache cache = new DiskAudioCache(cacheDirectory);
+        DiskAudioCache.setDefault(cache);
+        try (AudioInputStream stream = AudioResourceLoader.getStreamingAudioInputStream(resources, "sounds/raw.wav")) {
+            assertArrayEquals(pcm(wav), TestResources.readAll(stream));
+        }
+        finally {
+            DiskAudioCache.setDefault(null);
+        }
+        assertEquals(0, cache.getSize());
+
+        AudioFileFormat.Type raw = new AudioFileFormat.Type("RAW", null);
+        AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "sounds/raw.wav");
+        AudioFileFormat format = new AudioFileFormat(raw, stream.getFormat(), (int) stream.getFrameLength());
+        assertArrayEquals(pcm(wav), TestResources.readAll(cache.put(resources, "sounds/raw.wav", format, stream)));
+        AudioFileFormat cached = cache.getAudioFileFormat(resources, "sounds/raw.wav");
+        assertEquals("RAW", cached.getType().toString());
+        assertNull(cached.getType().getExtension());
+    }
+
+    @Test
+    @DisplayName("cached file formats keep their byte length, properties and type extension")
+    public void cachedFormats() throws IOException, UnsupportedAudioFileException {
+        byte[] wav = TestResources.wav(1000);
+        TestResources resources = new TestResources().put("sounds/tagged.wav", wav);
+        DiskAudioCache cache = new DiskAudioCache(Files.createTempDirectory("disk-cache").toFile());
+        AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "sounds/tagged.wav");
+        AudioFileFormat.Type wave = new AudioFileFormat.Type(AudioFileFormat.Type.WAVE.toString(), "wave");
+        Map<String, Object> properties = Collections.singletonMap("title", "Tagged");
+        AudioFileFormat format = new AudioFileFormat(wave, stream.getFormat(), 1000, properties) {
+            @Override
+            public int getByteLength() {
+                return wav.length;
+            }
+        };
+        TestResources.readAll(cache.put(resources, "sounds/tagged.wav", format, stream));
+        AudioFileFormat cached = cache.getAudioFileFormat(resources, "sounds/tagged.wav");
+        assertEquals("wave", cached.getType().getExtension());
+        assertEquals(wav.length, cached.getByteLength());
+        assertEquals(properties, cached.properties());
+    }
+
+    private static byte[] pcm(byte[] wav) throws IOException, UnsupportedAudioFileException {
+        return TestResources.readAll(AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav)));
+    }
+
+}
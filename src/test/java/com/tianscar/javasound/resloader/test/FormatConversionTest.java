@@ -0,0 +1,55 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioClipCache;
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FormatConversionTest {
+
+    private static final AudioFormat MIXER_FORMAT = new AudioFormat(48000, 16, 2, true, false);
+
+    @Test
+    @DisplayName("streams are converted to the target format")
+    public void convertToTarget() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("clip.wav", TestResources.wav(44100));
+        byte[] converted;
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "clip.wav", MIXER_FORMAT)) {
+            assertTrue(stream.getFormat().matches(MIXER_FORMAT));
+            converted = TestResources.readAll(stream);
+        }
+        byte[] expected;
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(new ByteArrayInputStream(TestResources.wav(44100)));
+             AudioInputStream stream = AudioSystem.getAudioInputStream(MIXER_FORMAT, source)) {
+            expected = TestResources.readAll(stream);
+        }
+        assertArrayEquals(expected, converted);
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "clip.wav", TestResources.PCM_FORMAT)) {
+            assertTrue(stream.getFormat().matches(TestResources.PCM_FORMAT));
+        }
+    }
+
+    @Test
+    @DisplayName("converted clips are kept in the cache")
+    public void cacheConverted() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("clip.wav", TestResources.wav(1000));
+        AudioClipCache cache = new AudioClipCache(Long.MAX_VALUE);
+        for (int i = 0; i < 2; i ++) {
+            try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "clip.wav", MIXER_FORMAT, cache)) {
+                assertTrue(stream.getFormat().matches(MIXER_FORMAT));
+            }
+        }
+        assertEquals(1, resources.getOpenCount());
+        assertTrue(cache.contains(resources, "clip.wav", MIXER_FORMAT));
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.FormatIndexer;
+import com.tianscar.javasound.midi.JDKMidiResourceReader;
+import com.tianscar.javasound.midi.MidiResourceLoader;
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.sampled.JDKAudioResourceReader;
+import com.tianscar.javasound.util.FormatIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiFileFormat;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FormatIndexTest {
+
+    @Test
+    @DisplayName("indexed formats are answered without reading the resource")
+    public void indexedFormat() throws IOException, UnsupportedAudioFileException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        File wav = new File(directory, "sounds/indexed.wav");
+        assertTrue(wav.getParentFile().mkdirs());
+        Files.write(wav.toPath(), TestResources.wav(1000));
+        FormatIndexer.main(new String[] { directory.getPath(), "sounds/*.wav" });
+        assertTrue(new File(directory, FormatIndex.RESOURCE_NAME).isFile());
+        assertTrue(wav.delete());
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            FormatIndex.Entry entry = FormatIndex.get(resources).getEntry("sounds/indexed.wav");
+            assertNotNull(entry);
+            assertEquals(JDKAudioResourceReader.class.getName(), entry.getReaderClassName());
+            AudioFileFormat format = AudioResourceLoader.getAudioFileFormat(resources, "sounds/indexed.wav");
+            assertEquals(AudioFileFormat.Type.WAVE, format.getType());
+            assertEquals(1000, format.getFrameLength());
+            assertTrue(format.getFormat().matches(TestResources.PCM_FORMAT));
+        }
+    }
+
+    @Test
+    @DisplayName("entries of resources changed since they were indexed are ignored")
+    public void staleEntries() throws IOException, UnsupportedAudioFileException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        File wav = new File(directory, "sounds/changed.wav");
+        assertTrue(wav.getParentFile().mkdirs());
+        Files.write(wav.toPath(), TestResources.wav(1000));
+        FormatIndexer.main(new String[] { directory.getPath(), "sounds/*.wav" });
+        Files.write(wav.toPath(), TestResources.wav(500));
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            assertFalse(FormatIndex.get(resources).isEmpty());
+            assertNull(FormatIndex.get(resources).getEntry("sounds/changed.wav"));
+            assertEquals(500, AudioResourceLoader.getAudioFileFormat(resources, "sounds/changed.wav").getFrameLength());
+        }
+    }
+
+    @Test
+    @DisplayName("files changed to the same size are told apart by their CRC once they were modified")
+    public void sameSizeEntries() throws IOException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        File changed = new File(directory, "sounds/changed.wav");
+        File touched = new File(directory, "sounds/touched.wav");
+        assertTrue(changed.getParentFile().mkdirs());
+        Files.write(changed.toPath(), TestResources.wav(1000));
+        Files.write(touched.toPath(), TestResources.wav(1000));
+        FormatIndexer.main(new String[] { directory.getPath(), "sounds/*.wav" });
+        byte[] data = TestResources.wav(1000);
+        data[data.length - 1] ^= 0x7F;
+        Files.write(changed.toPath(), data);
+        assertTrue(changed.setLastModified(changed.lastModified() + 10_000));
+        assertTrue(touched.setLastModified(touched.lastModified() + 10_000));
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            assertNull(FormatIndex.get(resources).getEntry("sounds/changed.wav"));
+            assertNotNull(FormatIndex.get(resources).getEntry("sounds/touched.wav"));
+        }
+    }
+
+    @Test
+    @DisplayName("format properties are written and read back")
+    public void indexedProperties() throws IOException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        File index = new File(directory, FormatIndex.RESOURCE_NAME);
+        assertTrue(index.getParentFile().mkdirs());
+        Map<String, Object> fileProperties = new HashMap<>();
+        fileProperties.put("title", "Indexed");
+        fileProperties.put("duration", 1000L);
+        Map<String, Object> formatProperties = new HashMap<>();
+        formatProperties.put("bitrate", 128000);
+        formatProperties.put("vbr", true);
+        AudioFormat pcm = TestResources.PCM_FORMAT;
+        AudioFormat format = new AudioFormat(pcm.getEncoding(), pcm.getSampleRate(), pcm.getSampleSizeInBits(),
+                pcm.getChannels(), pcm.getFrameSize(), pcm.getFrameRate(), pcm.isBigEndian(), formatProperties);
+        Map<String, Object> unwritable = Collections.singletonMap("date", new Date());
+        try (OutputStream out = new FileOutputStream(index)) {
+            assertEquals(1, FormatIndex.write(Arrays.asList(
+                    new FormatIndex.Entry("sounds/tagged.wav", "TaggedReader",
+                            new AudioFileFormat(AudioFileFormat.Type.WAVE, format, 1000, fileProperties)),
+                    new FormatIndex.Entry("music/dated.mid", "DatedReader",
+                            new MidiFileFormat(0, Sequence.PPQ, 96, 100, 1000, unwritable))), out));
+        }
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            AudioFileFormat indexed = FormatIndex.get(resources).getEntry("sounds/tagged.wav").getAudioFileFormat();
+            assertEquals(fileProperties, indexed.properties());
+            assertEquals("Indexed", indexed.getProperty("title"));
+            assertEquals(formatProperties, indexed.getFormat().properties());
+            assertNull(FormatIndex.get(resources).getEntry("music/dated.mid"));
+        }
+    }
+
+    @Test
+    @DisplayName("MIDI resources are indexed as MIDI, not as rendered audio")
+    public void indexedMidiFormat() throws IOException, InvalidMidiDataException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        File mid = new File(directory, "music/indexed.mid");
+        assertTrue(mid.getParentFile().mkdirs());
+        Files.write(mid.toPath(), notes());
+        FormatIndexer.main(new String[] { directory.getPath(), "music/*.mid" });
+        assertTrue(mid.delete());
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            FormatIndex.Entry entry = FormatIndex.get(resources).getEntry("music/indexed.mid");
+            assertNotNull(entry);
+            assertEquals(JDKMidiResourceReader.class.getName(), entry.getReaderClassName());
+            assertNull(entry.getAudioFileFormat());
+            MidiFileFormat format = MidiResourceLoader.getMidiFileFormat(resources, "music/indexed.mid");
+            assertEquals(96, format.getResolution());
+            assertEquals(Sequence.PPQ, format.getDivisionType());
+        }
+    }
+
+    @Test
+    @DisplayName("file types without an extension are written and read back")
+    public void typeWithoutExtension() throws IOException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        File index = new File(directory, FormatIndex.RESOURCE_NAME);
+        assertTrue(index.getParentFile().mkdirs());
+        AudioFileFormat format = new AudioFileFormat(new AudioFileFormat.Type("RAW", null), TestResources.PCM_FORMAT, 1000);
+        try (OutputStream out = new FileOutputStream(index)) {
+            FormatIndex.write(Collections.singletonList(new FormatIndex.Entry("sounds/raw.pcm", "RawReader", format)), out);
+        }
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            AudioFileFormat indexed = FormatIndex.get(resources).getEntry("sounds/raw.pcm").getAudioFileFormat();
+            assertEquals("RAW", indexed.getType().toString());
+            assertNull(indexed.getType().getExtension());
+            assertEquals(1000, indexed.getFrameLength());
+        }
+    }
+
+    private static byte[] notes() throws IOException, InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, 96);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < 4; i ++) {
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60 + i, 100), i * 96L));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60 + i, 0), i * 96L + 48));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 0, out);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.PreloadedResources;
+import com.tianscar.javasound.ResourcePreloader;
+import com.tianscar.javasound.sampled.AudioClipCache;
+import com.tianscar.javasound.util.ResourceScanner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreloaderTest {
+
+    @Test
+    @DisplayName("batch reports failures without stopping")
+    public void preloadBatch() throws IOException, InterruptedException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources()
+                .put("a.wav", TestResources.wav(1000))
+                .put("b.wav", TestResources.wav(2000))
+                .put("broken.wav", new byte[100])
+                .put("preload.txt", "# effects\naudio:a.wav\nb.wav\n\nbroken.wav\nmissing.wav\n".getBytes(StandardCharsets.UTF_8));
+        PreloadedResources preloaded = new ResourcePreloader(resources).addManifest("preload.txt").preload();
+        assertTrue(preloaded.isLoaded("a.wav"));
+        assertTrue(preloaded.isLoaded("b.wav"));
+        assertEquals(ResourcePreloader.Kind.AUDIO, preloaded.getKind("b.wav"));
+        assertEquals(2, preloaded.getFailures().size());
+        assertTrue(preloaded.getFailures().get("missing.wav") instanceof IOException);
+        int opens = resources.getOpenCount();
+        try (AudioInputStream stream = preloaded.getAudioInputStream("b.wav")) {
+            assertEquals(2000, stream.getFrameLength());
+        }
+        assertEquals(opens, resources.getOpenCount());
+    }
+
+    @Test
+    @DisplayName("audio is decoded into the default clip cache unless one is set")
+    public void preloadClipCache() throws IOException, InterruptedException {
+        TestResources resources = new TestResources().put("a.wav", TestResources.wav(1000));
+        new ResourcePreloader(resources).add(ResourcePreloader.Kind.AUDIO, "a.wav").preload();
+        assertTrue(AudioClipCache.getDefault().contains(resources, "a.wav", null));
+        AudioClipCache clipCache = new AudioClipCache(Long.MAX_VALUE);
+        TestResources other = new TestResources().put("a.wav", TestResources.wav(1000));
+        new ResourcePreloader(other).clipCache(clipCache).add(ResourcePreloader.Kind.AUDIO, "a.wav").preload();
+        assertTrue(clipCache.contains(other, "a.wav", null));
+        assertFalse(AudioClipCache.getDefault().contains(other, "a.wav", null));
+    }
+
+    @Test
+    @DisplayName("untagged MIDI resources are preloaded as sequences, not rendered as audio")
+    public void preloadUntaggedMidi() throws IOException, InterruptedException, InvalidMidiDataException {
+        TestResources resources = new TestResources().put("theme.mid", notes());
+        PreloadedResources preloaded = new ResourcePreloader(resources).add(null, "theme.mid").preload();
+        assertTrue(preloaded.isLoaded("theme.mid"));
+        assertEquals(ResourcePreloader.Kind.SEQUENCE, preloaded.getKind("theme.mid"));
+    }
+
+    @Test
+    @DisplayName("root-level patterns list the resources at the root of jars")
+    public void listJarRoot() throws IOException {
+        File jar = File.createTempFile("scanner", ".jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String name : new String[] { "root.wav", "sounds/nested.wav", "readme.txt" }) {
+                out.putNextEntry(new JarEntry(name));
+                out.write(TestResources.wav(10));
+                out.closeEntry();
+            }
+        }
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { jar.toURI().toURL() })) {
+            Set<String> names = ResourceScanner.list(resources, "**.wav");
+            assertTrue(names.contains("root.wav"));
+            assertTrue(names.contains("sounds/nested.wav"));
+            assertFalse(names.contains("readme.txt"));
+        }
+    }
+
+    private static byte[] notes() throws IOException, InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, 96);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < 4; i ++) {
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60 + i, 100), i * 96L));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60 + i, 0), i * 96L + 48));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 0, out);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.JDKAudioResourceReader;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.ProviderHints;
+import com.tianscar.javasound.util.ProviderRegistry;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Signature;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProviderRegistryTest {
+
+    @Test
+    @DisplayName("providers are cached per ClassLoader")
+    public void cachedProviders() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<AudioResourceReader> providers = ProviderRegistry.getProviders(classLoader, AudioResourceReader.class);
+        assertFalse(providers.isEmpty());
+        assertTrue(providers.get(0) instanceof JDKAudioResourceReader);
+        assertSame(providers, ProviderRegistry.getProviders(classLoader, AudioResourceReader.class));
+        assertThrows(UnsupportedOperationException.class, () -> providers.add(new JDKAudioResourceReader()));
+    }
+
+    @Test
+    @DisplayName("reload drops the cached providers")
+    public void reloadProviders() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<AudioResourceReader> providers = ProviderRegistry.getProviders(classLoader, AudioResourceReader.class);
+        ProviderRegistry.reload(classLoader);
+        List<AudioResourceReader> reloaded = ProviderRegistry.getProviders(classLoader, AudioResourceReader.class);
+        assertNotSame(providers, reloaded);
+        assertEquals(providers.size(), reloaded.size());
+        ProviderRegistry.reload();
+        assertNotSame(reloaded, ProviderRegistry.getProviders(classLoader, AudioResourceReader.class));
+    }
+
+    @Test
+    @DisplayName("providers defined by a ClassLoader do not keep it reachable")
+    public void collectableLoaders() throws IOException, InterruptedException {
+        WeakReference<ClassLoader> loaderRef = loadDefinedProviders();
+        for (int i = 0; i < 100 && loaderRef.get() != null; i ++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loaderRef.get());
+    }
+
+    private static WeakReference<ClassLoader> loadDefinedProviders() throws IOException {
+        try (URLClassLoader loader = newDefiningClassLoader()) {
+            List<AudioResourceReader> providers = ProviderRegistry.getProviders(loader, AudioResourceReader.class);
+            assertTrue(providers.stream().anyMatch(provider -> provider.getClass().getClassLoader() == loader));
+            return new WeakReference<>(loader);
+        }
+    }
+
+    @Test
+    @DisplayName("providers of a collectable class loader are kept while it is reachable")
+    public void retainedProviders() throws IOException, InterruptedException {
+        try (URLClassLoader loader = newDefiningClassLoader()) {
+            List<AudioResourceReader> providers = ProviderRegistry.getProviders(loader, AudioResourceReader.class);
+            WeakReference<List<AudioResourceReader>> providersRef = new WeakReference<>(providers);
+            providers = null;
+            for (int i = 0; i < 10; i ++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertSame(providersRef.get(), ProviderRegistry.getProviders(loader, AudioResourceReader.class));
+        }
+    }
+
+    private static URLClassLoader newDefiningClassLoader() throws IOException {
+        File directory = Files.createTempDirectory("provider-registry").toFile();
+        String className = DefinedReader.class.getName();
+        File classFile = new File(directory, className.replace('.', '/') + ".class");
+        File servicesFile = new File(directory, "META-INF/services/" + AudioResourceReader.class.getName());
+        assertTrue(classFile.getParentFile().mkdirs() && servicesFile.getParentFile().mkdirs());
+        Files.write(classFile.toPath(), TestResources.readAll(
+                ProviderRegistryTest.class.getResourceAsStream("/" + className.replace('.', '/') + ".class")));
+        Files.write(servicesFile.toPath(), className.getBytes(StandardCharsets.UTF_8));
+        return new DefiningClassLoader(new URL[] { directory.toURI().toURL() }, className);
+    }
+
+    /**
+     * Defines the given class itself rather than delegating to its parent.
+     */
+    private static final class DefiningClassLoader extends URLClassLoader {
+        private final String className;
+        private DefiningClassLoader(URL[] urls, String className) {
+            super(urls, ProviderRegistryTest.class.getClassLoader());
+            this.className = className;
+        }
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(className)) return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                return c == null ? findClass(name) : c;
+            }
+        }
+    }
+
+    public static final class DefinedReader implements AudioResourceReader {
+        @Override
+        public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException {
+            throw new UnsupportedAudioFileException();
+        }
+        @Override
+        public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException {
+            throw new UnsupportedAudioFileException();
+        }
+    }
+
+    @Test
+    @DisplayName("providers are dispatched by signature, then by name")
+    public void dispatchProviders() throws IOException {
+        AudioResourceReader jdk = new JDKAudioResourceReader();
+        AudioResourceReader ogg = new HintedReader(new String[] { "ogg" }, new Signature[0]);
+        AudioResourceReader flac = new HintedReader(new String[0], new Signature[] { Signature.of(0, "fLaC") });
+        AudioResourceReader plain = new HintedReader(new String[0], new Signature[0]);
+        List<AudioResourceReader> providers = Arrays.asList(plain, flac, ogg, jdk);
+        TestResources resources = new TestResources()
+                .put("sounds/wave.ogg", TestResources.wav(100))
+                .put("sounds/vorbis.ogg", "OggS".getBytes(StandardCharsets.US_ASCII));
+        try (ResourceSource source = ResourceSource.open(resources, "sounds/wave.ogg")) {
+            assertEquals(Arrays.asList(jdk, ogg, plain, flac), ProviderRegistry.dispatch(providers, null, "sounds/wave.ogg", source));
+            assertEquals(Arrays.asList(jdk, plain, flac, ogg),
+                    ProviderRegistry.dispatch(providers, JDKAudioResourceReader.class.getName(), "sounds/wave.ogg", source));
+        }
+        try (ResourceSource source = ResourceSource.open(resources, "sounds/vorbis.ogg")) {
+            assertEquals(Arrays.asList(ogg, plain, flac, jdk), ProviderRegistry.dispatch(providers, null, "sounds/vorbis.ogg", source));
+        }
+        assertEquals(ProviderHints.LOWEST_PRIORITY, jdk.getPriority());
+        assertEquals(ProviderHints.DEFAULT_PRIORITY, plain.getPriority());
+    }
+
+    private static final class HintedReader implements AudioResourceReader {
+        private final String[] extensions;
+        private final Signature[] signatures;
+        private HintedReader(String[] extensions, Signature[] signatures) {
+            this.extensions = extensions;
+            this.signatures = signatures;
+        }
+        @Override
+        public String[] getFileExtensions() {
+            return extensions;
+        }
+        @Override
+        public Signature[] getSignatures() {
+            return signatures;
+        }
+        @Override
+        public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException {
+            throw new UnsupportedAudioFileException();
+        }
+        @Override
+        public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException {
+            throw new UnsupportedAudioFileException();
+        }
+    }
+
+}
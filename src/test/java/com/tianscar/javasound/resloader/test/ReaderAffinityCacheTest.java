@@ -0,0 +1,60 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.sampled.JDKAudioResourceReader;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.ReaderAffinityCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReaderAffinityCacheTest {
+
+    @Test
+    @DisplayName("unsupported resources fail without being opened again")
+    public void negativeResults() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources()
+                .put("ok.wav", TestResources.wav(100))
+                .put("garbage.bin", new byte[64]);
+        assertThrows(UnsupportedAudioFileException.class, () -> AudioResourceLoader.getAudioFileFormat(resources, "garbage.bin"));
+        assertThrows(UnsupportedAudioFileException.class, () -> AudioResourceLoader.getAudioInputStream(resources, "garbage.bin"));
+        assertEquals(1, resources.getOpenCount());
+        AudioResourceLoader.getAudioFileFormat(resources, "ok.wav");
+        ReaderAffinityCache.Affinity affinity = ReaderAffinityCache.getDefault().get(resources, "ok.wav", AudioResourceReader.class);
+        assertEquals(JDKAudioResourceReader.class.getName(), affinity.getReaderClassName());
+        ReaderAffinityCache.getDefault().invalidate(resources, null);
+        assertThrows(UnsupportedAudioFileException.class, () -> AudioResourceLoader.getAudioFileFormat(resources, "garbage.bin"));
+        assertEquals(3, resources.getOpenCount());
+    }
+
+    @Test
+    @DisplayName("entries are bounded and expire")
+    public void boundedEntries() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        AtomicLong ticker = new AtomicLong();
+        ReaderAffinityCache cache = new ReaderAffinityCache(2, 50, TimeUnit.MILLISECONDS, ticker::get);
+        cache.putUnsupported(classLoader, "a", AudioResourceReader.class);
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        cache.putUnsupported(classLoader, "b", AudioResourceReader.class);
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(cache.get(classLoader, "a", AudioResourceReader.class).isUnsupported());
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        cache.putUnsupported(classLoader, "c", AudioResourceReader.class);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(classLoader, "b", AudioResourceReader.class));
+        assertTrue(cache.get(classLoader, "a", AudioResourceReader.class).isUnsupported());
+        assertTrue(cache.get(classLoader, "c", AudioResourceReader.class).isUnsupported());
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertNull(cache.get(classLoader, "a", AudioResourceReader.class));
+        assertTrue(cache.get(classLoader, "c", AudioResourceReader.class).isUnsupported());
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        assertNull(cache.get(classLoader, "c", AudioResourceReader.class));
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.sampled.JDKAudioResourceReader;
+import com.tianscar.javasound.util.ResourceLoadEvent;
+import com.tianscar.javasound.util.ResourceLoadListener;
+import com.tianscar.javasound.util.ResourceLoadListeners;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceLoadListenerTest {
+
+    @Test
+    @DisplayName("listeners receive an event for every load")
+    public void events() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("sound.wav", TestResources.wav(1000));
+        List<ResourceLoadEvent> events = new ArrayList<>();
+        ResourceLoadListener listener = events::add;
+        ResourceLoadListeners.add(listener);
+        try {
+            try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "sound.wav")) {
+                assertNotNull(stream);
+            }
+            assertThrows(IOException.class, () -> AudioResourceLoader.getAudioFileFormat(resources, "missing.wav"));
+        }
+        finally {
+            ResourceLoadListeners.remove(listener);
+        }
+        AudioResourceLoader.getAudioFileFormat(resources, "sound.wav");
+        assertEquals(2, events.size());
+
+        ResourceLoadEvent loaded = events.get(0);
+        assertSame(resources, loaded.getResourceLoader());
+        assertEquals(ResourceLoadEvent.Operation.AUDIO_INPUT_STREAM, loaded.getOperation());
+        assertEquals("sound.wav", loaded.getName());
+        assertEquals(JDKAudioResourceReader.class.getName(), loaded.getProvider());
+        assertTrue(loaded.getAttemptedProviders().contains(JDKAudioResourceReader.class.getName()));
+        assertTrue(loaded.getBytesRead() > 0);
+        assertNull(loaded.getFailure());
+
+        ResourceLoadEvent failed = events.get(1);
+        assertEquals(ResourceLoadEvent.Operation.AUDIO_FILE_FORMAT, failed.getOperation());
+        assertNull(failed.getProvider());
+        assertTrue(failed.getFailure() instanceof IOException);
+    }
+
+    @Test
+    @DisplayName("listeners are told when a load starts, and of its completion on the same thread")
+    public void startedEvents() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("sound.wav", TestResources.wav(1000));
+        List<String> calls = new ArrayList<>();
+        ResourceLoadListener listener = new ResourceLoadListener() {
+            @Override
+            public void resourceLoading(ResourceLoadEvent.Operation operation, ClassLoader resourceLoader, String name) {
+                calls.add("loading " + operation + " " + Thread.currentThread().getId());
+            }
+            @Override
+            public void resourceLoaded(ResourceLoadEvent event) {
+                calls.add("loaded " + event.getOperation() + " " + Thread.currentThread().getId());
+            }
+        };
+        ResourceLoadListeners.add(listener);
+        try {
+            AudioResourceLoader.getAudioFileFormat(resources, "sound.wav");
+        }
+        finally {
+            ResourceLoadListeners.remove(listener);
+        }
+        long thread = Thread.currentThread().getId();
+        assertEquals(2, calls.size());
+        assertEquals("loading AUDIO_FILE_FORMAT " + thread, calls.get(0));
+        assertEquals("loaded AUDIO_FILE_FORMAT " + thread, calls.get(1));
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.FormatIndexer;
+import com.tianscar.javasound.midi.JDKMidiResourceReader;
+import com.tianscar.javasound.midi.MidiResourceLoader;
+import com.tianscar.javasound.midi.SequenceCache;
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.sampled.JDKAudioResourceReader;
+import com.tianscar.javasound.sampled.spi.AudioResourceReader;
+import com.tianscar.javasound.util.ResourceLoadEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceLoaderBuilderTest {
+
+    @Test
+    @DisplayName("configured audio loaders use their own readers and listeners, next to the default loader")
+    public void audioLoaders() throws IOException, UnsupportedAudioFileException, ExecutionException, InterruptedException {
+        TestResources resources = new TestResources().put("sound.wav", TestResources.wav(1000));
+        List<ResourceLoadEvent> events = new ArrayList<>();
+        AudioResourceLoader rejecting = AudioResourceLoader.builder()
+                .resourceLoader(resources)
+                .providers(Collections.singletonList(new RejectingReader()))
+                .listener(events::add)
+                .build();
+        AudioResourceLoader jdk = AudioResourceLoader.builder()
+                .resourceLoader(resources)
+                .providers(Collections.singletonList(new JDKAudioResourceReader()))
+                .build();
+
+        assertSame(resources, rejecting.getResourceLoader());
+        assertThrows(UnsupportedAudioFileException.class, () -> rejecting.getAudioFileFormat("sound.wav"));
+        AudioFileFormat format = jdk.getAudioFileFormat("sound.wav");
+        assertEquals(AudioFileFormat.Type.WAVE, format.getType());
+        assertEquals(1000, format.getFrameLength());
+        try (AudioInputStream stream = jdk.getAudioInputStreamAsync("sound.wav").get()) {
+            assertEquals(1000, stream.getFrameLength());
+        }
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "sound.wav")) {
+            assertEquals(1000, stream.getFrameLength());
+        }
+        assertThrows(UnsupportedAudioFileException.class, () -> rejecting.getAudioInputStream("sound.wav"));
+
+        assertEquals(2, events.size());
+        assertEquals(ResourceLoadEvent.Operation.AUDIO_FILE_FORMAT, events.get(0).getOperation());
+        assertEquals(Collections.singletonList(RejectingReader.class.getName()), events.get(0).getAttemptedProviders());
+        assertTrue(events.get(0).getFailure() instanceof UnsupportedAudioFileException);
+        assertEquals(ResourceLoadEvent.Operation.AUDIO_INPUT_STREAM, events.get(1).getOperation());
+    }
+
+    @Test
+    @DisplayName("configured midi loaders use their own readers and sequence cache")
+    public void midiLoaders() throws IOException, InvalidMidiDataException, ExecutionException, InterruptedException {
+        TestResources resources = new TestResources().put("notes.mid", notes());
+        SequenceCache cache = new SequenceCache(SequenceCache.DEFAULT_MAX_BYTES);
+        MidiResourceLoader cached = MidiResourceLoader.builder()
+                .resourceLoader(resources)
+                .midiReaders(Collections.singletonList(new JDKMidiResourceReader()))
+                .sequenceCache(cache)
+                .build();
+        MidiResourceLoader empty = MidiResourceLoader.builder()
+                .resourceLoader(resources)
+                .midiReaders(Collections.emptyList())
+                .build();
+
+        Sequence first = cached.getSequence("notes.mid");
+        Sequence second = cached.getSequenceAsync("notes.mid").get();
+        assertNotSame(first, second);
+        assertEquals(first.getTickLength(), second.getTickLength());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, resources.getOpenCount());
+        assertThrows(InvalidMidiDataException.class, () -> empty.getMidiFileFormat("notes.mid"));
+        assertEquals(first.getTickLength(), MidiResourceLoader.getSequence(resources, "notes.mid").getTickLength());
+    }
+
+    @Test
+    @DisplayName("configured loaders only use format index entries of their own readers")
+    public void indexedLoaders() throws IOException, UnsupportedAudioFileException, InvalidMidiDataException {
+        File directory = Files.createTempDirectory("format-index").toFile();
+        Files.write(new File(directory, "sound.wav").toPath(), TestResources.wav(1000));
+        Files.write(new File(directory, "notes.mid").toPath(), notes());
+        FormatIndexer.main(new String[] { directory.getPath() });
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            AudioResourceLoader rejecting = AudioResourceLoader.builder()
+                    .resourceLoader(resources)
+                    .providers(Collections.singletonList(new RejectingReader()))
+                    .build();
+            AudioResourceLoader jdk = AudioResourceLoader.builder()
+                    .resourceLoader(resources)
+                    .providers(Collections.singletonList(new JDKAudioResourceReader()))
+                    .build();
+            MidiResourceLoader empty = MidiResourceLoader.builder()
+                    .resourceLoader(resources)
+                    .midiReaders(Collections.emptyList())
+                    .build();
+            assertThrows(UnsupportedAudioFileException.class, () -> rejecting.getAudioFileFormat("sound.wav"));
+            assertThrows(UnsupportedAudioFileException.class, () -> rejecting.getAudioInputStream("sound.wav"));
+            assertEquals(1000, jdk.getAudioFileFormat("sound.wav").getFrameLength());
+            assertThrows(InvalidMidiDataException.class, () -> empty.getMidiFileFormat("notes.mid"));
+            assertEquals(96, MidiResourceLoader.getMidiFileFormat(resources, "notes.mid").getResolution());
+        }
+    }
+
+    private static byte[] notes() throws IOException, InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, 96);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < 4; i ++) {
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60 + i, 100), i * 96L));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60 + i, 0), i * 96L + 48));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 0, out);
+        return out.toByteArray();
+    }
+
+    private static final class RejectingReader implements AudioResourceReader {
+        @Override
+        public AudioFileFormat getAudioFileFormat(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException {
+            throw new UnsupportedAudioFileException();
+        }
+        @Override
+        public AudioInputStream getAudioInputStream(ClassLoader resourceLoader, String name) throws UnsupportedAudioFileException {
+            throw new UnsupportedAudioFileException();
+        }
+    }
+
+}
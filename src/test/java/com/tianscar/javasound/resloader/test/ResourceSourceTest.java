@@ -0,0 +1,105 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.util.ResourceLoadEvent;
+import com.tianscar.javasound.util.ResourceSource;
+import com.tianscar.javasound.util.Resources;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceSourceTest {
+
+    @Test
+    @DisplayName("every view starts at the first byte")
+    public void rewindViews() throws IOException {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i ++) data[i] = (byte) i;
+        try (ResourceSource source = new ResourceSource(new ByteArrayInputStream(data))) {
+            InputStream first = source.newView();
+            byte[] head = new byte[100];
+            assertEquals(100, first.read(head));
+            InputStream second = source.newView();
+            assertEquals(0, second.read());
+            second.mark(0);
+            byte[] rest = new byte[data.length];
+            int total = 0;
+            int read;
+            while ((read = second.read(rest, total, rest.length - total)) > 0) total += read;
+            assertEquals(data.length - 1, total);
+            second.reset();
+            assertEquals(1, second.read());
+        }
+    }
+
+    @Test
+    @DisplayName("single bytes and skips are read from the buffer, then from the released resource")
+    public void singleBytes() throws IOException {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i ++) data[i] = (byte) (i * 7);
+        try (ResourceSource source = new ResourceSource(new ByteArrayInputStream(data))) {
+            InputStream probe = source.newView();
+            long skipped = 0;
+            while (skipped < 10000) skipped += probe.skip(10000 - skipped);
+            InputStream view = source.newView();
+            for (int i = 0; i < 100; i ++) assertEquals(data[i] & 0xFF, view.read());
+            assertEquals(100, view.skip(100));
+            source.release(view);
+            for (int i = 200; i < data.length; i ++) assertEquals(data[i] & 0xFF, view.read());
+            assertEquals(-1, view.read());
+            assertEquals(data.length, source.getBytesRead());
+        }
+    }
+
+    @Test
+    @DisplayName("file formats of files are probed from their header, not read whole")
+    public void headerReads() throws IOException, UnsupportedAudioFileException {
+        File directory = Files.createTempDirectory("resource-source").toFile();
+        byte[] wav = TestResources.wav(100000);
+        Files.write(new File(directory, "long.wav").toPath(), wav);
+        List<ResourceLoadEvent> events = new ArrayList<>();
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { directory.toURI().toURL() })) {
+            AudioResourceLoader loader = AudioResourceLoader.builder().resourceLoader(resources).listener(events::add).build();
+            assertEquals(100000, loader.getAudioFileFormat("long.wav").getFrameLength());
+            try (AudioInputStream stream = loader.getAudioInputStream("long.wav")) {
+                assertEquals(100000, stream.getFrameLength());
+            }
+        }
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).getBytesRead() < Resources.MAP_THRESHOLD, events.get(0).getBytesRead() + " bytes read to probe");
+        assertEquals(wav.length, events.get(1).getBytesRead());
+    }
+
+    @Test
+    @DisplayName("wav resource is opened only once per lookup")
+    public void singleOpen() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("test.wav", TestResources.wav(1000));
+        AudioFileFormat format = AudioResourceLoader.getAudioFileFormat(resources, "test.wav");
+        assertEquals(AudioFileFormat.Type.WAVE, format.getType());
+        assertEquals(1, resources.getOpenCount());
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "test.wav")) {
+            byte[] pcm = new byte[1000 * TestResources.PCM_FORMAT.getFrameSize()];
+            int total = 0;
+            int read;
+            while ((read = stream.read(pcm, total, pcm.length - total)) > 0) total += read;
+            assertEquals(pcm.length, total);
+            assertEquals((byte) 123, pcm[123]);
+        }
+        assertEquals(2, resources.getOpenCount());
+    }
+
+}
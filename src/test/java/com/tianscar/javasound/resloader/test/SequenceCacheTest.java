@@ -0,0 +1,156 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.midi.JDKMidiResourceReader;
+import com.tianscar.javasound.midi.MidiResourceLoader;
+import com.tianscar.javasound.midi.PackedSequence;
+import com.tianscar.javasound.midi.SequenceCache;
+import com.tianscar.javasound.util.SingleFlight;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceCacheTest {
+
+    private static final int CALLERS = 4;
+
+    @Test
+    @DisplayName("cached sequences are materialized without reloading")
+    public void cachedSequences() throws IOException, InvalidMidiDataException {
+        TestResources resources = new TestResources().put("jingle.mid", jingle());
+        SequenceCache cache = new SequenceCache(SequenceCache.DEFAULT_MAX_BYTES);
+        Sequence first = cache.getSequence(resources, "jingle.mid");
+        Sequence second = cache.getSequence(resources, "jingle.mid");
+        assertNotSame(first, second);
+        assertEquals(1, resources.getOpenCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(first.getTickLength(), second.getTickLength());
+        assertEquals(first.getTracks()[0].size(), second.getTracks()[0].size());
+        for (int i = 0; i < first.getTracks()[0].size(); i ++) {
+            MidiEvent a = first.getTracks()[0].get(i);
+            MidiEvent b = second.getTracks()[0].get(i);
+            assertEquals(a.getTick(), b.getTick());
+            assertArrayEquals(a.getMessage().getMessage(), b.getMessage().getMessage());
+        }
+        cache.invalidate(resources, null);
+        assertFalse(cache.contains(resources, "jingle.mid"));
+    }
+
+    @Test
+    @DisplayName("loaders built with other readers do not share sequences")
+    public void configuredLoaders() throws IOException, InvalidMidiDataException {
+        TestResources resources = new TestResources().put("jingle.mid", jingle());
+        SequenceCache cache = new SequenceCache(SequenceCache.DEFAULT_MAX_BYTES);
+        MidiResourceLoader jdk = MidiResourceLoader.builder()
+                .resourceLoader(resources)
+                .midiReaders(Collections.singletonList(new JDKMidiResourceReader()))
+                .sequenceCache(cache)
+                .build();
+        MidiResourceLoader empty = MidiResourceLoader.builder()
+                .resourceLoader(resources)
+                .midiReaders(Collections.emptyList())
+                .sequenceCache(cache)
+                .build();
+        assertEquals(1, jdk.getSequence("jingle.mid").getTracks().length);
+        assertTrue(cache.contains(resources, "jingle.mid"));
+        assertThrows(InvalidMidiDataException.class, () -> empty.getSequence("jingle.mid"));
+    }
+
+    @Test
+    @DisplayName("concurrent misses load and pack a sequence once")
+    public void concurrentMisses() throws Exception {
+        TestResources resources = new TestResources().put("jingle.mid", jingle());
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ClassLoader gated = new ClassLoader(resources) {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                opened.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return resources.getResourceAsStream(name);
+            }
+        };
+        SequenceCache cache = new SequenceCache(SequenceCache.DEFAULT_MAX_BYTES);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<PackedSequence>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> cache.getPackedSequence(gated, "jingle.mid")));
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLERS; i ++) futures.add(executor.submit(() -> cache.getPackedSequence(gated, "jingle.mid")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        // the operation the loaders run packed sequence loads as
+        while (SingleFlight.getDefault().getWaiterCount(gated, "jingle.mid", "PACKED_SEQUENCE") < CALLERS - 1) {
+            assertTrue(System.nanoTime() - deadline < 0, "callers did not join the load");
+            Thread.sleep(1);
+        }
+        release.countDown();
+        PackedSequence packed = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<PackedSequence> future : futures) assertSame(packed, future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, resources.getOpenCount());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("packed sequences are sent with time stamps")
+    public void sendToReceiver() throws IOException, InvalidMidiDataException {
+        PackedSequence sequence = PackedSequence.pack(MidiSystem.getSequence(new ByteArrayInputStream(jingle())));
+        List<long[]> received = new ArrayList<>();
+        sequence.send(new Receiver() {
+            @Override
+            public void send(MidiMessage message, long timeStamp) {
+                received.add(new long[] { message.getStatus(), timeStamp });
+            }
+            @Override
+            public void close() {
+            }
+        }, 0);
+        assertEquals(8, received.size());
+        // 96 ticks per quarter note at 120 bpm, then 60 bpm from tick 192
+        assertEquals(ShortMessage.NOTE_ON, received.get(0)[0]);
+        assertEquals(0, received.get(0)[1]);
+        assertEquals(500000, received.get(2)[1]);
+        assertEquals(1000000, received.get(4)[1]);
+        assertEquals(2000000, received.get(6)[1]);
+    }
+
+    private static byte[] jingle() throws IOException, InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, 96);
+        Track track = sequence.createTrack();
+        for (int i = 0; i < 4; i ++) {
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, 0, 60 + i, 100), i * 96L));
+            track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60 + i, 0), i * 96L + 48));
+        }
+        byte[] tempo = { 0x0F, 0x42, 0x40 }; // 1000000 microseconds per quarter note
+        track.add(new MidiEvent(new MetaMessage(0x51, tempo, 3), 192));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 0, out);
+        return out.toByteArray();
+    }
+
+}
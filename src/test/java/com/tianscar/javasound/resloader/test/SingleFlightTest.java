@@ -0,0 +1,269 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.util.LoadFuture;
+import com.tianscar.javasound.util.ResourceLoadEvent;
+import com.tianscar.javasound.util.SingleFlight;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 4;
+
+    @Test
+    @DisplayName("concurrent loads of the same resource open it once, and each caller gets its own stream")
+    public void sharedStream() throws Exception {
+        byte[] wav = TestResources.wav(1000);
+        TestResources resources = new TestResources().put("sounds/flight.wav", wav);
+        CountDownLatch opened = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ClassLoader gated = new ClassLoader(resources) {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                opened.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return resources.getResourceAsStream(name);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        futures.add(CompletableFuture.supplyAsync(() -> read(gated), executor));
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLERS; i ++) futures.add(CompletableFuture.supplyAsync(() -> read(gated), executor));
+        awaitWaiters(SingleFlight.getDefault(), gated, "sounds/flight.wav", ResourceLoadEvent.Operation.AUDIO_INPUT_STREAM, CALLERS - 1);
+        release.countDown();
+        byte[] expected = futures.get(0).get(5, TimeUnit.SECONDS);
+        assertEquals(1000 * TestResources.PCM_FORMAT.getFrameSize(), expected.length);
+        for (CompletableFuture<byte[]> future : futures) assertArrayEquals(expected, future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, resources.getOpenCount());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("a failure goes to all waiters, each with its own exception, and is not kept")
+    public void sharedFailure() throws Exception {
+        SingleFlight flight = new SingleFlight(0, TimeUnit.MILLISECONDS);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i ++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return flight.execute(null, "sounds/broken.wav", "test", () -> {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        throw new IOException("broken");
+                    });
+                }
+                catch (Exception e) {
+                    return e;
+                }
+            }, executor));
+            if (i == 0) assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+        awaitWaiters(flight, null, "sounds/broken.wav", "test", CALLERS - 1);
+        release.countDown();
+        Object failure = futures.get(0).get(5, TimeUnit.SECONDS);
+        assertTrue(failure instanceof IOException);
+        assertEquals("broken", ((IOException) failure).getMessage());
+        for (int i = 1; i < CALLERS; i ++) {
+            Object result = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertTrue(result instanceof IOException);
+            assertEquals("broken", ((IOException) result).getMessage());
+            assertNotSame(failure, result);
+            assertSame(failure, ((IOException) result).getCause());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, flight.size());
+        executor.shutdown();
+        assertEquals("ok", flight.execute(null, "sounds/broken.wav", "test", () -> "ok"));
+    }
+
+    @Test
+    @DisplayName("waiters get a failure of the same type as the load")
+    public void typedFailure() throws Exception {
+        SingleFlight flight = new SingleFlight(0, TimeUnit.MILLISECONDS);
+        List<Object> failures = failWaiters(flight, "sounds/missing.wav", new FileNotFoundException("missing"));
+        for (int i = 1; i < CALLERS; i ++) {
+            Object result = failures.get(i);
+            assertEquals(FileNotFoundException.class, result.getClass());
+            assertEquals("missing", ((FileNotFoundException) result).getMessage());
+            assertSame(failures.get(0), ((FileNotFoundException) result).getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("waiters get an unchecked failure of the load as it is")
+    public void uncheckedFailure() throws Exception {
+        SingleFlight flight = new SingleFlight(0, TimeUnit.MILLISECONDS);
+        IllegalStateException failure = new IllegalStateException("broken");
+        List<Object> failures = failWaiters(flight, "sounds/broken.wav", failure);
+        for (Object result : failures) assertSame(failure, result);
+    }
+
+    /**
+     * Runs a load failing with the given exception from all callers at once, and returns what each caller caught.
+     */
+    private static List<Object> failWaiters(SingleFlight flight, String name, Exception failure) throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i ++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return flight.execute(null, name, "test", () -> {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        throw failure;
+                    });
+                }
+                catch (Exception e) {
+                    return e;
+                }
+            }, executor));
+            if (i == 0) assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+        awaitWaiters(flight, null, name, "test", CALLERS - 1);
+        release.countDown();
+        List<Object> failures = new ArrayList<>();
+        for (CompletableFuture<Object> future : futures) failures.add(future.get(5, TimeUnit.SECONDS));
+        assertSame(failure, failures.get(0));
+        assertEquals(1, loads.get());
+        executor.shutdown();
+        return failures;
+    }
+
+    @Test
+    @DisplayName("waiters load again when the caller running the load is cancelled")
+    public void cancelledLeader() throws Exception {
+        SingleFlight flight = new SingleFlight(0, TimeUnit.MILLISECONDS);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        LoadFuture.Load<Object> load = () -> flight.execute(null, "sounds/cancelled.wav", "test", () -> {
+            if (loads.incrementAndGet() > 1) return "ok";
+            LoadFuture.register(closed::countDown);
+            started.countDown();
+            closed.await();
+            throw new IOException("closed");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        LoadFuture<Object> leader = LoadFuture.load(load, executor);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        LoadFuture<Object> waiter = LoadFuture.load(load, executor);
+        awaitWaiters(flight, null, "sounds/cancelled.wav", "test", 1);
+        assertTrue(leader.cancel(false));
+        assertEquals("ok", waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+        assertEquals(0, flight.size());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("waiters load on their own when the result is declined")
+    public void declinedResult() throws Exception {
+        SingleFlight flight = new SingleFlight(0, TimeUnit.MILLISECONDS);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight.Share<String, String> declining = new SingleFlight.Share<String, String>() {
+            @Override
+            public String share(String result) {
+                return null;
+            }
+            @Override
+            public String copy(String shared) {
+                throw new AssertionError();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i ++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return flight.execute(null, "sounds/large.wav", "test", () -> {
+                        int load = loads.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        return "load" + load;
+                    }, declining);
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor));
+            if (i == 0) assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+        awaitWaiters(flight, null, "sounds/large.wav", "test", CALLERS - 1);
+        release.countDown();
+        Set<String> results = new HashSet<>();
+        for (CompletableFuture<String> future : futures) results.add(future.get(5, TimeUnit.SECONDS));
+        assertEquals(CALLERS, results.size());
+        assertEquals(CALLERS, loads.get());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("failures are kept for the configured time to live")
+    public void keptFailure() throws Exception {
+        SingleFlight flight = new SingleFlight(1, TimeUnit.MINUTES);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i ++) {
+            assertThrows(IOException.class, () -> flight.execute(null, "sounds/broken.wav", "test", () -> {
+                loads.incrementAndGet();
+                throw new IOException("broken");
+            }));
+        }
+        assertEquals(1, loads.get());
+        flight.clear();
+        assertEquals("ok", flight.execute(null, "sounds/broken.wav", "test", () -> "ok"));
+    }
+
+    private static void awaitWaiters(SingleFlight flight, ClassLoader resourceLoader, String name, Object operation,
+                                     int waiters) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getWaiterCount(resourceLoader, name, operation) < waiters) {
+            assertTrue(System.nanoTime() - deadline < 0, "waiters did not join the load");
+            Thread.sleep(1);
+        }
+    }
+
+    private static byte[] read(ClassLoader resourceLoader) {
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resourceLoader, "sounds/flight.wav")) {
+            return TestResources.readAll(stream);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.midi.SoundbankCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.SoundbankResource;
+import javax.sound.sampled.AudioInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SoundbankCacheTest {
+
+    @Test
+    @DisplayName("soundbanks are shared until the last reference is closed")
+    public void sharedSoundbanks() throws IOException, InvalidMidiDataException {
+        // the JavaSound audio file soundbank reader turns a sample into a one-instrument bank
+        TestResources resources = new TestResources().put("bank.wav", TestResources.wav(1000));
+        SoundbankCache cache = new SoundbankCache(false);
+        Soundbank first;
+        try (SoundbankCache.SharedSoundbank a = cache.acquire(resources, "bank.wav");
+             SoundbankCache.SharedSoundbank b = cache.acquire(resources, "bank.wav")) {
+            first = a.getSoundbank();
+            assertSame(first, b.getSoundbank());
+            assertEquals(2, cache.getReferenceCount(resources, "bank.wav"));
+            assertEquals(1, resources.getOpenCount());
+        }
+        assertEquals(0, cache.size());
+        try (SoundbankCache.SharedSoundbank c = cache.acquire(resources, "bank.wav")) {
+            assertNotSame(first, c.getSoundbank());
+        }
+        assertThrows(IOException.class, () -> cache.acquire(resources, "missing.sf2"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("lazy soundbanks read sample data from a spooled file")
+    public void lazySoundbanks() throws IOException, InvalidMidiDataException {
+        byte[] sample = new byte[2000];
+        Arrays.fill(sample, (byte) 1);
+        TestResources resources = new TestResources().put("lazy.sf2", TestResources.sf2(sample));
+        SoundbankCache cache = new SoundbankCache(true);
+        Set<File> before = listSpoolFiles();
+        try (SoundbankCache.SharedSoundbank shared = cache.acquire(resources, "lazy.sf2")) {
+            Soundbank soundbank = shared.getSoundbank();
+            assertEquals(1, soundbank.getInstruments().length);
+            Set<File> spooled = listSpoolFiles();
+            spooled.removeAll(before);
+            assertEquals(1, spooled.size());
+            // the sample data was not read yet, so it is read back as it is in the file now
+            Path file = spooled.iterator().next().toPath();
+            byte[] bank = Files.readAllBytes(file);
+            int offset = indexOf(bank, sample);
+            Arrays.fill(bank, offset, offset + sample.length, (byte) 2);
+            Files.write(file, bank);
+            byte[] expected = new byte[sample.length];
+            Arrays.fill(expected, (byte) 2);
+            int samples = 0;
+            for (SoundbankResource resource : soundbank.getResources()) {
+                if (resource.getDataClass() == AudioInputStream.class) {
+                    assertArrayEquals(expected, TestResources.readAll((AudioInputStream) resource.getData()));
+                    samples ++;
+                }
+            }
+            assertEquals(1, samples);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("spooled files are deleted if the soundbank fails to load")
+    public void failedSoundbanks() {
+        byte[] bank = TestResources.sf2(new byte[2000]);
+        TestResources resources = new TestResources().put("truncated.sf2", Arrays.copyOf(bank, bank.length - 100));
+        SoundbankCache cache = new SoundbankCache(true);
+        Set<File> before = listSpoolFiles();
+        assertThrows(IOException.class, () -> cache.acquire(resources, "truncated.sf2"));
+        Set<File> spooled = listSpoolFiles();
+        spooled.removeAll(before);
+        assertTrue(spooled.isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("spooled files outlive the last reference while the soundbank is reachable")
+    public void spooledFiles() throws IOException, InvalidMidiDataException, InterruptedException {
+        TestResources resources = new TestResources().put("spooled.wav", TestResources.wav(1000));
+        SoundbankCache cache = new SoundbankCache(true);
+        Set<File> before = listSpoolFiles();
+        Soundbank soundbank;
+        try (SoundbankCache.SharedSoundbank shared = cache.acquire(resources, "spooled.wav")) {
+            soundbank = shared.getSoundbank();
+        }
+        Set<File> spooled = listSpoolFiles();
+        spooled.removeAll(before);
+        assertEquals(1, spooled.size());
+        File file = spooled.iterator().next();
+        assertTrue(file.isFile());
+        assertEquals(1, soundbank.getInstruments().length);
+        soundbank = null;
+        for (int i = 0; i < 100 && file.exists(); i ++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(file.exists());
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i <= bytes.length - pattern.length; i ++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + pattern.length), pattern)) return i;
+        }
+        throw new AssertionError("pattern not found");
+    }
+
+    private static Set<File> listSpoolFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("javasound-soundbank-"));
+        return files == null ? new HashSet<>() : new HashSet<>(Arrays.asList(files));
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.util.ReadAheadInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingTest {
+
+    @Test
+    @DisplayName("read-ahead stream reads the same PCM data")
+    public void streamAhead() throws IOException, UnsupportedAudioFileException {
+        TestResources resources = new TestResources().put("music.wav", TestResources.wav(100000));
+        byte[] expected, actual;
+        try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "music.wav")) {
+            expected = readAll(stream);
+        }
+        try (AudioInputStream stream = AudioResourceLoader.getStreamingAudioInputStream(resources, "music.wav",
+                4099, 2, Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r);
+                    thread.setDaemon(true);
+                    return thread;
+                }))) {
+            assertEquals(100000, stream.getFrameLength());
+            assertEquals(TestResources.PCM_FORMAT.getFrameSize(), stream.getFormat().getFrameSize());
+            actual = readAll(stream);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("closing stops the producer and closes the source")
+    public void closeEarly() throws IOException, InterruptedException {
+        boolean[] closed = new boolean[1];
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 0;
+            }
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ReadAheadInputStream stream = new ReadAheadInputStream(endless, 1024, 2, executor)) {
+            assertEquals(4096, stream.skip(4096));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    @DisplayName("sources returning no bytes are waited on, not spun on")
+    public void zeroByteReads() throws IOException, InterruptedException, ExecutionException {
+        byte[] expected = new byte[4096];
+        for (int i = 0; i < expected.length; i ++) expected[i] = (byte) i;
+        AtomicInteger zeroReads = new AtomicInteger();
+        InputStream trickling = new InputStream() {
+            private int position;
+            @Override
+            public int read() {
+                return position < expected.length ? expected[position ++] & 0xFF : -1;
+            }
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (position >= expected.length) return -1;
+                zeroReads.incrementAndGet();
+                return 0;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ReadAheadInputStream stream = new ReadAheadInputStream(trickling, 1024, 2, executor);
+        try {
+            Future<byte[]> actual = executor.submit(() -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                out.write(stream.read());
+                out.write(readAll(stream));
+                return out.toByteArray();
+            });
+            assertArrayEquals(expected, actual.get(10, TimeUnit.SECONDS));
+        }
+        catch (TimeoutException e) {
+            fail("read-ahead producer spun on a source returning no bytes");
+        }
+        finally {
+            stream.close();
+            executor.shutdown();
+        }
+        assertTrue(zeroReads.get() <= 2 * expected.length + 2, "source read " + zeroReads.get() + " times for nothing");
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int read;
+        while ((read = stream.read(buffer)) != -1) out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.tianscar.javasound.resloader.test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generated in-memory resources, so the tests do not depend on downloaded audio files.
+ */
+final class TestResources extends ClassLoader {
+
+    static final AudioFormat PCM_FORMAT = new AudioFormat(44100, 16, 2, true, false);
+
+    private final Map<String, byte[]> resources = new HashMap<>();
+    private final AtomicInteger opens = new AtomicInteger();
+
+    TestResources() {
+        super(TestResources.class.getClassLoader());
+    }
+
+    TestResources put(String name, byte[] data) {
+        resources.put(name, data);
+        return this;
+    }
+
+    int getOpenCount() {
+        return opens.get();
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        byte[] data = resources.get(name);
+        if (data == null) return super.getResourceAsStream(name);
+        opens.incrementAndGet();
+        return new ByteArrayInputStream(data);
+    }
+
+    static byte[] wav(int frames) throws IOException {
+        byte[] pcm = new byte[frames * PCM_FORMAT.getFrameSize()];
+        for (int i = 0; i < pcm.length; i ++) pcm[i] = (byte) i;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), PCM_FORMAT, frames), AudioFileFormat.Type.WAVE, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Generates a SoundFont 2 bank of one preset, playing one instrument of one 16-bit mono sample.
+     */
+    static byte[] sf2(byte[] sample) {
+        ByteBuffer phdr = chunk(2 * 38);
+        name(phdr, "Preset").putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0).putInt(0).putInt(0);
+        name(phdr, "EOP").putShort((short) 0).putShort((short) 0).putShort((short) 1).putInt(0).putInt(0).putInt(0);
+        ByteBuffer pbag = chunk(2 * 4).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 0);
+        ByteBuffer pgen = chunk(2 * 4).putShort((short) 41).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        ByteBuffer inst = chunk(2 * 22);
+        name(inst, "Instrument").putShort((short) 0);
+        name(inst, "EOI").putShort((short) 1);
+        ByteBuffer ibag = chunk(2 * 4).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 0);
+        ByteBuffer igen = chunk(2 * 4).putShort((short) 53).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+        ByteBuffer shdr = chunk(2 * 46);
+        name(shdr, "Sample").putInt(0).putInt(sample.length / 2).putInt(0).putInt(sample.length / 2)
+                .putInt(44100).put((byte) 60).put((byte) 0).putShort((short) 0).putShort((short) 1);
+        name(shdr, "EOS").putInt(0).putInt(0).putInt(0).putInt(0).putInt(0).put((byte) 0).put((byte) 0).putShort((short) 0).putShort((short) 0);
+        byte[] info = list("INFO", riff("ifil", chunk(4).putShort((short) 2).putShort((short) 1).array()),
+                riff("isng", "EMU8000\0".getBytes(StandardCharsets.US_ASCII)),
+                riff("INAM", "Bank\0\0".getBytes(StandardCharsets.US_ASCII)));
+        byte[] sdta = list("sdta", riff("smpl", sample));
+        byte[] pdta = list("pdta", riff("phdr", phdr.array()), riff("pbag", pbag.array()), riff("pmod", new byte[10]),
+                riff("pgen", pgen.array()), riff("inst", inst.array()), riff("ibag", ibag.array()), riff("imod", new byte[10]),
+                riff("igen", igen.array()), riff("shdr", shdr.array()));
+        return riff("RIFF", concat("sfbk".getBytes(StandardCharsets.US_ASCII), info, sdta, pdta));
+    }
+
+    private static ByteBuffer chunk(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer name(ByteBuffer chunk, String name) {
+        byte[] bytes = Arrays.copyOf(name.getBytes(StandardCharsets.US_ASCII), 20);
+        return chunk.put(bytes);
+    }
+
+    private static byte[] list(String type, byte[]... chunks) {
+        byte[][] parts = Arrays.copyOf(new byte[][] { type.getBytes(StandardCharsets.US_ASCII) }, chunks.length + 1);
+        System.arraycopy(chunks, 0, parts, 1, chunks.length);
+        return riff("LIST", concat(parts));
+    }
+
+    private static byte[] riff(String id, byte[] data) {
+        return concat(id.getBytes(StandardCharsets.US_ASCII), chunk(4).putInt(data.length).array(), data);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.write(part, 0, part.length);
+        return out.toByteArray();
+    }
+
+    static byte[] readAll(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+}
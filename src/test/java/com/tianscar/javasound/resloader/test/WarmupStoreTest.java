@@ -0,0 +1,131 @@
+package com.tianscar.javasound.resloader.test;
+
+import com.tianscar.javasound.sampled.AudioResourceLoader;
+import com.tianscar.javasound.util.WarmupStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WarmupStoreTest {
+
+    @Test
+    @DisplayName("warmed up jar entries are loaded from memory")
+    public void warmUpJar() throws IOException, UnsupportedAudioFileException, ExecutionException, InterruptedException {
+        File jar = assetsJar();
+        URLClassLoader resources = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        WarmupStore store = WarmupStore.getDefault();
+        try {
+            assertEquals(2, store.warmUpPrefix(resources, "sounds/", false, Runnable::run).get().intValue());
+            assertTrue(store.contains(resources, "sounds/a.wav"));
+            resources.close();
+            try (AudioInputStream stream = AudioResourceLoader.getAudioInputStream(resources, "sounds/a.wav")) {
+                assertEquals(1000, stream.getFrameLength());
+            }
+        }
+        finally {
+            store.invalidate(resources, null);
+        }
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    @DisplayName("compressed, capped and cancelled warm-ups")
+    public void warmUpOptions() throws IOException, ExecutionException, InterruptedException {
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { assetsJar().toURI().toURL() }, null)) {
+            WarmupStore compressed = new WarmupStore(Long.MAX_VALUE);
+            assertEquals(2, compressed.warmUpPrefix(resources, "sounds/", true, Runnable::run).get().intValue());
+            assertTrue(compressed.getSize() < 2 * TestResources.wav(1000).length);
+            assertNull(compressed.getByteBuffer(resources, "sounds/a.wav"));
+            assertArrayEquals(TestResources.wav(1000), readAll(compressed, resources, "sounds/a.wav"));
+
+            WarmupStore capped = new WarmupStore(TestResources.wav(1000).length + 16);
+            assertEquals(1, capped.warmUpPrefix(resources, "sounds/", false, Runnable::run).get().intValue());
+
+            WarmupStore cancelled = new WarmupStore(Long.MAX_VALUE);
+            List<Runnable> queued = new ArrayList<>();
+            CompletableFuture<Integer> future = cancelled.warmUp(resources, Collections.singletonList("sounds/a.wav"), false, queued::add);
+            assertTrue(future.cancel(true));
+            for (Runnable task : queued) task.run();
+            assertEquals(0, cancelled.getSize());
+        }
+    }
+
+    @Test
+    @DisplayName("configured loaders read from their own store")
+    public void configuredStore() throws IOException, UnsupportedAudioFileException, ExecutionException, InterruptedException {
+        URLClassLoader resources = new URLClassLoader(new URL[] { assetsJar().toURI().toURL() }, null);
+        WarmupStore store = new WarmupStore(Long.MAX_VALUE);
+        assertEquals(2, store.warmUpPrefix(resources, "sounds/", false, Runnable::run).get().intValue());
+        resources.close();
+        AudioResourceLoader loader = AudioResourceLoader.builder()
+                .resourceLoader(resources)
+                .warmupStore(store)
+                .build();
+        try (AudioInputStream stream = loader.getAudioInputStream("sounds/a.wav")) {
+            assertEquals(1000, stream.getFrameLength());
+        }
+        assertThrows(IOException.class, () -> AudioResourceLoader.getAudioFileFormat(resources, "sounds/b.wav"));
+    }
+
+    @Test
+    @DisplayName("resources of collected class loaders do not count against the budget")
+    public void collectedLoaders() throws IOException, ExecutionException, InterruptedException {
+        WarmupStore store = new WarmupStore(TestResources.wav(1000).length + 16);
+        File jar = assetsJar();
+        warmUpCollectable(store, jar);
+        assertTrue(store.getSize() > 0);
+        for (int i = 0; i < 100 && store.getSize() > 0; i ++) {
+            System.gc();
+            Thread.sleep(10);
+            try (URLClassLoader resources = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null)) {
+                if (store.warmUp(resources, Collections.singletonList("sounds/b.wav"), false, Runnable::run).get() == 1) {
+                    assertTrue(store.contains(resources, "sounds/b.wav"));
+                    return;
+                }
+            }
+        }
+        fail("the resources of the collected class loader were kept");
+    }
+
+    private static void warmUpCollectable(WarmupStore store, File jar) throws IOException, ExecutionException, InterruptedException {
+        try (URLClassLoader resources = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null)) {
+            assertEquals(1, store.warmUp(resources, Collections.singletonList("sounds/a.wav"), false, Runnable::run).get().intValue());
+        }
+    }
+
+    private static byte[] readAll(WarmupStore store, ClassLoader resources, String name) throws IOException {
+        return TestResources.readAll(store.openStream(resources, name));
+    }
+
+    private static File assetsJar() throws IOException {
+        File jar = Files.createTempFile("assets", ".jar").toFile();
+        jar.deleteOnExit();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            out.putNextEntry(new ZipEntry("sounds/"));
+            out.closeEntry();
+            for (String name : new String[] { "sounds/a.wav", "sounds/b.wav" }) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(TestResources.wav(1000));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+}